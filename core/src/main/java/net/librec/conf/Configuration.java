@@ -106,6 +106,26 @@ public class Configuration implements Iterable<Map.Entry<String, String>> {
         // addDefaultResource("driver.classes.props");
     }
 
+    /**
+     * Construct an empty configuration, which loads the default resources.
+     */
+    public Configuration() {
+    }
+
+    /**
+     * Construct a copy of another configuration. The properties of the copy
+     * can be set without changing the other configuration.
+     *
+     * @param other the configuration to copy
+     */
+    public Configuration(Configuration other) {
+        this.loadDefaults = other.loadDefaults;
+        synchronized (other) {
+            this.resources = new ArrayList<Resource>(other.resources);
+            this.properties = (Properties) other.getProps().clone();
+        }
+    }
+
     public static class Resource {
         private final Object resource;
         private final String name;
@@ -0,0 +1,418 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import net.librec.math.structure.SparseMatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A <tt>DataSnapshot</tt> is a compact binary image of the converted data,
+ * i.e. the preference matrix, the datetime matrix and the user/item
+ * {raw id, inner id} maps. All the data are stored as length-prefixed
+ * primitive arrays, which are written through a {@link FileChannel} and read
+ * back through memory-mapped windows of the file.
+ * <p>
+ * A snapshot carries the signature of the source data it is converted from
+ * and a CRC32 checksum of its content. It is considered stale and ignored
+ * when either does not match.
+ */
+public class DataSnapshot {
+
+    /** The magic number of a snapshot file */
+    private static final int MAGIC = 0x4C524453;
+
+    /** The version of the snapshot format */
+    private static final int VERSION = 1;
+
+    /** The size of the write buffer and of the checksum chunks */
+    private static final int BSIZE = 1024 * 1024;
+
+    /** The maximum size of a memory-mapped window */
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** user/item {raw id, inner id} map */
+    private BiMap<String, Integer> userIds, itemIds;
+
+    /** the preference matrix and the datetime matrix */
+    private SparseMatrix preferenceMatrix, datetimeMatrix;
+
+    private DataSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the converted data.
+     *
+     * @param path             the path of the snapshot file
+     * @param signature        the signature of the source data
+     * @param userIds          user {raw id, inner id} map
+     * @param itemIds          item {raw id, inner id} map
+     * @param preferenceMatrix the preference matrix
+     * @param datetimeMatrix   the datetime matrix, may be null
+     * @throws IOException if I/O error occurs during writing
+     */
+    public static void write(String path, String signature, BiMap<String, Integer> userIds,
+                             BiMap<String, Integer> itemIds, SparseMatrix preferenceMatrix,
+                             SparseMatrix datetimeMatrix) throws IOException {
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            SnapshotWriter writer = new SnapshotWriter(raf.getChannel());
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putBytes(signature.getBytes(UTF_8));
+            long checksumPosition = writer.position();
+            writer.putLong(0L);
+
+            writer.startChecksum();
+            writer.putIds(userIds);
+            writer.putIds(itemIds);
+            writer.putMatrix(preferenceMatrix);
+            writer.putInt(datetimeMatrix != null ? 1 : 0);
+            if (datetimeMatrix != null) {
+                writer.putMatrix(datetimeMatrix);
+            }
+            writer.flush();
+
+            ByteBuffer checksum = ByteBuffer.allocate(8);
+            checksum.putLong(writer.checksum()).flip();
+            raf.getChannel().write(checksum, checksumPosition);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a snapshot of the converted data.
+     *
+     * @param path      the path of the snapshot file
+     * @param signature the signature of the current source data
+     * @return the snapshot, or null if it does not exist or is stale
+     * @throws IOException if I/O error occurs during reading
+     */
+    public static DataSnapshot read(String path, String signature) throws IOException {
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            SnapshotReader reader = new SnapshotReader(raf.getChannel());
+            if (reader.remaining() < 16 || reader.getInt() != MAGIC || reader.getInt() != VERSION) {
+                return null;
+            }
+            if (!signature.equals(new String(reader.getBytes(), UTF_8))) {
+                return null;
+            }
+            long checksum = reader.getLong();
+            if (checksum != reader.checksum()) {
+                return null;
+            }
+
+            DataSnapshot snapshot = new DataSnapshot();
+            snapshot.userIds = reader.getIds();
+            snapshot.itemIds = reader.getIds();
+            snapshot.preferenceMatrix = reader.getMatrix();
+            if (reader.getInt() == 1) {
+                snapshot.datetimeMatrix = reader.getMatrix();
+            }
+            return snapshot;
+        } catch (RuntimeException e) {
+            // a truncated or malformed snapshot is treated as stale
+            return null;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return user {raw id, inner id} map
+     */
+    public BiMap<String, Integer> getUserIds() {
+        return userIds;
+    }
+
+    /**
+     * @return item {raw id, inner id} map
+     */
+    public BiMap<String, Integer> getItemIds() {
+        return itemIds;
+    }
+
+    /**
+     * @return the preference matrix
+     */
+    public SparseMatrix getPreferenceMatrix() {
+        return preferenceMatrix;
+    }
+
+    /**
+     * @return the datetime matrix, null if the snapshot has no datetime data
+     */
+    public SparseMatrix getDatetimeMatrix() {
+        return datetimeMatrix;
+    }
+
+    /**
+     * Writes primitives and primitive arrays through a buffered file channel.
+     */
+    private static class SnapshotWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
+        private CRC32 crc;
+
+        private SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private long position() throws IOException {
+            return channel.position() + buffer.position();
+        }
+
+        private void startChecksum() throws IOException {
+            flush();
+            crc = new CRC32();
+        }
+
+        private long checksum() {
+            return crc.getValue();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            if (crc != null) {
+                crc.update(buffer.array(), 0, buffer.limit());
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        private void putBytes(byte[] values) throws IOException {
+            putInt(values.length);
+            for (int offset = 0; offset < values.length; ) {
+                ensure(1);
+                int len = Math.min(buffer.remaining(), values.length - offset);
+                buffer.put(values, offset, len);
+                offset += len;
+            }
+        }
+
+        private void putInts(int[] values) throws IOException {
+            putInt(values.length);
+            for (int value : values) {
+                ensure(4);
+                buffer.putInt(value);
+            }
+        }
+
+        private void putDoubles(double[] values) throws IOException {
+            putInt(values.length);
+            for (double value : values) {
+                ensure(8);
+                buffer.putDouble(value);
+            }
+        }
+
+        private void putIds(BiMap<String, Integer> ids) throws IOException {
+            int[] innerIds = new int[ids.size()];
+            int[] lengths = new int[ids.size()];
+            byte[][] rawIds = new byte[ids.size()][];
+            int totalLength = 0, k = 0;
+            for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+                innerIds[k] = entry.getValue();
+                rawIds[k] = entry.getKey().getBytes(UTF_8);
+                lengths[k] = rawIds[k].length;
+                totalLength += lengths[k++];
+            }
+            putInts(innerIds);
+            putInts(lengths);
+            putInt(totalLength);
+            for (byte[] rawId : rawIds) {
+                for (int offset = 0; offset < rawId.length; ) {
+                    ensure(1);
+                    int len = Math.min(buffer.remaining(), rawId.length - offset);
+                    buffer.put(rawId, offset, len);
+                    offset += len;
+                }
+            }
+        }
+
+        private void putMatrix(SparseMatrix matrix) throws IOException {
+            putInt(matrix.numRows());
+            putInt(matrix.numColumns());
+            putInts(matrix.rowPtr);
+            putInts(matrix.colInd);
+            putDoubles(matrix.rowData);
+            putInts(matrix.colPtr);
+            putInts(matrix.rowInd);
+            putDoubles(matrix.colData);
+        }
+    }
+
+    /**
+     * Reads primitives and primitive arrays through memory-mapped windows of a file channel.
+     */
+    private static class SnapshotReader {
+
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+
+        private SnapshotReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        private long remaining() {
+            return size - position;
+        }
+
+        private MappedByteBuffer map(long bytes) throws IOException {
+            if (bytes > remaining()) {
+                throw new IllegalStateException("Unexpected end of snapshot");
+            }
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+            position += bytes;
+            return window;
+        }
+
+        /**
+         * Compute the checksum of the bytes from the current position to the end
+         * of the file, without moving the position.
+         */
+        private long checksum() throws IOException {
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[BSIZE];
+            for (long offset = position; offset < size; ) {
+                long bytes = Math.min(WINDOW_SIZE, size - offset);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+                while (window.hasRemaining()) {
+                    int len = Math.min(chunk.length, window.remaining());
+                    window.get(chunk, 0, len);
+                    crc.update(chunk, 0, len);
+                }
+                offset += bytes;
+            }
+            return crc.getValue();
+        }
+
+        private int getInt() throws IOException {
+            return map(4).getInt();
+        }
+
+        private long getLong() throws IOException {
+            return map(8).getLong();
+        }
+
+        private int getLength() throws IOException {
+            int length = getInt();
+            if (length < 0) {
+                throw new IllegalStateException("Negative array length in snapshot");
+            }
+            return length;
+        }
+
+        private byte[] getBytes() throws IOException {
+            byte[] values = new byte[getLength()];
+            for (int offset = 0; offset < values.length; ) {
+                int len = Math.min(WINDOW_SIZE, values.length - offset);
+                map(len).get(values, offset, len);
+                offset += len;
+            }
+            return values;
+        }
+
+        private int[] getInts() throws IOException {
+            int[] values = new int[getLength()];
+            for (int offset = 0; offset < values.length; ) {
+                int len = Math.min(WINDOW_SIZE / 4, values.length - offset);
+                map(len * 4L).asIntBuffer().get(values, offset, len);
+                offset += len;
+            }
+            return values;
+        }
+
+        private double[] getDoubles() throws IOException {
+            double[] values = new double[getLength()];
+            for (int offset = 0; offset < values.length; ) {
+                int len = Math.min(WINDOW_SIZE / 8, values.length - offset);
+                map(len * 8L).asDoubleBuffer().get(values, offset, len);
+                offset += len;
+            }
+            return values;
+        }
+
+        private BiMap<String, Integer> getIds() throws IOException {
+            int[] innerIds = getInts();
+            int[] lengths = getInts();
+            byte[] rawIds = getBytes();
+            BiMap<String, Integer> ids = HashBiMap.create(innerIds.length);
+            for (int k = 0, offset = 0; k < innerIds.length; offset += lengths[k++]) {
+                ids.put(new String(rawIds, offset, lengths[k], UTF_8), innerIds[k]);
+            }
+            return ids;
+        }
+
+        private SparseMatrix getMatrix() throws IOException {
+            int numRows = getInt();
+            int numColumns = getInt();
+            int[] rowPtr = getInts();
+            int[] colInd = getInts();
+            double[] rowData = getDoubles();
+            int[] colPtr = getInts();
+            int[] rowInd = getInts();
+            double[] colData = getDoubles();
+            return new SparseMatrix(numRows, numColumns, rowPtr, colInd, rowData, colPtr, rowInd, colData);
+        }
+    }
+}
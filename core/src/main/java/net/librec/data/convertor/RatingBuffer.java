@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import net.librec.math.structure.SparseMatrix;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A <tt>RatingBuffer</tt> collects (row, column, rate[, timestamp]) records
+ * into growable primitive arrays, and builds the preference and datetime
+ * matrices from them without boxing a single cell.
+ */
+public class RatingBuffer {
+
+    /** The default initial capacity of the buffer */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** row index of each record */
+    private int[] rows;
+
+    /** column index of each record */
+    private int[] columns;
+
+    /** rate of each record */
+    private double[] rates;
+
+    /** timestamp of each record, allocated only once a timestamp is added */
+    private long[] times;
+
+    /** records which carry a timestamp */
+    private final BitSet timed = new BitSet();
+
+    /** number of records in the buffer */
+    private int size;
+
+    /**
+     * Initializes a newly created {@code RatingBuffer} with the default capacity.
+     */
+    public RatingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a newly created {@code RatingBuffer} with the given capacity.
+     *
+     * @param capacity the initial capacity of the buffer
+     */
+    public RatingBuffer(int capacity) {
+        capacity = Math.max(capacity, 1);
+        rows = new int[capacity];
+        columns = new int[capacity];
+        rates = new double[capacity];
+    }
+
+    /**
+     * Append a record without timestamp.
+     *
+     * @param row    row index
+     * @param column column index
+     * @param rate   rate value
+     */
+    public void add(int row, int column, double rate) {
+        ensureCapacity(size + 1);
+        rows[size] = row;
+        columns[size] = column;
+        rates[size] = rate;
+        size++;
+    }
+
+    /**
+     * Append a record with timestamp.
+     *
+     * @param row    row index
+     * @param column column index
+     * @param rate   rate value
+     * @param time   timestamp in milliseconds
+     */
+    public void add(int row, int column, double rate, long time) {
+        if (times == null) {
+            times = new long[rows.length];
+        }
+        add(row, column, rate);
+        times[size - 1] = time;
+        timed.set(size - 1);
+    }
+
+    /**
+     * Append all records of another buffer, mapping their row and column
+     * indices through the given arrays.
+     *
+     * @param other     the buffer to append
+     * @param rowMap    the new row index of every row index of {@code other}
+     * @param columnMap the new column index of every column index of {@code other}
+     */
+    public void addAll(RatingBuffer other, int[] rowMap, int[] columnMap) {
+        if (other.times != null && times == null) {
+            times = new long[rows.length];
+        }
+        ensureCapacity(size + other.size);
+        for (int k = 0; k < other.size; k++) {
+            rows[size + k] = rowMap[other.rows[k]];
+            columns[size + k] = columnMap[other.columns[k]];
+            rates[size + k] = other.rates[k];
+        }
+        if (other.times != null) {
+            System.arraycopy(other.times, 0, times, size, other.size);
+            for (int k = other.timed.nextSetBit(0); k >= 0; k = other.timed.nextSetBit(k + 1)) {
+                timed.set(size + k);
+            }
+        }
+        size += other.size;
+    }
+
+    /**
+     * Return the number of records in the buffer.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return whether any record carries a timestamp.
+     *
+     * @return true if timestamps are recorded
+     */
+    public boolean hasTimes() {
+        return times != null;
+    }
+
+    /**
+     * Build the preference matrix of the buffered records.
+     *
+     * @param numRows    number of rows
+     * @param numColumns number of columns
+     * @return the preference matrix
+     */
+    public SparseMatrix toPreferenceMatrix(int numRows, int numColumns) {
+        return new SparseMatrix(numRows, numColumns, rows, columns, rates, size);
+    }
+
+    /**
+     * Build the datetime matrix of the buffered records. Records without a
+     * timestamp are left out, as the table path of the convertor does.
+     *
+     * @param numRows    number of rows
+     * @param numColumns number of columns
+     * @return the datetime matrix, or null if no timestamp is recorded
+     */
+    public SparseMatrix toDatetimeMatrix(int numRows, int numColumns) {
+        if (times == null) {
+            return null;
+        }
+        int numTimed = timed.cardinality();
+        int[] timedRows = new int[numTimed];
+        int[] timedColumns = new int[numTimed];
+        double[] values = new double[numTimed];
+        int position = 0;
+        for (int k = timed.nextSetBit(0); k >= 0; k = timed.nextSetBit(k + 1)) {
+            timedRows[position] = rows[k];
+            timedColumns[position] = columns[k];
+            values[position] = times[k];
+            position++;
+        }
+        return new SparseMatrix(numRows, numColumns, timedRows, timedColumns, values, numTimed);
+    }
+
+    /**
+     * Grow the arrays to hold at least {@code minCapacity} records.
+     *
+     * @param minCapacity the desired minimum capacity
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > rows.length) {
+            int capacity = Math.max(rows.length + (rows.length >> 1), minCapacity);
+            rows = Arrays.copyOf(rows, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            rates = Arrays.copyOf(rates, capacity);
+            if (times != null) {
+                times = Arrays.copyOf(times, capacity);
+            }
+        }
+    }
+}
@@ -29,11 +29,15 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A <tt>TextDataConvertor</tt> is a class to convert a data file from CSV
@@ -58,6 +62,11 @@ public class TextDataConvertor extends AbstractDataConvertor {
      */
     private static final String DATA_COLUMN_DEFAULT_FORMAT = "UIR";
 
+    /**
+     * The default size of the parts which a data file is split into for parallel loading
+     */
+    private static final long DEFAULT_SPLIT_SIZE = 64L * 1024 * 1024;
+
     /**
      * The format of input data file
      */
@@ -84,6 +93,28 @@ public class TextDataConvertor extends AbstractDataConvertor {
      */
     private TimeUnit timeUnit = TimeUnit.SECONDS;
 
+    /**
+     * whether to collect the records into primitive buffers instead of boxed
+     * tables, so that the peak memory of loading stays close to the size of
+     * the built matrices
+     */
+    private boolean streaming = false;
+
+    /**
+     * the number of threads to load the data files, loading in parallel if greater than 1
+     */
+    private int numThreads = 1;
+
+    /**
+     * the size of the parts which a data file is split into for parallel loading
+     */
+    private long splitSize = DEFAULT_SPLIT_SIZE;
+
+    /**
+     * loaded data size in all data file during parallel loading
+     */
+    private final AtomicLong loadedFileByte = new AtomicLong();
+
     /**
      * already loaded files/total files in dataDirectory
      */
@@ -164,6 +195,77 @@ public class TextDataConvertor extends AbstractDataConvertor {
         readData(dataColumnFormat, inputDataPath, binThold);
     }
 
+    /**
+     * Load the converted data from a snapshot file, if the snapshot is
+     * converted from the current data files with the same settings. The user
+     * and item {raw id, inner id} maps are replaced by the ones of the snapshot.
+     *
+     * @param snapshotPath the path of the snapshot file
+     * @return true if the data are loaded, false if the snapshot does not exist or is stale
+     * @throws IOException if I/O error occurs during reading
+     */
+    public boolean loadSnapshot(String snapshotPath) throws IOException {
+        DataSnapshot snapshot = DataSnapshot.read(snapshotPath, getSignature());
+        if (snapshot == null) {
+            return false;
+        }
+        userIds = snapshot.getUserIds();
+        itemIds = snapshot.getItemIds();
+        preferenceMatrix = snapshot.getPreferenceMatrix();
+        datetimeMatrix = snapshot.getDatetimeMatrix();
+        loadFilePathRate = loadDataFileRate = loadAllFileRate = 1.0f;
+        return true;
+    }
+
+    /**
+     * Save the converted data to a snapshot file.
+     *
+     * @param snapshotPath the path of the snapshot file
+     * @throws IOException if I/O error occurs during writing
+     */
+    public void saveSnapshot(String snapshotPath) throws IOException {
+        DataSnapshot.write(snapshotPath, getSignature(), userIds, itemIds, preferenceMatrix, datetimeMatrix);
+    }
+
+    /**
+     * Return the signature of the data files and the settings of conversion,
+     * which changes whenever a data file is added, removed or modified.
+     *
+     * @return the signature of the input data
+     * @throws IOException if the <code>inputDataPath</code> is not valid.
+     */
+    private String getSignature() throws IOException {
+        StringBuilder signature = new StringBuilder();
+        signature.append(dataColumnFormat).append('\t').append(binThold).append('\t').append(timeUnit).append('\n');
+        for (File dataFile : getDataFiles(inputDataPath)) {
+            signature.append(dataFile.getAbsolutePath()).append('\t').append(dataFile.length()).append('\t')
+                    .append(dataFile.lastModified()).append('\n');
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Collect the data files in the input data paths and their sub-directories.
+     *
+     * @param inputDataPath the paths of input data separated by space
+     * @return the data files
+     * @throws IOException if the <code>inputDataPath</code> is not valid.
+     */
+    private static List<File> getDataFiles(String inputDataPath) throws IOException {
+        final List<File> files = new ArrayList<>();
+        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                files.add(file.toFile());
+                return super.visitFile(file, attrs);
+            }
+        };
+        for (String path : inputDataPath.trim().split(" ")) {
+            Files.walkFileTree(Paths.get(path), finder);
+        }
+        return files;
+    }
+
     /**
      * Read data from the data file. Note that we didn't take care of the
      * duplicated lines.
@@ -178,41 +280,47 @@ public class TextDataConvertor extends AbstractDataConvertor {
      */
     private void readData(String dataColumnFormat, String inputDataPath, double binThold) throws IOException {
         LOG.info(String.format("Dataset: %s", StringUtil.last(inputDataPath, 38)));
-        // Table {row-id, col-id, rate}
-        Table<Integer, Integer, Double> dataTable = HashBasedTable.create();
-        // Table {row-id, col-id, timestamp}
-        Table<Integer, Integer, Long> timeTable = null;
-        // Map {col-id, multiple row-id}: used to fast build a rating matrix
-        Multimap<Integer, Integer> colMap = HashMultimap.create();
-
         if (this.userIds == null) {
             this.userIds = HashBiMap.create();
         }
         if (this.itemIds == null) {
             this.itemIds = HashBiMap.create();
         }
-        final List<File> files = new ArrayList<>();
-        final ArrayList<Long> fileSizeList = new ArrayList<>();
-        SimpleFileVisitor<Path> finder = new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                fileSizeList.add(file.toFile().length());
-                files.add(file.toFile());
-                return super.visitFile(file, attrs);
-            }
-        };
-        for (String path : inputDataPath.trim().split(" ")) {
-            Files.walkFileTree(Paths.get(path), finder);
-        }
+        List<File> files = getDataFiles(inputDataPath);
 
         LOG.info("All dataset files " + files.toString());
         long allFileSize = 0;
-        for (Long everyFileSize : fileSizeList) {
-            allFileSize = allFileSize + everyFileSize;
+        for (File dataFile : files) {
+            allFileSize = allFileSize + dataFile.length();
         }
         LOG.info("All dataset files size " + Long.toString(allFileSize));
+        if (numThreads > 1) {
+            // parallel loading always collects the records into primitive buffers
+            RatingBuffer ratingBuffer = readDataInParallel(files, allFileSize, dataColumnFormat, binThold);
+            preferenceMatrix = ratingBuffer.toPreferenceMatrix(numUsers(), numItems());
+            datetimeMatrix = ratingBuffer.toDatetimeMatrix(numUsers(), numItems());
+            return;
+        }
+
+        // Table {row-id, col-id, rate}
+        Table<Integer, Integer, Double> dataTable = null;
+        // Table {row-id, col-id, timestamp}
+        Table<Integer, Integer, Long> timeTable = null;
+        // Map {col-id, multiple row-id}: used to fast build a rating matrix
+        Multimap<Integer, Integer> colMap = null;
+        // Buffer {row-id, col-id, rate, timestamp}: used instead of tables in streaming mode
+        RatingBuffer ratingBuffer = null;
+        if (streaming) {
+            ratingBuffer = new RatingBuffer();
+        } else {
+            dataTable = HashBasedTable.create();
+            colMap = HashMultimap.create();
+        }
+
         int readingFileCount = 0;
         long loadAllFileByte = 0;
+        boolean hasRate = dataColumnFormat.equals("UIR") || dataColumnFormat.equals("UIRT");
+        boolean hasTimeColumn = StringUtils.equals(dataColumnFormat, "UIRT");
         // loop every dataFile collecting from walkFileTree
 
         for (File dataFile : files) {
@@ -220,82 +328,301 @@ public class TextDataConvertor extends AbstractDataConvertor {
 
             readingFileCount += 1;
             loadFilePathRate = readingFileCount / (float) files.size();
-            long readingOneFileByte = 0;
             FileInputStream fis = new FileInputStream(dataFile);
             FileChannel fileRead = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
-            int len;
-            String bufferLine = "";
-            byte[] bytes = new byte[BSIZE];
-
-            while ((len = fileRead.read(buffer)) != -1) {
-                readingOneFileByte += len;
-                loadDataFileRate = readingOneFileByte / (float) fileRead.size();
-                loadAllFileByte += len;
-                loadAllFileRate = loadAllFileByte / (float) allFileSize;
-                buffer.flip();
-                buffer.get(bytes, 0, len);
-                bufferLine = bufferLine.concat(new String(bytes, 0, len));
-                bufferLine = bufferLine.replaceAll("\r", "\n");
-                String[] bufferData = bufferLine.split("(\n)+");
-                boolean isComplete = bufferLine.endsWith("\n");
-                int loopLength = isComplete ? bufferData.length : bufferData.length - 1;
-                for (int i = 0; i < loopLength; i++) {
-                    String line = bufferData[i];
-                    String[] data = line.trim().split("[ \t,]+");
-                    String user = data[0];
-                    String item = data[1];
-                    Double rate = ((dataColumnFormat.equals("UIR") || dataColumnFormat.equals("UIRT")) && data.length >= 3) ? Double.valueOf(data[2]) : 1.0;
+            long fileSize = fileRead.size();
+            TextTokenizer tokenizer = new TextTokenizer(fileRead, BSIZE);
+
+            while (tokenizer.nextLine()) {
+                loadDataFileRate = tokenizer.getBytesRead() / (float) fileSize;
+                loadAllFileRate = (loadAllFileByte + tokenizer.getBytesRead()) / (float) allFileSize;
+                int numFields = tokenizer.numFields();
+                if (numFields < 2) {
+                    continue;
+                }
+                String user = tokenizer.getString(0);
+                String item = tokenizer.getString(1);
+                double rate = (hasRate && numFields >= 3) ? tokenizer.getDouble(2) : 1.0;
 
-                    // binarize the rating for item recommendation task
-                    if (binThold >= 0) {
-                        rate = rate > binThold ? 1.0 : 0.0;
-                    }
+                // binarize the rating for item recommendation task
+                if (binThold >= 0) {
+                    rate = rate > binThold ? 1.0 : 0.0;
+                }
 
-                    // inner id starting from 0
-                    int row = userIds.containsKey(user) ? userIds.get(user) : userIds.size();
-                    userIds.put(user, row);
+                // inner id starting from 0
+                int row = userIds.containsKey(user) ? userIds.get(user) : userIds.size();
+                userIds.put(user, row);
 
-                    int col = itemIds.containsKey(item) ? itemIds.get(item) : itemIds.size();
-                    itemIds.put(item, col);
+                int col = itemIds.containsKey(item) ? itemIds.get(item) : itemIds.size();
+                itemIds.put(item, col);
 
+                // record rating's issuing time
+                boolean hasTime = hasTimeColumn && numFields >= 4;
+                long timestamp = 0L;
+                if (hasTime) {
+                    // convert to million-seconds, also accepting formats like 9.7323480e+008
+                    timestamp = timeUnit.toMillis(tokenizer.getLong(3));
+                }
+
+                if (streaming) {
+                    if (hasTime) {
+                        ratingBuffer.add(row, col, rate, timestamp);
+                    } else {
+                        ratingBuffer.add(row, col, rate);
+                    }
+                } else {
                     dataTable.put(row, col, rate);
                     colMap.put(col, row);
-                    // record rating's issuing time
-                    if (StringUtils.equals(dataColumnFormat, "UIRT") && data.length >= 4) {
+                    if (hasTime) {
                         if (timeTable == null) {
                             timeTable = HashBasedTable.create();
                         }
-                        // convert to million-seconds
-                        long mms = 0L;
-                        try {
-                            mms = Long.parseLong(data[3]); // cannot format
-                            // 9.7323480e+008
-                        } catch (NumberFormatException e) {
-                            mms = (long) Double.parseDouble(data[3]);
-                        }
-                        long timestamp = timeUnit.toMillis(mms);
                         timeTable.put(row, col, timestamp);
                     }
                 }
-                if (!isComplete) {
-                    bufferLine = bufferData[bufferData.length - 1];
-                } else {
-                    bufferLine = "";
-                }
-                buffer.clear();
             }
+            loadAllFileByte += tokenizer.getBytesRead();
             fileRead.close();
             fis.close();
         }
         int numRows = numUsers(), numCols = numItems();
         // build rating matrix
-        preferenceMatrix = new SparseMatrix(numRows, numCols, dataTable, colMap);
-        if (timeTable != null)
-            datetimeMatrix = new SparseMatrix(numRows, numCols, timeTable, colMap);
+        if (streaming) {
+            preferenceMatrix = ratingBuffer.toPreferenceMatrix(numRows, numCols);
+            datetimeMatrix = ratingBuffer.toDatetimeMatrix(numRows, numCols);
+        } else {
+            preferenceMatrix = new SparseMatrix(numRows, numCols, dataTable, colMap);
+            if (timeTable != null)
+                datetimeMatrix = new SparseMatrix(numRows, numCols, timeTable, colMap);
+        }
         // release memory of data table
         dataTable = null;
         timeTable = null;
+        ratingBuffer = null;
+    }
+
+    /**
+     * Read the data files concurrently. Every file is split into parts at line
+     * boundaries, and each part is parsed by a task with its own {raw id,
+     * local id} dictionaries. The dictionaries are then merged into the global
+     * {@link #userIds} and {@link #itemIds} in the order of files and parts, so
+     * that the inner ids are exactly the ones of sequential loading.
+     *
+     * @param files            the data files
+     * @param allFileSize      the total size of the data files
+     * @param dataColumnFormat the format of input data file
+     * @param binThold         the threshold to binarize a rating
+     * @return the records of all files with inner ids
+     * @throws IOException if I/O error occurs during reading
+     */
+    private RatingBuffer readDataInParallel(List<File> files, long allFileSize, String dataColumnFormat,
+                                            double binThold) throws IOException {
+        List<FilePart> parts = new ArrayList<>();
+        for (File dataFile : files) {
+            FileInputStream fis = new FileInputStream(dataFile);
+            FileChannel fileRead = fis.getChannel();
+            long fileSize = fileRead.size();
+            long start = 0;
+            do {
+                long end = start + splitSize < fileSize ? nextLineStart(fileRead, start + splitSize) : fileSize;
+                parts.add(new FilePart(dataFile, start, end, dataColumnFormat, binThold, allFileSize));
+                start = end;
+            } while (start < fileSize);
+            fileRead.close();
+            fis.close();
+        }
+        LOG.info("Loading " + files.size() + " dataset files in " + parts.size() + " parts with " + numThreads
+                + " threads");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(numThreads, parts.size()));
+        RatingBuffer ratingBuffer = new RatingBuffer();
+        try {
+            List<Future<FilePart>> results = executorService.invokeAll(parts);
+            parts = null;
+            int loadedPartCount = 0;
+            for (Future<FilePart> future : results) {
+                FilePart part = future.get();
+                int[] rowMap = mergeIds(part.users, userIds);
+                int[] columnMap = mergeIds(part.items, itemIds);
+                ratingBuffer.addAll(part.ratingBuffer, rowMap, columnMap);
+                loadFilePathRate = ++loadedPartCount / (float) results.size();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executorService.shutdown();
+        }
+        return ratingBuffer;
+    }
+
+    /**
+     * Find the start of the first line beginning at or after the given position.
+     *
+     * @param channel  the channel of the data file
+     * @param position the position to search from
+     * @return the start of the next line, or the size of the file if there is none
+     * @throws IOException if I/O error occurs during reading
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long fileSize = channel.size();
+        // the line starts at position if the previous byte is a line separator
+        position--;
+        while (position < fileSize) {
+            buffer.clear();
+            int len = channel.read(buffer, position);
+            for (int i = 0; i < len; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    return position + i + 1;
+                }
+            }
+            position += Math.max(len, 1);
+        }
+        return fileSize;
+    }
+
+    /**
+     * Assign inner ids to the raw ids of a part in their local order.
+     *
+     * @param localIds the raw ids of a part, indexed by local id
+     * @param innerIds {raw id, inner id} map
+     * @return the inner id of every local id
+     */
+    private static int[] mergeIds(List<String> localIds, BiMap<String, Integer> innerIds) {
+        int[] idMap = new int[localIds.size()];
+        for (int localId = 0; localId < idMap.length; localId++) {
+            String rawId = localIds.get(localId);
+            Integer innerId = innerIds.get(rawId);
+            if (innerId == null) {
+                innerId = innerIds.size();
+                innerIds.put(rawId, innerId);
+            }
+            idMap[localId] = innerId;
+        }
+        return idMap;
+    }
+
+    /**
+     * A <tt>FilePart</tt> is a byte range of a data file which starts and ends
+     * at line boundaries. It is parsed into a {@link RatingBuffer} of local ids.
+     */
+    private class FilePart implements Callable<FilePart> {
+
+        private final File dataFile;
+        private final long start, end;
+        private final String dataColumnFormat;
+        private final double binThold;
+        private final long allFileSize;
+
+        /** raw ids in the order of their first occurrence, indexed by local id */
+        private final List<String> users = new ArrayList<>(), items = new ArrayList<>();
+
+        /** records with local ids */
+        private RatingBuffer ratingBuffer;
+
+        private FilePart(File dataFile, long start, long end, String dataColumnFormat, double binThold,
+                         long allFileSize) {
+            this.dataFile = dataFile;
+            this.start = start;
+            this.end = end;
+            this.dataColumnFormat = dataColumnFormat;
+            this.binThold = binThold;
+            this.allFileSize = allFileSize;
+        }
+
+        @Override
+        public FilePart call() throws IOException {
+            Map<String, Integer> localUserIds = new HashMap<>();
+            Map<String, Integer> localItemIds = new HashMap<>();
+            boolean hasRate = dataColumnFormat.equals("UIR") || dataColumnFormat.equals("UIRT");
+            boolean hasTimeColumn = StringUtils.equals(dataColumnFormat, "UIRT");
+            ratingBuffer = new RatingBuffer();
+
+            FileInputStream fis = new FileInputStream(dataFile);
+            FileChannel fileRead = fis.getChannel();
+            TextTokenizer tokenizer = new TextTokenizer(new RangeChannel(fileRead, start, end), BSIZE);
+            try {
+                while (tokenizer.nextLine()) {
+                    int numFields = tokenizer.numFields();
+                    if (numFields < 2) {
+                        continue;
+                    }
+                    double rate = (hasRate && numFields >= 3) ? tokenizer.getDouble(2) : 1.0;
+
+                    // binarize the rating for item recommendation task
+                    if (binThold >= 0) {
+                        rate = rate > binThold ? 1.0 : 0.0;
+                    }
+
+                    int row = localId(tokenizer.getString(0), localUserIds, users);
+                    int col = localId(tokenizer.getString(1), localItemIds, items);
+                    if (hasTimeColumn && numFields >= 4) {
+                        ratingBuffer.add(row, col, rate, timeUnit.toMillis(tokenizer.getLong(3)));
+                    } else {
+                        ratingBuffer.add(row, col, rate);
+                    }
+                }
+            } finally {
+                fileRead.close();
+                fis.close();
+            }
+            loadAllFileRate = loadedFileByte.addAndGet(end - start) / (float) allFileSize;
+            return this;
+        }
+
+        private int localId(String rawId, Map<String, Integer> localIds, List<String> rawIds) {
+            Integer id = localIds.get(rawId);
+            if (id == null) {
+                id = rawIds.size();
+                localIds.put(rawId, id);
+                rawIds.add(rawId);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * A <tt>RangeChannel</tt> reads the bytes in [start, end) of a file channel.
+     */
+    private static class RangeChannel implements ReadableByteChannel {
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        private RangeChannel(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            ByteBuffer range = dst.duplicate();
+            range.limit(range.position() + (int) Math.min(range.remaining(), end - position));
+            int len = channel.read(range, position);
+            if (len > 0) {
+                position += len;
+                dst.position(dst.position() + len);
+            }
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
     }
 
     /**
@@ -398,4 +725,32 @@ public class TextDataConvertor extends AbstractDataConvertor {
         this.timeUnit = timeUnit;
     }
 
+    /**
+     * Set whether to load the data through primitive buffers.
+     *
+     * @param streaming true to build the matrices from primitive buffers
+     *                  instead of boxed tables
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Set the number of threads to load the data files.
+     *
+     * @param numThreads the number of threads, loading in parallel if greater than 1
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Set the size of the parts which a data file is split into for parallel loading.
+     *
+     * @param splitSize the size of a part in bytes
+     */
+    public void setSplitSize(long splitSize) {
+        this.splitSize = Math.max(splitSize, 1);
+    }
+
 }
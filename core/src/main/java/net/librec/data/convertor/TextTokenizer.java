@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * A <tt>TextTokenizer</tt> scans delimited text lines straight from the bytes
+ * of a channel. Lines are separated by any run of '\r' or '\n', blank lines are
+ * skipped, and fields are separated by any run of spaces, tabs, commas or
+ * other control characters. As with the former String based loaders, a
+ * trailing line which is not terminated by a line separator is ignored.
+ * Numeric fields are parsed from the bytes without building intermediate
+ * Strings.
+ */
+public class TextTokenizer {
+
+    /** The default size of the buffer */
+    private static final int BSIZE = 1024 * 1024;
+
+    /** Powers of ten which are exactly representable as double */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /** The maximum number of digits of a mantissa which is exactly representable as double */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /** The channel to read from */
+    private final ReadableByteChannel channel;
+
+    /** The bytes of the buffer */
+    private byte[] bytes;
+
+    /** The buffer wrapping {@link #bytes} */
+    private ByteBuffer buffer;
+
+    /** The unread bytes are in [position, limit) */
+    private int position, limit;
+
+    /** The position to continue searching a line end from */
+    private int scan;
+
+    /** Whether the end of the channel is reached */
+    private boolean eof;
+
+    /** The number of bytes read from the channel */
+    private long bytesRead;
+
+    /** The start and end positions of the fields of the current line */
+    private int[] starts = new int[8], ends = new int[8];
+
+    /** The number of fields of the current line */
+    private int numFields;
+
+    /**
+     * Initializes a newly created {@code TextTokenizer} with the default buffer size.
+     *
+     * @param channel the channel to read from
+     */
+    public TextTokenizer(ReadableByteChannel channel) {
+        this(channel, BSIZE);
+    }
+
+    /**
+     * Initializes a newly created {@code TextTokenizer}.
+     *
+     * @param channel    the channel to read from
+     * @param bufferSize the initial size of the buffer, which grows for longer lines
+     */
+    public TextTokenizer(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.bytes = new byte[Math.max(bufferSize, 16)];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Advance to the next non-blank line.
+     *
+     * @return false if there are no more lines
+     * @throws IOException if I/O error occurs during reading
+     */
+    public boolean nextLine() throws IOException {
+        while (true) {
+            int end = scan;
+            while (end < limit && bytes[end] != '\n' && bytes[end] != '\r') {
+                end++;
+            }
+            if (end == limit && !eof) {
+                scan = end;
+                fill();
+                continue;
+            }
+            if (end == limit) {
+                // a trailing line without line terminator is not loaded
+                position = limit;
+                return false;
+            }
+            int start = position;
+            position = end + 1;
+            scan = position;
+            if (tokenize(start, end) > 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the number of fields of the current line.
+     *
+     * @return the number of fields
+     */
+    public int numFields() {
+        return numFields;
+    }
+
+    /**
+     * Return the given field of the current line as String.
+     *
+     * @param field the index of the field
+     * @return the field as String
+     */
+    public String getString(int field) {
+        return new String(bytes, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * Return the given field of the current line as double. The result is the
+     * same as {@link Double#parseDouble(String)}.
+     *
+     * @param field the index of the field
+     * @return the field as double
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double getDouble(int field) {
+        int p = starts[field], end = ends[field];
+        boolean negative = false;
+        if (p < end && (bytes[p] == '-' || bytes[p] == '+')) {
+            negative = bytes[p] == '-';
+            p++;
+        }
+        long mantissa = 0;
+        int numDigits = 0, scale = 0;
+        for (; p < end && isDigit(bytes[p]); p++, numDigits++) {
+            mantissa = mantissa * 10 + (bytes[p] - '0');
+        }
+        if (p < end && bytes[p] == '.') {
+            for (p++; p < end && isDigit(bytes[p]); p++, numDigits++, scale--) {
+                mantissa = mantissa * 10 + (bytes[p] - '0');
+            }
+        }
+        if (p < end && (bytes[p] == 'e' || bytes[p] == 'E') && numDigits > 0) {
+            p++;
+            boolean negativeExponent = false;
+            if (p < end && (bytes[p] == '-' || bytes[p] == '+')) {
+                negativeExponent = bytes[p] == '-';
+                p++;
+            }
+            int exponent = 0, numExponentDigits = 0;
+            for (; p < end && isDigit(bytes[p]) && numExponentDigits < 4; p++, numExponentDigits++) {
+                exponent = exponent * 10 + (bytes[p] - '0');
+            }
+            if (numExponentDigits == 0) {
+                return Double.parseDouble(getString(field));
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        // fall back for the rare formats whose result may not be exactly rounded here
+        if (p != end || numDigits == 0 || numDigits > MAX_EXACT_DIGITS || scale < -22 || scale > 22) {
+            return Double.parseDouble(getString(field));
+        }
+        double value = mantissa;
+        if (scale < 0) {
+            value /= POWERS_OF_TEN[-scale];
+        } else if (scale > 0) {
+            value *= POWERS_OF_TEN[scale];
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Return the given field of the current line as long. Fields in decimal or
+     * scientific notation, e.g. 9.7323480e+008, are truncated to long.
+     *
+     * @param field the index of the field
+     * @return the field as long
+     * @throws NumberFormatException if the field is not a number
+     */
+    public long getLong(int field) {
+        int p = starts[field], end = ends[field];
+        boolean negative = false;
+        if (p < end && (bytes[p] == '-' || bytes[p] == '+')) {
+            negative = bytes[p] == '-';
+            p++;
+        }
+        if (p == end || end - p > 18) {
+            String value = getString(field);
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return (long) Double.parseDouble(value);
+            }
+        }
+        long value = 0;
+        for (; p < end; p++) {
+            if (!isDigit(bytes[p])) {
+                return (long) getDouble(field);
+            }
+            value = value * 10 + (bytes[p] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Return the number of bytes read from the channel.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Split the bytes in [start, end) into fields.
+     *
+     * @param start the start of the line
+     * @param end   the end of the line
+     * @return the number of fields
+     */
+    private int tokenize(int start, int end) {
+        numFields = 0;
+        int p = start;
+        while (p < end) {
+            while (p < end && isDelimiter(bytes[p])) {
+                p++;
+            }
+            if (p == end) {
+                break;
+            }
+            if (numFields == starts.length) {
+                starts = Arrays.copyOf(starts, numFields * 2);
+                ends = Arrays.copyOf(ends, numFields * 2);
+            }
+            starts[numFields] = p;
+            while (p < end && !isDelimiter(bytes[p])) {
+                p++;
+            }
+            ends[numFields++] = p;
+        }
+        return numFields;
+    }
+
+    /**
+     * Move the unread bytes to the front of the buffer and read more bytes.
+     *
+     * @throws IOException if I/O error occurs during reading
+     */
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            limit -= position;
+            scan -= position;
+            position = 0;
+        }
+        if (limit == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            buffer = ByteBuffer.wrap(bytes);
+        }
+        buffer.limit(bytes.length);
+        buffer.position(limit);
+        int len = channel.read(buffer);
+        if (len < 0) {
+            eof = true;
+        } else {
+            limit += len;
+            bytesRead += len;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || (b >= 0 && b <= ' ');
+    }
+}
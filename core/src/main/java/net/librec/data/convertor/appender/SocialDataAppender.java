@@ -21,13 +21,13 @@ import com.google.common.collect.*;
 import net.librec.conf.Configuration;
 import net.librec.conf.Configured;
 import net.librec.data.DataAppender;
+import net.librec.data.convertor.TextTokenizer;
 import net.librec.math.structure.SparseMatrix;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -120,34 +120,21 @@ public class SocialDataAppender extends Configured implements DataAppender {
         for (File dataFile : files) {
             FileInputStream fis = new FileInputStream(dataFile);
             FileChannel fileRead = fis.getChannel();
-            ByteBuffer buffer = ByteBuffer.allocate(BSIZE);
-            int len;
-            String bufferLine = new String();
-            byte[] bytes = new byte[BSIZE];
-            while ((len = fileRead.read(buffer)) != -1) {
-                buffer.flip();
-                buffer.get(bytes, 0, len);
-                bufferLine = bufferLine.concat(new String(bytes, 0, len)).replaceAll("\r", "\n");
-                String[] bufferData = bufferLine.split("(\n)+");
-                boolean isComplete = bufferLine.endsWith("\n");
-                int loopLength = isComplete ? bufferData.length : bufferData.length - 1;
-                for (int i = 0; i < loopLength; i++) {
-                    String line = new String(bufferData[i]);
-                    String[] data = line.trim().split("[ \t,]+");
-                    String userA = data[0];
-                    String userB = data[1];
-                    Double rate = (data.length >= 3) ? Double.valueOf(data[2]) : 1.0;
-                    if (userIds.containsKey(userA) && userIds.containsKey(userB)) {
-                        int row = userIds.get(userA);
-                        int col = userIds.get(userB);
-                        dataTable.put(row, col, rate);
-                        colMap.put(col, row);
-                    }
+            TextTokenizer tokenizer = new TextTokenizer(fileRead, BSIZE);
+            while (tokenizer.nextLine()) {
+                int numFields = tokenizer.numFields();
+                if (numFields < 2) {
+                    continue;
                 }
-                if (!isComplete) {
-                    bufferLine = bufferData[bufferData.length - 1];
+                String userA = tokenizer.getString(0);
+                String userB = tokenizer.getString(1);
+                double rate = (numFields >= 3) ? tokenizer.getDouble(2) : 1.0;
+                if (userIds.containsKey(userA) && userIds.containsKey(userB)) {
+                    int row = userIds.get(userA);
+                    int col = userIds.get(userB);
+                    dataTable.put(row, col, rate);
+                    colMap.put(col, row);
                 }
-                buffer.clear();
             }
             fileRead.close();
             fis.close();
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.model;
+
+import com.google.common.collect.BiMap;
+import net.librec.common.LibrecException;
+import net.librec.conf.Configuration;
+import net.librec.data.*;
+import net.librec.math.structure.DataSet;
+import net.librec.math.structure.SparseMatrix;
+
+/**
+ * A <tt>FoldDataModel</tt> holds one fold of cross validation, i.e. the
+ * train, test and valid sets that another data model has split for the
+ * fold. The converted data, the mappings and the appender are shared with
+ * the other data model, so several folds can be run at the same time while
+ * the other data model splits the next fold. The context holds the
+ * configuration of the fold, which is read and changed by the recommender
+ * and the similarity of the fold.
+ */
+public class FoldDataModel implements DataModel {
+
+    private final DataModel dataModel;
+
+    private final DataContext context;
+
+    private final DataSplitter dataSplitter;
+
+    /**
+     * Initializes a newly created {@code FoldDataModel} object with the
+     * fold that the given data model has split last.
+     *
+     * @param dataModel the data model which has split the fold
+     * @param conf      configuration of the fold
+     */
+    public FoldDataModel(DataModel dataModel, Configuration conf) {
+        this.dataModel = dataModel;
+        this.context = new DataContext(conf);
+        this.dataSplitter = new FoldDataSplitter(dataModel.getDataSplitter());
+    }
+
+    /**
+     * The fold is already split, so nothing is built.
+     */
+    @Override
+    public void buildDataModel() throws LibrecException {
+    }
+
+    @Override
+    public void loadDataModel() throws LibrecException {
+        dataModel.loadDataModel();
+    }
+
+    @Override
+    public void saveDataModel() throws LibrecException {
+        dataModel.saveDataModel();
+    }
+
+    @Override
+    public DataSplitter getDataSplitter() {
+        return dataSplitter;
+    }
+
+    @Override
+    public DataSet getTrainDataSet() {
+        return dataSplitter.getTrainData();
+    }
+
+    @Override
+    public DataSet getTestDataSet() {
+        return dataSplitter.getTestData();
+    }
+
+    @Override
+    public DataSet getValidDataSet() {
+        return dataSplitter.getValidData();
+    }
+
+    @Override
+    public DataSet getDatetimeDataSet() {
+        return dataModel.getDatetimeDataSet();
+    }
+
+    @Override
+    public BiMap<String, Integer> getUserMappingData() {
+        return dataModel.getUserMappingData();
+    }
+
+    @Override
+    public BiMap<String, Integer> getItemMappingData() {
+        return dataModel.getItemMappingData();
+    }
+
+    @Override
+    public DataAppender getDataAppender() {
+        return dataModel.getDataAppender();
+    }
+
+    @Override
+    public DataContext getContext() {
+        return context;
+    }
+
+    /**
+     * Splitter which keeps the sets of the fold split by another splitter.
+     */
+    private static class FoldDataSplitter implements DataSplitter {
+
+        private final SparseMatrix trainMatrix;
+
+        private final SparseMatrix testMatrix;
+
+        private final SparseMatrix validMatrix;
+
+        FoldDataSplitter(DataSplitter dataSplitter) {
+            trainMatrix = dataSplitter.getTrainData();
+            testMatrix = dataSplitter.getTestData();
+            validMatrix = dataSplitter.getValidData();
+        }
+
+        @Override
+        public void splitData() throws LibrecException {
+        }
+
+        @Override
+        public void setDataConvertor(DataConvertor dataConvertor) {
+        }
+
+        @Override
+        public SparseMatrix getTrainData() {
+            return trainMatrix;
+        }
+
+        @Override
+        public SparseMatrix getTestData() {
+            return testMatrix;
+        }
+
+        @Override
+        public SparseMatrix getValidData() {
+            return validMatrix;
+        }
+    }
+}
@@ -62,6 +62,27 @@ public class TextDataModel extends AbstractDataModel implements DataModel {
      */
     @Override
     public void buildConvert() throws LibrecException {
+        buildConvertor();
+        boolean snapshotEnabled = conf.getBoolean("data.model.snapshot", false);
+        try {
+            if (snapshotEnabled && loadSnapshot()) {
+                LOG.info("Load data from snapshot " + getSnapshotPath());
+                return;
+            }
+            dataConvertor.processData();
+        } catch (IOException e) {
+            throw new LibrecException(e);
+        }
+        if (snapshotEnabled) {
+            saveDataModel();
+            LOG.info("Save data to snapshot " + getSnapshotPath());
+        }
+    }
+
+    /**
+     * Create the data convertor from the configuration.
+     */
+    private void buildConvertor() {
 //        String inputDataPath = conf.get(Configured.CONF_DFS_DATA_DIR) + "/" + conf.get(Configured.CONF_DATA_INPUT_PATH);
         String[] inputDataPath = conf.get(Configured.CONF_DATA_INPUT_PATH).trim().split(" ");
         for(int i = 0 ; i < inputDataPath.length; i ++){
@@ -69,33 +90,71 @@ public class TextDataModel extends AbstractDataModel implements DataModel {
         }
         String dataColumnFormat = conf.get(Configured.CONF_DATA_COLUMN_FORMAT, "UIR");
         dataConvertor = new TextDataConvertor(dataColumnFormat, StringUtils.join(inputDataPath," "), conf.getDouble("data.convert.binarize.threshold", -1.0));
-        try {
-            dataConvertor.processData();
-        } catch (IOException e) {
-            throw new LibrecException(e);
-        }
+        ((TextDataConvertor) dataConvertor).setStreaming(conf.getBoolean("data.convert.streaming", false));
+        ((TextDataConvertor) dataConvertor).setNumThreads(conf.getInt("data.convert.thread.count", 1));
+        ((TextDataConvertor) dataConvertor).setSplitSize(conf.getLong("data.convert.split.size", 64L * 1024 * 1024));
     }
 
     /**
-     * Load data model.
+     * Load data model from the binary snapshot of the converted data.
      *
      * @throws LibrecException
-     *             if error occurs during loading
+     *             if error occurs during loading, or the snapshot does not
+     *             exist or is stale
      */
     @Override
     public void loadDataModel() throws LibrecException {
-
+        try {
+            if (!loadSnapshot()) {
+                throw new LibrecException("No up-to-date snapshot of the data at " + getSnapshotPath());
+            }
+        } catch (IOException e) {
+            throw new LibrecException(e);
+        }
     }
 
     /**
-     * Save data model.
+     * Save data model as a binary snapshot of the converted data.
      *
      * @throws LibrecException
      *             if error occurs during saving
      */
     @Override
     public void saveDataModel() throws LibrecException {
+        try {
+            ((TextDataConvertor) dataConvertor).saveSnapshot(getSnapshotPath());
+        } catch (IOException e) {
+            throw new LibrecException(e);
+        }
+    }
 
+    /**
+     * Load the converted data from the snapshot into the data convertor.
+     *
+     * @return true if the snapshot exists and is up to date
+     * @throws IOException if I/O error occurs during loading
+     */
+    private boolean loadSnapshot() throws IOException {
+        if (dataConvertor == null) {
+            buildConvertor();
+        }
+        return ((TextDataConvertor) dataConvertor).loadSnapshot(getSnapshotPath());
+    }
+
+    /**
+     * Get the path of the snapshot file. It is data.model.snapshot.path if
+     * set, otherwise a file named after data.input.path in the snapshot
+     * directory of dfs.result.dir.
+     *
+     * @return the path of the snapshot file
+     */
+    private String getSnapshotPath() {
+        String snapshotPath = conf.get("data.model.snapshot.path");
+        if (StringUtils.isBlank(snapshotPath)) {
+            String inputDataPath = conf.get(Configured.CONF_DATA_INPUT_PATH).trim().replaceAll("[/\\\\:\\s]+", "_");
+            snapshotPath = conf.get("dfs.result.dir", "../result") + "/snapshot/" + inputDataPath + ".snapshot";
+        }
+        return snapshotPath;
     }
 
     /**
@@ -22,7 +22,6 @@ import net.librec.conf.Configuration;
 import net.librec.data.DataConvertor;
 import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.SparseMatrix;
-import net.librec.math.structure.SparseVector;
 import net.librec.util.Lists;
 
 import java.util.*;
@@ -37,8 +36,8 @@ public class KCVDataSplitter extends AbstractDataSplitter {
     /** The rate dataset for splitting */
     private SparseMatrix preferenceMatrix;
 
-    /** The assign matrix for k-fold splitting */
-    private SparseMatrix assignMatrix;
+    /** The fold of each rating, in the CRS order of the rate dataset */
+    private int[] foldAssignments;
 
     /** The number of folds */
     private int cvNumber;
@@ -67,7 +66,9 @@ public class KCVDataSplitter extends AbstractDataSplitter {
     }
 
     /**
-     * preserve the k-th validation as the test set and the rest as train set
+     * preserve the k-th validation as the test set and the rest as train set.
+     * Both sets are built from the fold assignments in one pass over the rate
+     * dataset, which is shared by all folds and not copied.
      *
      * @param k the index of validation
      * @throws LibrecException if error occurs
@@ -76,20 +77,9 @@ public class KCVDataSplitter extends AbstractDataSplitter {
         if (k > 0 || k <= cvNumber) {
             preferenceMatrix = dataConvertor.getPreferenceMatrix();
 
-            trainMatrix = new SparseMatrix(preferenceMatrix);
-            testMatrix = new SparseMatrix(preferenceMatrix);
-
-            for (int u = 0, um = preferenceMatrix.numRows(); u < um; u++) {
-                SparseVector items = preferenceMatrix.row(u);
-                for (int j : items.getIndex()) {
-                    if (assignMatrix.get(u, j) == k)
-                        trainMatrix.set(u, j, 0.0);
-                    else
-                        testMatrix.set(u, j, 0.0);
-                }
-            }
-            SparseMatrix.reshape(trainMatrix);
-            SparseMatrix.reshape(testMatrix);
+            SparseMatrix[] matrices = preferenceMatrix.splitByAssignment(foldAssignments, k);
+            trainMatrix = matrices[0];
+            testMatrix = matrices[1];
         }
     }
 
@@ -98,7 +88,7 @@ public class KCVDataSplitter extends AbstractDataSplitter {
      */
     public void splitFolds() {
         this.cvNumber = conf.getInt("data.splitter.cv.number", 5);
-        if (null == assignMatrix){
+        if (null == foldAssignments){
         	splitFolds(this.cvNumber);
         }
     }
@@ -112,7 +102,6 @@ public class KCVDataSplitter extends AbstractDataSplitter {
     public void splitFolds(int kFold) {
         this.preferenceMatrix = dataConvertor.getPreferenceMatrix();
         if (kFold > 0) {
-            assignMatrix = new SparseMatrix(preferenceMatrix);
             int numRates = preferenceMatrix.getData().length;
             int numFold = kFold > numRates ? numRates : kFold;
 
@@ -123,22 +112,13 @@ public class KCVDataSplitter extends AbstractDataSplitter {
                 rdm.add(new AbstractMap.SimpleImmutableEntry<>((int) (i / indvCount) + 1, Randoms.uniform()));
             }
 
+            // the i-th rating in the CRS order is assigned to fold[i]
             int[] fold = new int[numRates];
             Lists.sortList(rdm,true);
             for(int index = 0; index < numRates; index ++){
                 fold[index] = rdm.get(index).getKey();
             }
-
-            int[] row_ptr = preferenceMatrix.getRowPointers();
-            int[] col_idx = preferenceMatrix.getColumnIndices();
-
-            int i = 0;
-            for (int userIdx= 0, numUser = preferenceMatrix.numRows(); userIdx < numUser; userIdx++) {
-                for (int idx = row_ptr[userIdx], end = row_ptr[userIdx + 1]; idx < end; idx++) {
-                    int itemIdx = col_idx[idx];
-                    assignMatrix.set(userIdx, itemIdx, fold[i++]);
-                }
-            }
+            foldAssignments = fold;
         }
     }
 
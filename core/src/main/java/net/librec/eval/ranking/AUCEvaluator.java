@@ -84,8 +84,8 @@ public class AUCEvaluator extends AbstractRecommenderEvaluator {
 
                 int numCorrectPairs = 0;
                 int hits = 0;
-                for (Integer itemIdx : recommendSetByUser) {
-                    if (!testSetByUser.contains(itemIdx)) {
+                for (int indexOfItem = 0; indexOfItem < topK; ++indexOfItem) {
+                    if (!testSetByUser.contains(recommendListByUser.get(indexOfItem).getKey())) {
                         numCorrectPairs += hits;
                     } else {
                         hits ++;
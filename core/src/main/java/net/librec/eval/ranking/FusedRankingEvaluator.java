@@ -0,0 +1,439 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval.ranking;
+
+import net.librec.common.LibrecException;
+import net.librec.eval.Measure;
+import net.librec.eval.Measure.MeasureValue;
+import net.librec.math.algorithm.Maths;
+import net.librec.math.structure.SparseMatrix;
+import net.librec.recommender.RecommenderContext;
+import net.librec.recommender.item.ColumnarRecommendedList;
+import net.librec.recommender.item.ItemEntry;
+import net.librec.recommender.item.RecommendedList;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluate several ranking measures at several cutoffs in a single pass. The
+ * recommended list and the test items of each user are walked once, the test
+ * items are looked up in a reusable array instead of a set, and the measures
+ * are accumulated in primitive arrays. The users can be split into blocks
+ * evaluated by several threads.
+ * <p>
+ * The values are the same as those of the evaluators of the measures, e.g.
+ * {@link PrecisionEvaluator}. With more than one thread the sums of the blocks
+ * are added up in a different order, so the values may differ by rounding.
+ */
+public class FusedRankingEvaluator {
+
+    private static final Log LOG = LogFactory.getLog(FusedRankingEvaluator.class);
+
+    private final List<MeasureValue> measureValues;
+
+    /** the cutoff of each measure value, which is 0 if the cutoff is not given */
+    private final int[] topNs;
+
+    /** the largest cutoff, up to which the lists are walked */
+    private final int maxTopN;
+
+    private final boolean hasNovelty, hasEntropy;
+
+    private int numThreads = 1;
+
+    private SparseMatrix testMatrix;
+    private RecommendedList recommendedList;
+
+    /** the number of items which are not in the training set of each user, for AUC */
+    private int[] numDroppedItems;
+
+    /** the number of occurrences of each item in the training and test sets, for novelty */
+    private int[] itemCounts;
+
+    /** idealDCGs[n] is the ideal DCG of n relevant items */
+    private double[] idealDCGs;
+
+    /**
+     * Construct an evaluator of the given measure values.
+     *
+     * @param measureValues measures and cutoffs to evaluate, which must be
+     *                      supported by {@link #isSupported(Measure)}
+     */
+    public FusedRankingEvaluator(List<MeasureValue> measureValues) {
+        this.measureValues = new ArrayList<>(measureValues);
+        topNs = new int[measureValues.size()];
+        int maxTopN = 0;
+        boolean hasNovelty = false, hasEntropy = false;
+        for (int measureIdx = 0; measureIdx < topNs.length; measureIdx++) {
+            MeasureValue measureValue = measureValues.get(measureIdx);
+            if (!isSupported(measureValue.getMeasure())) {
+                throw new IllegalArgumentException(measureValue.getMeasure() + " is not a supported ranking measure");
+            }
+            Integer topN = measureValue.getTopN();
+            topNs[measureIdx] = topN != null && topN > 0 ? topN : 0;
+            maxTopN = Math.max(maxTopN, topNs[measureIdx]);
+            hasNovelty |= measureValue.getMeasure() == Measure.Novelty;
+            hasEntropy |= measureValue.getMeasure() == Measure.Entropy;
+        }
+        this.maxTopN = maxTopN;
+        this.hasNovelty = hasNovelty;
+        this.hasEntropy = hasEntropy;
+    }
+
+    /**
+     * Return whether a measure can be evaluated by this evaluator.
+     *
+     * @param measure the measure
+     * @return true if the measure is supported
+     */
+    public static boolean isSupported(Measure measure) {
+        switch (measure) {
+            case AUC:
+            case AP:
+            case IDCG:
+            case NDCG:
+            case PRECISION:
+            case RECALL:
+            case RR:
+            case Novelty:
+            case Entropy:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Set the number of threads to evaluate the users.
+     *
+     * @param numThreads the number of threads
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Evaluate on the recommender context with the recommended list. The
+     * number of threads is read from rec.eval.thread.count.
+     *
+     * @param context          the recommender context
+     * @param recommendedList  the list of recommended items
+     * @return the value of each measure value
+     * @throws LibrecException if error occurs during evaluating
+     */
+    public Map<MeasureValue, Double> evaluate(RecommenderContext context, RecommendedList recommendedList) throws LibrecException {
+        setNumThreads(context.getConf().getInt("rec.eval.thread.count", 1));
+        return evaluate(context.getDataModel().getDataSplitter().getTrainData(),
+                context.getDataModel().getDataSplitter().getTestData(), recommendedList);
+    }
+
+    /**
+     * Evaluate on the test set with the list of recommended items.
+     *
+     * @param trainMatrix      the given training set
+     * @param testMatrix       the given test set
+     * @param recommendedList  the list of recommended items
+     * @return the value of each measure value
+     * @throws LibrecException if error occurs during evaluating
+     */
+    public Map<MeasureValue, Double> evaluate(SparseMatrix trainMatrix, SparseMatrix testMatrix,
+                                              RecommendedList recommendedList) throws LibrecException {
+        this.testMatrix = testMatrix;
+        this.recommendedList = recommendedList;
+        int numUsers = testMatrix.numRows();
+        int numItems = testMatrix.numColumns();
+
+        numDroppedItems = new int[trainMatrix.numRows()];
+        for (int userIdx = 0; userIdx < numDroppedItems.length; userIdx++) {
+            numDroppedItems[userIdx] = trainMatrix.numColumns() - trainMatrix.rowSize(userIdx);
+        }
+        if (hasNovelty) {
+            itemCounts = new int[numItems];
+            for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+                itemCounts[itemIdx] = trainMatrix.columnSize(itemIdx) + testMatrix.columnSize(itemIdx);
+            }
+        }
+        idealDCGs = new double[maxTopN + 1];
+        for (int index = 0; index < maxTopN; index++) {
+            idealDCGs[index + 1] = 1.0d / Maths.log(index + 2, 2) + idealDCGs[index];
+        }
+
+        int numBlockThreads = Math.max(1, Math.min(numThreads, numUsers));
+        List<EvaluationBlock> blocks = new ArrayList<>();
+        if (numBlockThreads == 1) {
+            blocks.add(new EvaluationBlock(0, numUsers));
+        } else {
+            int blockSize = (numUsers + numBlockThreads * 4 - 1) / (numBlockThreads * 4);
+            for (int fromUser = 0; fromUser < numUsers; fromUser += blockSize) {
+                blocks.add(new EvaluationBlock(fromUser, Math.min(numUsers, fromUser + blockSize)));
+            }
+        }
+
+        if (numBlockThreads == 1) {
+            for (EvaluationBlock block : blocks) {
+                block.call();
+            }
+        } else {
+            ExecutorService executorService = Executors.newFixedThreadPool(numBlockThreads);
+            try {
+                List<Future<EvaluationBlock>> results = executorService.invokeAll(blocks);
+                for (Future<EvaluationBlock> result : results) {
+                    result.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LibrecException) {
+                    throw (LibrecException) e.getCause();
+                }
+                if (e.getCause() instanceof IndexOutOfBoundsException) {
+                    throw (IndexOutOfBoundsException) e.getCause();
+                }
+                LOG.error("", e);
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                LOG.error("", e);
+                throw new IllegalStateException(e);
+            } finally {
+                executorService.shutdown();
+            }
+        }
+
+        // add up the blocks in the order of the users
+        double[] sums = new double[topNs.length];
+        int numTestUsers = 0;
+        int[][] recommendedCounts = new int[topNs.length][];
+        for (EvaluationBlock block : blocks) {
+            for (int measureIdx = 0; measureIdx < topNs.length; measureIdx++) {
+                sums[measureIdx] += block.sums[measureIdx];
+                if (block.recommendedCounts[measureIdx] != null) {
+                    if (recommendedCounts[measureIdx] == null) {
+                        recommendedCounts[measureIdx] = new int[numItems];
+                    }
+                    for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+                        recommendedCounts[measureIdx][itemIdx] += block.recommendedCounts[measureIdx][itemIdx];
+                    }
+                }
+            }
+            numTestUsers += block.numTestUsers;
+        }
+
+        Map<MeasureValue, Double> evaluatedMap = new HashMap<>();
+        for (int measureIdx = 0; measureIdx < topNs.length; measureIdx++) {
+            double value;
+            switch (measureValues.get(measureIdx).getMeasure()) {
+                case Novelty:
+                    value = sums[measureIdx] / (numUsers * Math.log(2));
+                    break;
+                case Entropy:
+                    double sumEntropy = 0;
+                    for (int count : recommendedCounts[measureIdx]) {
+                        if (count > 0) {
+                            double estmProbability = ((double) count) / numUsers;
+                            sumEntropy += estmProbability * (-Math.log(estmProbability));
+                        }
+                    }
+                    value = sumEntropy / Math.log(2);
+                    break;
+                default:
+                    value = numTestUsers > 0 ? sums[measureIdx] / numTestUsers : 0.0d;
+                    break;
+            }
+            evaluatedMap.put(measureValues.get(measureIdx), value);
+        }
+
+        this.testMatrix = null;
+        this.recommendedList = null;
+        return evaluatedMap;
+    }
+
+    /**
+     * The sums of the measures over the users in [fromUser, toUserExclusive).
+     * The recommended list of a user is walked once up to the largest cutoff,
+     * keeping the prefix sums from which the measures at each cutoff are read.
+     */
+    private class EvaluationBlock implements Callable<EvaluationBlock> {
+
+        private final int fromUser, toUserExclusive;
+
+        private final double[] sums = new double[topNs.length];
+        private final int[][] recommendedCounts = new int[topNs.length][];
+        private int numTestUsers;
+
+        private EvaluationBlock(int fromUser, int toUserExclusive) {
+            this.fromUser = fromUser;
+            this.toUserExclusive = toUserExclusive;
+        }
+
+        @Override
+        public EvaluationBlock call() {
+            int numItems = testMatrix.numColumns();
+            int[] rowPtr = testMatrix.getRowPointers();
+            int[] colInd = testMatrix.getColumnIndices();
+            double[] rowData = testMatrix.getData();
+
+            // testMarks[itemIdx] == userIdx + 1 iff itemIdx is a test item of userIdx
+            int[] testMarks = new int[numItems];
+            // prefix sums over the first n recommended items
+            int[] numHits = new int[maxTopN + 1];
+            double[] precisionSums = new double[maxTopN + 1];
+            double[] dcgs = new double[maxTopN + 1];
+            int[] numCorrectPairs = new int[maxTopN + 1];
+            double[] selfInformations = new double[maxTopN];
+            int[] recommendedItems = new int[maxTopN];
+            // the entries of a columnar list are read without creating item entries
+            ColumnarRecommendedList columnarList = recommendedList instanceof ColumnarRecommendedList
+                    ? (ColumnarRecommendedList) recommendedList : null;
+            for (int measureIdx = 0; measureIdx < topNs.length; measureIdx++) {
+                if (measureValues.get(measureIdx).getMeasure() == Measure.Entropy) {
+                    recommendedCounts[measureIdx] = new int[numItems];
+                }
+            }
+
+            for (int userIdx = fromUser; userIdx < toUserExclusive; userIdx++) {
+                int numTestItems = 0;
+                for (int j = rowPtr[userIdx]; j < rowPtr[userIdx + 1]; j++) {
+                    if (rowData[j] != 0.0 && testMarks[colInd[j]] != userIdx + 1) {
+                        testMarks[colInd[j]] = userIdx + 1;
+                        numTestItems++;
+                    }
+                }
+                if (numTestItems == 0 && !hasNovelty && !hasEntropy) {
+                    continue;
+                }
+
+                List<ItemEntry<Integer, Double>> recommendListByUser = null;
+                int listSize;
+                if (columnarList != null) {
+                    listSize = columnarList.getUserSize(userIdx);
+                } else {
+                    recommendListByUser = recommendedList.getItemIdxListByUserIdx(userIdx);
+                    listSize = recommendListByUser.size();
+                }
+                int maxTopK = maxTopN <= listSize ? maxTopN : listSize;
+                int firstHit = -1;
+                for (int indexOfItem = 0; indexOfItem < maxTopK; indexOfItem++) {
+                    int itemIdx = columnarList != null ? columnarList.getItemIdx(userIdx, indexOfItem)
+                            : recommendListByUser.get(indexOfItem).getKey();
+                    recommendedItems[indexOfItem] = itemIdx;
+                    boolean isHit = testMarks[itemIdx] == userIdx + 1;
+                    numHits[indexOfItem + 1] = numHits[indexOfItem];
+                    precisionSums[indexOfItem + 1] = precisionSums[indexOfItem];
+                    dcgs[indexOfItem + 1] = dcgs[indexOfItem];
+                    numCorrectPairs[indexOfItem + 1] = numCorrectPairs[indexOfItem];
+                    if (isHit) {
+                        numHits[indexOfItem + 1]++;
+                        precisionSums[indexOfItem + 1] += 1.0 * numHits[indexOfItem + 1] / (indexOfItem + 1);
+                        dcgs[indexOfItem + 1] += 1 / Maths.log(indexOfItem + 2, 2);
+                        if (firstHit < 0) {
+                            firstHit = indexOfItem;
+                        }
+                    } else {
+                        numCorrectPairs[indexOfItem + 1] += numHits[indexOfItem];
+                    }
+                    if (hasNovelty) {
+                        int count = itemCounts[itemIdx];
+                        selfInformations[indexOfItem] = count > 0 ? -Math.log(((double) count) / testMatrix.numRows()) : 0.0d;
+                    }
+                }
+
+                if (numTestItems > 0) {
+                    numTestUsers++;
+                }
+                for (int measureIdx = 0; measureIdx < topNs.length; measureIdx++) {
+                    Measure measure = measureValues.get(measureIdx).getMeasure();
+                    int topN = topNs[measureIdx];
+                    int topK = topN <= listSize ? topN : listSize;
+                    if (measure == Measure.Novelty) {
+                        // the self-information is added item by item as in NoveltyEvaluator
+                        for (int indexOfItem = 0; indexOfItem < topK; indexOfItem++) {
+                            sums[measureIdx] += selfInformations[indexOfItem];
+                        }
+                        continue;
+                    }
+                    if (measure == Measure.Entropy) {
+                        for (int indexOfItem = 0; indexOfItem < topK; indexOfItem++) {
+                            recommendedCounts[measureIdx][recommendedItems[indexOfItem]]++;
+                        }
+                        continue;
+                    }
+                    if (numTestItems == 0) {
+                        continue;
+                    }
+                    switch (measure) {
+                        case PRECISION:
+                            sums[measureIdx] += numHits[topK] / (topN + 0.0);
+                            break;
+                        case RECALL:
+                            sums[measureIdx] += numHits[topK] / (numTestItems + 0.0);
+                            break;
+                        case AP:
+                            sums[measureIdx] += precisionSums[topK] / (numTestItems < topK ? numTestItems : topK);
+                            break;
+                        case NDCG:
+                            sums[measureIdx] += dcgs[topK] / idealDCGs[numTestItems < topK ? numTestItems : topK];
+                            break;
+                        case RR:
+                            if (firstHit >= 0 && firstHit < topK) {
+                                sums[measureIdx] += 1.0d / (firstHit + 1.0d);
+                            }
+                            break;
+                        case IDCG:
+                            double idcg = 0.0;
+                            for (int i = 0; i < numTestItems; i++) {
+                                idcg += 1 / Maths.log(i + 2.0, 2);
+                            }
+                            sums[measureIdx] += idcg;
+                            break;
+                        case AUC:
+                            sums[measureIdx] += auc(userIdx, listSize, topK, numTestItems, numHits[topK], numCorrectPairs[topK]);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * The AUC of a user as in {@link AUCEvaluator}, where the items which
+         * are not in the training set and not recommended are ranked last.
+         */
+        private double auc(int userIdx, int listSize, int topK, int numTestItems, int numRelevantItems, int numCorrectPairs) {
+            int numDroppedItemsByUser = numDroppedItems[userIdx] - listSize;
+            int numMissItems = numTestItems - numRelevantItems;
+            int numEvaluatingItems = topK + numDroppedItemsByUser;
+            int numEvaluatingPairs = (numEvaluatingItems - numRelevantItems) * numRelevantItems;
+
+            if (numEvaluatingPairs < 0) {
+                throw new IndexOutOfBoundsException("numEvaluatingPairs cannot be less than 0.");
+            }
+            if (numEvaluatingPairs == 0) {
+                return 0.5;
+            }
+            numCorrectPairs += numRelevantItems * (numDroppedItemsByUser - numMissItems);
+            return (numCorrectPairs + 0.0) / numEvaluatingPairs;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval.rating;
+
+import net.librec.eval.Measure;
+import net.librec.eval.Measure.MeasureValue;
+import net.librec.math.structure.SparseMatrix;
+import net.librec.recommender.RecommenderContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluate the rating measures MAE, MPE, MSE and RMSE in a single pass over
+ * the predicted ratings of the test entries, which are given in a primitive
+ * array in the compressed row order of the test matrix instead of a
+ * recommended list. The values are the same as those of the evaluators of
+ * the measures, e.g. {@link RMSEEvaluator}.
+ */
+public class FusedRatingEvaluator {
+
+    private final List<MeasureValue> measureValues;
+
+    /**
+     * Construct an evaluator of the given measure values.
+     *
+     * @param measureValues measures to evaluate, which must be supported by
+     *                      {@link #isSupported(Measure)}
+     */
+    public FusedRatingEvaluator(List<MeasureValue> measureValues) {
+        for (MeasureValue measureValue : measureValues) {
+            if (!isSupported(measureValue.getMeasure())) {
+                throw new IllegalArgumentException(measureValue.getMeasure() + " is not a supported rating measure");
+            }
+        }
+        this.measureValues = new ArrayList<>(measureValues);
+    }
+
+    /**
+     * Return whether a measure can be evaluated by this evaluator.
+     *
+     * @param measure the measure
+     * @return true if the measure is supported
+     */
+    public static boolean isSupported(Measure measure) {
+        switch (measure) {
+            case MAE:
+            case MPE:
+            case MSE:
+            case RMSE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Evaluate on the recommender context with the predicted ratings. The
+     * threshold of MPE is read from rec.measure.mpe.
+     *
+     * @param context     the recommender context
+     * @param predictions the predicted ratings of the test entries
+     * @return the value of each measure value
+     */
+    public Map<MeasureValue, Double> evaluate(RecommenderContext context, double[] predictions) {
+        return evaluate(context.getDataModel().getDataSplitter().getTestData(), predictions,
+                context.getConf().getDouble("rec.measure.mpe", 0.01d));
+    }
+
+    /**
+     * Evaluate on the test set with the predicted ratings.
+     *
+     * @param testMatrix   the given test set
+     * @param predictions  the predicted ratings of the test entries, in the
+     *                     compressed row order of the test matrix
+     * @param mpeThreshold the error over which a rating is mispredicted
+     * @return the value of each measure value
+     */
+    public Map<MeasureValue, Double> evaluate(SparseMatrix testMatrix, double[] predictions, double mpeThreshold) {
+        Map<MeasureValue, Double> evaluatedMap = new HashMap<>();
+        if (testMatrix == null) {
+            for (MeasureValue measureValue : measureValues) {
+                evaluatedMap.put(measureValue, 0.0);
+            }
+            return evaluatedMap;
+        }
+
+        double[] ratings = testMatrix.getData();
+        int testSize = testMatrix.getRowPointers()[testMatrix.numRows()];
+        if (predictions.length != testSize) {
+            throw new IndexOutOfBoundsException("size of predictions does not equal testMatrix index size");
+        }
+
+        double absoluteErrors = 0.0, squaredErrors = 0.0;
+        int mpeNum = 0;
+        for (int entryIdx = 0; entryIdx < testSize; entryIdx++) {
+            double error = ratings[entryIdx] - predictions[entryIdx];
+            absoluteErrors += Math.abs(error);
+            squaredErrors += Math.pow(error, 2);
+            if (Math.abs(error) > mpeThreshold) {
+                mpeNum++;
+            }
+        }
+
+        for (MeasureValue measureValue : measureValues) {
+            double value = 0.0d;
+            if (testSize > 0) {
+                switch (measureValue.getMeasure()) {
+                    case MAE:
+                        value = absoluteErrors / testSize;
+                        break;
+                    case MPE:
+                        value = (mpeNum + 0.0) / testSize;
+                        break;
+                    case MSE:
+                        value = squaredErrors / testSize;
+                        break;
+                    case RMSE:
+                        value = Math.sqrt(squaredErrors / testSize);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            evaluatedMap.put(measureValue, value);
+        }
+        return evaluatedMap;
+    }
+}
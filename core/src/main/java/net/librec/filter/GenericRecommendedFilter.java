@@ -69,17 +69,16 @@ public class GenericRecommendedFilter implements RecommendedFilter {
      */
     private void filter(List<String> filterIdList, List<RecommendedItem> recommendedList, Set<RecommendedItem> filterRecommendedSet, String filterType) {
         if (filterIdList != null && filterIdList.size() > 0) {
-            for (String filterId : filterIdList) {
-                for (RecommendedItem recommendedItem : recommendedList) {
-                    String recommendedId = null;
-                    if (StringUtils.equals("user", filterType)) {
-                        recommendedId = recommendedItem.getUserId();
-                    } else if (StringUtils.equals("item", filterType)) {
-                        recommendedId = recommendedItem.getItemId();
-                    }
-                    if (StringUtils.equals(filterId, recommendedId)) {
-                        filterRecommendedSet.add(recommendedItem);
-                    }
+            Set<String> filterIdSet = new HashSet<>(filterIdList);
+            for (RecommendedItem recommendedItem : recommendedList) {
+                String recommendedId = null;
+                if (StringUtils.equals("user", filterType)) {
+                    recommendedId = recommendedItem.getUserId();
+                } else if (StringUtils.equals("item", filterType)) {
+                    recommendedId = recommendedItem.getItemId();
+                }
+                if (filterIdSet.contains(recommendedId)) {
+                    filterRecommendedSet.add(recommendedItem);
                 }
             }
         }
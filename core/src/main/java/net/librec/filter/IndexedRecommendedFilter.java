@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.filter;
+
+import com.google.common.collect.BiMap;
+import net.librec.conf.Configuration;
+import net.librec.conf.Configured;
+import net.librec.recommender.item.ColumnarRecommendedList;
+import net.librec.recommender.item.ItemEntry;
+import net.librec.recommender.item.RecommendedItem;
+import net.librec.recommender.item.RecommendedList;
+
+import java.util.*;
+
+/**
+ * Recommended Filter of allowed and excluded users and items, which are
+ * kept in hash sets of the ids, or in bit sets of the inner indices when the
+ * recommended list is filtered before the ids are resolved. Each entry is
+ * checked by constant time lookups instead of comparing it with every id.
+ * <p>
+ * An entry is kept if its user or its item is allowed, as in
+ * {@link GenericRecommendedFilter}, or if no users and items are allowed,
+ * and if neither its user nor its item is excluded.
+ * <p>
+ * The lists are set by the setters, or read from the configuration:
+ * rec.filter.userids, rec.filter.itemids, rec.filter.excluded.userids and
+ * rec.filter.excluded.itemids, each a comma separated list of ids.
+ */
+public class IndexedRecommendedFilter extends Configured implements RecommendedFilter {
+    /**
+     * ids of the allowed users
+     */
+    private Set<String> userIdSet = new HashSet<>();
+    /**
+     * ids of the allowed items
+     */
+    private Set<String> itemIdSet = new HashSet<>();
+    /**
+     * ids of the excluded users
+     */
+    private Set<String> excludedUserIdSet = new HashSet<>();
+    /**
+     * ids of the excluded items
+     */
+    private Set<String> excludedItemIdSet = new HashSet<>();
+
+    /**
+     * Set the configuration, and read the lists of the ids from it.
+     *
+     * @param conf the configuration
+     */
+    @Override
+    public void setConf(Configuration conf) {
+        super.setConf(conf);
+        if (conf != null) {
+            userIdSet = toSet(conf.getStrings("rec.filter.userids"));
+            itemIdSet = toSet(conf.getStrings("rec.filter.itemids"));
+            excludedUserIdSet = toSet(conf.getStrings("rec.filter.excluded.userids"));
+            excludedItemIdSet = toSet(conf.getStrings("rec.filter.excluded.itemids"));
+        }
+    }
+
+    /**
+     * Filter the recommended list.
+     *
+     * @param recommendedList recommendedItem list to be filtered
+     * @return filtered recommendedItem list, in the order of the given list
+     */
+    @Override
+    public List<RecommendedItem> filter(List<RecommendedItem> recommendedList) {
+        if (recommendedList == null || recommendedList.size() == 0 || isEmpty()) {
+            return recommendedList;
+        }
+        boolean hasAllowed = userIdSet.size() > 0 || itemIdSet.size() > 0;
+        List<RecommendedItem> filteredList = new ArrayList<>();
+        for (RecommendedItem recommendedItem : recommendedList) {
+            String userId = recommendedItem.getUserId();
+            String itemId = recommendedItem.getItemId();
+            if ((!hasAllowed || userIdSet.contains(userId) || itemIdSet.contains(itemId))
+                    && !excludedUserIdSet.contains(userId) && !excludedItemIdSet.contains(itemId)) {
+                filteredList.add(recommendedItem);
+            }
+        }
+        return filteredList;
+    }
+
+    /**
+     * Filter the recommended list by the inner indices of the users and
+     * items, before the ids of the entries are resolved. Ids that are not in
+     * the mappings are ignored.
+     *
+     * @param recommendedList recommended list by inner indices
+     * @param userMapping     mapping of the user ids to the inner indices
+     * @param itemMapping     mapping of the item ids to the inner indices
+     * @return filtered recommended list by inner indices
+     */
+    public RecommendedList filter(RecommendedList recommendedList, BiMap<String, Integer> userMapping,
+                                  BiMap<String, Integer> itemMapping) {
+        if (recommendedList == null || recommendedList.size() == 0 || isEmpty()) {
+            return recommendedList;
+        }
+        boolean hasAllowed = userIdSet.size() > 0 || itemIdSet.size() > 0;
+        BitSet allowedUsers = toBitSet(userIdSet, userMapping);
+        BitSet allowedItems = toBitSet(itemIdSet, itemMapping);
+        BitSet excludedUsers = toBitSet(excludedUserIdSet, userMapping);
+        BitSet excludedItems = toBitSet(excludedItemIdSet, itemMapping);
+
+        int numUsers = 0;
+        Iterator<Integer> userItr = recommendedList.userIterator();
+        while (userItr.hasNext()) {
+            numUsers = Math.max(numUsers, userItr.next() + 1);
+        }
+
+        // count the kept entries of each user, then copy them into compressed rows
+        int[] userOffsets = new int[numUsers + 1];
+        userItr = recommendedList.userIterator();
+        while (userItr.hasNext()) {
+            int userIdx = userItr.next();
+            if (!excludedUsers.get(userIdx)) {
+                boolean userAllowed = !hasAllowed || allowedUsers.get(userIdx);
+                userOffsets[userIdx + 1] = keepEntries(recommendedList, userIdx, userAllowed, allowedItems,
+                        excludedItems, null, null, 0);
+            }
+        }
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            userOffsets[userIdx + 1] += userOffsets[userIdx];
+        }
+        int[] itemIndices = new int[userOffsets[numUsers]];
+        double[] values = new double[userOffsets[numUsers]];
+        userItr = recommendedList.userIterator();
+        while (userItr.hasNext()) {
+            int userIdx = userItr.next();
+            if (!excludedUsers.get(userIdx)) {
+                boolean userAllowed = !hasAllowed || allowedUsers.get(userIdx);
+                keepEntries(recommendedList, userIdx, userAllowed, allowedItems, excludedItems,
+                        itemIndices, values, userOffsets[userIdx]);
+            }
+        }
+        return new ColumnarRecommendedList(userOffsets, itemIndices, values);
+    }
+
+    /**
+     * Copy the kept entries of a user into the arrays from an offset, or only
+     * count them if the arrays are null.
+     *
+     * @return number of the kept entries
+     */
+    private static int keepEntries(RecommendedList recommendedList, int userIdx, boolean userAllowed,
+                                   BitSet allowedItems, BitSet excludedItems,
+                                   int[] itemIndices, double[] values, int offset) {
+        int entryIdx = offset;
+        if (recommendedList instanceof ColumnarRecommendedList) {
+            ColumnarRecommendedList columnarList = (ColumnarRecommendedList) recommendedList;
+            for (int position = 0, userSize = columnarList.getUserSize(userIdx); position < userSize; position++) {
+                int itemIdx = columnarList.getItemIdx(userIdx, position);
+                if ((userAllowed || allowedItems.get(itemIdx)) && !excludedItems.get(itemIdx)) {
+                    if (itemIndices != null) {
+                        itemIndices[entryIdx] = itemIdx;
+                        values[entryIdx] = columnarList.getValue(userIdx, position);
+                    }
+                    entryIdx++;
+                }
+            }
+        } else {
+            for (ItemEntry<Integer, Double> itemEntry : recommendedList.getItemIdxListByUserIdx(userIdx)) {
+                int itemIdx = itemEntry.getKey();
+                if ((userAllowed || allowedItems.get(itemIdx)) && !excludedItems.get(itemIdx)) {
+                    if (itemIndices != null) {
+                        itemIndices[entryIdx] = itemIdx;
+                        values[entryIdx] = itemEntry.getValue();
+                    }
+                    entryIdx++;
+                }
+            }
+        }
+        return entryIdx - offset;
+    }
+
+    /**
+     * Return whether no users and items are allowed or excluded, so that the
+     * filter keeps every entry.
+     *
+     * @return true if the filter keeps every entry
+     */
+    public boolean isEmpty() {
+        return userIdSet.isEmpty() && itemIdSet.isEmpty() && excludedUserIdSet.isEmpty() && excludedItemIdSet.isEmpty();
+    }
+
+    /**
+     * Set the ids of the allowed users.
+     *
+     * @param userIdList the userIdList to set
+     */
+    public void setUserIdList(List<String> userIdList) {
+        this.userIdSet = toSet(userIdList);
+    }
+
+    /**
+     * Set the ids of the allowed items.
+     *
+     * @param itemIdList the itemIdList to set
+     */
+    public void setItemIdList(List<String> itemIdList) {
+        this.itemIdSet = toSet(itemIdList);
+    }
+
+    /**
+     * Set the ids of the excluded users.
+     *
+     * @param excludedUserIdList the excludedUserIdList to set
+     */
+    public void setExcludedUserIdList(List<String> excludedUserIdList) {
+        this.excludedUserIdSet = toSet(excludedUserIdList);
+    }
+
+    /**
+     * Set the ids of the excluded items.
+     *
+     * @param excludedItemIdList the excludedItemIdList to set
+     */
+    public void setExcludedItemIdList(List<String> excludedItemIdList) {
+        this.excludedItemIdSet = toSet(excludedItemIdList);
+    }
+
+    private static Set<String> toSet(String[] ids) {
+        return ids == null ? new HashSet<String>() : toSet(Arrays.asList(ids));
+    }
+
+    private static Set<String> toSet(Collection<String> ids) {
+        Set<String> idSet = new HashSet<>();
+        if (ids != null) {
+            for (String id : ids) {
+                if (id != null) {
+                    idSet.add(id.trim());
+                }
+            }
+        }
+        return idSet;
+    }
+
+    private static BitSet toBitSet(Set<String> idSet, BiMap<String, Integer> mapping) {
+        BitSet bitSet = new BitSet();
+        for (String id : idSet) {
+            Integer idx = mapping.get(id);
+            if (idx != null) {
+                bitSet.set(idx);
+            }
+        }
+        return bitSet;
+    }
+}
@@ -20,19 +20,19 @@ package net.librec.job;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
 import net.librec.data.DataModel;
-import net.librec.data.DataSplitter;
-import net.librec.data.splitter.KCVDataSplitter;
-import net.librec.data.splitter.LOOCVDataSplitter;
+import net.librec.data.model.FoldDataModel;
 import net.librec.eval.Measure.MeasureValue;
 import net.librec.eval.RecommenderEvaluator;
+import net.librec.filter.IndexedRecommendedFilter;
 import net.librec.filter.RecommendedFilter;
 import net.librec.math.algorithm.Randoms;
 import net.librec.recommender.Recommender;
 import net.librec.recommender.RecommenderContext;
 import net.librec.recommender.item.RecommendedItem;
+import net.librec.recommender.item.RecommendedList;
+import net.librec.recommender.item.RecommendedListWriter;
 import net.librec.similarity.RecommenderSimilarity;
 import net.librec.util.DriverClassUtil;
-import net.librec.util.FileUtil;
 import net.librec.util.JobUtil;
 import net.librec.util.ReflectionUtil;
 import org.apache.commons.lang.StringUtils;
@@ -44,6 +44,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * RecommenderJob
@@ -71,6 +72,20 @@ public class RecommenderJob {
         setJobId(JobUtil.generateNewJobId());
     }
 
+    /**
+     * Initializes a job of one fold of cross validation, which has its own
+     * configuration and the data model of the fold, and collects the
+     * evaluate results of the fold.
+     *
+     * @param conf      configuration of the fold
+     * @param dataModel data model of the fold
+     */
+    private RecommenderJob(Configuration conf, DataModel dataModel) {
+        this.conf = conf;
+        this.dataModel = dataModel;
+        this.cvEvalResults = new HashMap<>();
+    }
+
     /**
      * run Job
      *
@@ -87,11 +102,7 @@ public class RecommenderJob {
             case "kcv": {
                 int cvNumber = conf.getInt("data.splitter.cv.number", 1);
                 cvEvalResults = new HashMap<>();
-                for (int i = 1; i <= cvNumber; i++) {
-                    LOG.info("Splitter info: the index of " + modelSplit + " splitter times is " + i);
-                    conf.set("data.splitter.cv.index", String.valueOf(i));
-                    executeRecommenderJob();
-                }
+                executeCrossValidation(modelSplit, cvNumber);
                 printCVAverageResult();
                 break;
             }
@@ -101,11 +112,7 @@ public class RecommenderJob {
                     executeRecommenderJob();
                 } else {
                     cvEvalResults = new HashMap<>();
-                    for (int i = 1; i <= conf.getInt("data.splitter.cv.number", 1); i++) {
-                        LOG.info("Splitter info: the index of " + modelSplit + " splitter times is " + i);
-                        conf.set("data.splitter.cv.index", String.valueOf(i));
-                        executeRecommenderJob();
-                    }
+                    executeCrossValidation(modelSplit, conf.getInt("data.splitter.cv.number", 1));
                     printCVAverageResult();
                 }
                 break;
@@ -125,6 +132,113 @@ public class RecommenderJob {
         }
     }
 
+    /**
+     * Execute the folds of cross validation. The data are converted and the
+     * folds are assigned first, then each fold is split and run with its own
+     * random stream bound by {@link Randoms#bind(long)}, so the results of
+     * the folds do not depend on the order in which they run. With more than
+     * one thread of data.splitter.cv.thread.count, the folds are run at the
+     * same time, each split in its task with its own copy of the
+     * configuration, data model and recommender, so at most as many folds as
+     * threads are in memory, and their evaluate results are collected in the
+     * order of the folds.
+     *
+     * @param modelSplit the name of the splitter
+     * @param cvNumber   the number of folds
+     * @throws LibrecException        if error occurs
+     * @throws ClassNotFoundException if can't find the class of filter
+     * @throws IOException            if I/O error occurs
+     */
+    private void executeCrossValidation(final String modelSplit, int cvNumber) throws LibrecException, ClassNotFoundException, IOException {
+        // assign the folds with the generator of the seed, before the folds draw from their own streams
+        conf.set("data.splitter.cv.index", "1");
+        generateDataModel();
+
+        int numThreads = Math.min(conf.getInt("data.splitter.cv.thread.count", 1), cvNumber);
+        if (numThreads <= 1) {
+            for (int i = 1; i <= cvNumber; i++) {
+                LOG.info("Splitter info: the index of " + modelSplit + " splitter times is " + i);
+                conf.set("data.splitter.cv.index", String.valueOf(i));
+                Randoms.bind(i);
+                try {
+                    executeRecommenderJob();
+                } finally {
+                    Randoms.unbind();
+                }
+            }
+            return;
+        }
+
+        List<Callable<Map<String, List<Double>>>> foldTasks = new ArrayList<>();
+        for (int i = 1; i <= cvNumber; i++) {
+            final int cvIndex = i;
+            foldTasks.add(new Callable<Map<String, List<Double>>>() {
+                @Override
+                public Map<String, List<Double>> call() throws Exception {
+                    Randoms.bind(cvIndex);
+                    try {
+                        RecommenderJob foldJob = splitFold(modelSplit, cvIndex);
+                        foldJob.executeRecommenderJob();
+                        return foldJob.cvEvalResults;
+                    } finally {
+                        Randoms.unbind();
+                    }
+                }
+            });
+        }
+
+        List<Map<String, List<Double>>> foldEvalResults = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (Future<Map<String, List<Double>>> result : executorService.invokeAll(foldTasks)) {
+                foldEvalResults.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LibrecException) {
+                throw (LibrecException) e.getCause();
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) e.getCause();
+            }
+            LOG.error("", e);
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            LOG.error("", e);
+            throw new IllegalStateException(e);
+        } finally {
+            executorService.shutdown();
+        }
+
+        for (Map<String, List<Double>> evalResults : foldEvalResults) {
+            for (Map.Entry<String, List<Double>> entry : evalResults.entrySet()) {
+                for (Double evalValue : entry.getValue()) {
+                    collectCVResults(entry.getKey(), evalValue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a fold with the data model of this job, one fold at a time, and
+     * return the job of the fold, which has its own copy of the
+     * configuration and a data model keeping the sets of the fold.
+     *
+     * @param modelSplit the name of the splitter
+     * @param cvIndex    the index of the fold
+     * @return the job of the fold
+     * @throws LibrecException        if error occurs
+     * @throws ClassNotFoundException if can't find the class of the data model
+     * @throws IOException            if I/O error occurs
+     */
+    private synchronized RecommenderJob splitFold(String modelSplit, int cvIndex) throws LibrecException, ClassNotFoundException, IOException {
+        LOG.info("Splitter info: the index of " + modelSplit + " splitter times is " + cvIndex);
+        conf.set("data.splitter.cv.index", String.valueOf(cvIndex));
+        generateDataModel();
+        Configuration foldConf = new Configuration(conf);
+        return new RecommenderJob(foldConf, new FoldDataModel(dataModel, foldConf));
+    }
+
     /**
      * execute Recommender Job
      *
@@ -143,9 +257,20 @@ public class RecommenderJob {
         Recommender recommender = (Recommender) ReflectionUtil.newInstance((Class<Recommender>) getRecommenderClass(), conf);
         recommender.recommend(context);
         executeEvaluator(recommender);
-        List<RecommendedItem> recommendedList = recommender.getRecommendedList();
-        recommendedList = filterResult(recommendedList);
-        saveResult(recommendedList);
+        RecommendedFilter filter = getFilterClass() != null ? (RecommendedFilter) ReflectionUtil.newInstance(getFilterClass(), conf) : null;
+        RecommendedList recommendedIdxList = recommender.getRecommendedIdxList();
+        if (recommendedIdxList != null && (filter == null || filter instanceof IndexedRecommendedFilter)) {
+            // filter and stream the result by the inner indices without converting it to a list of ids
+            if (filter != null) {
+                recommendedIdxList = ((IndexedRecommendedFilter) filter).filter(recommendedIdxList,
+                        dataModel.getUserMappingData(), dataModel.getItemMappingData());
+            }
+            saveResult(recommendedIdxList);
+        } else {
+            List<RecommendedItem> recommendedList = recommender.getRecommendedList();
+            recommendedList = filterResult(filter, recommendedList);
+            saveResult(recommendedList);
+        }
     }
 
     /**
@@ -189,14 +314,12 @@ public class RecommenderJob {
     /**
      * Filter the results.
      *
+     * @param filter           filter of the results, or null if not filtered
      * @param recommendedList  list of recommended items
      * @return recommended List
-     * @throws ClassNotFoundException
-     * @throws IOException
      */
-    private List<RecommendedItem> filterResult(List<RecommendedItem> recommendedList) throws ClassNotFoundException, IOException {
-        if (getFilterClass() != null) {
-            RecommendedFilter filter = (RecommendedFilter) ReflectionUtil.newInstance(getFilterClass(), null);
+    private List<RecommendedItem> filterResult(RecommendedFilter filter, List<RecommendedItem> recommendedList) {
+        if (filter != null) {
             recommendedList = filter.filter(recommendedList);
         }
         return recommendedList;
@@ -255,31 +378,63 @@ public class RecommenderJob {
      */
     public void saveResult(List<RecommendedItem> recommendedList) throws LibrecException, IOException, ClassNotFoundException {
         if (recommendedList != null && recommendedList.size() > 0) {
-            // make output path
-            String algoSimpleName = DriverClassUtil.getDriverName(getRecommenderClass());
-            String outputPath = conf.get("dfs.result.dir") + "/" + conf.get("data.input.path") + "-" + algoSimpleName + "-output/" + algoSimpleName;
-            if (null != dataModel && (dataModel.getDataSplitter() instanceof KCVDataSplitter || dataModel.getDataSplitter() instanceof LOOCVDataSplitter) && null != conf.getInt("data.splitter.cv.index")) {
-                outputPath = outputPath + "-" + String.valueOf(conf.getInt("data.splitter.cv.index"));
-            }
-            LOG.info("Result path is " + outputPath);
-            // convert itemList to string
-            StringBuilder sb = new StringBuilder();
-            for (RecommendedItem recItem : recommendedList) {
-                String userId = recItem.getUserId();
-                String itemId = recItem.getItemId();
-                String value = String.valueOf(recItem.getValue());
-                sb.append(userId).append(",").append(itemId).append(",").append(value).append("\n");
+            // stream the items into the file
+            RecommendedListWriter writer = openResultWriter();
+            try {
+                writer.write(recommendedList);
+            } finally {
+                writer.close();
             }
-            String resultData = sb.toString();
-            // save resultData
+        }
+    }
+
+    /**
+     * Save result from the inner indices of the users and items, which are
+     * converted to ids user by user while the result is written.
+     *
+     * @param recommendedList         recommended list by inner indices
+     * @throws LibrecException        if error occurs
+     * @throws IOException            if I/O error occurs
+     * @throws ClassNotFoundException if class not found error occurs
+     */
+    public void saveResult(RecommendedList recommendedList) throws LibrecException, IOException, ClassNotFoundException {
+        if (recommendedList != null && recommendedList.size() > 0 && null != dataModel
+                && dataModel.getUserMappingData() != null && dataModel.getUserMappingData().size() > 0
+                && dataModel.getItemMappingData() != null && dataModel.getItemMappingData().size() > 0) {
+            RecommendedListWriter writer = openResultWriter();
             try {
-                FileUtil.writeString(outputPath, resultData);
-            } catch (Exception e) {
-                e.printStackTrace();
+                writer.write(recommendedList, dataModel.getUserMappingData(), dataModel.getItemMappingData());
+            } finally {
+                writer.close();
             }
         }
     }
 
+    /**
+     * Open the writer of the result in the format of dfs.result.format, which
+     * is text, gzip or binary.
+     *
+     * @return writer of the result
+     * @throws IOException            if I/O error occurs
+     * @throws ClassNotFoundException if class not found error occurs
+     */
+    private RecommendedListWriter openResultWriter() throws IOException, ClassNotFoundException {
+        // make output path
+        String algoSimpleName = DriverClassUtil.getDriverName(getRecommenderClass());
+        String outputPath = conf.get("dfs.result.dir") + "/" + conf.get("data.input.path") + "-" + algoSimpleName + "-output/" + algoSimpleName;
+        if (null != cvEvalResults && null != conf.getInt("data.splitter.cv.index")) {
+            outputPath = outputPath + "-" + String.valueOf(conf.getInt("data.splitter.cv.index"));
+        }
+        RecommendedListWriter.Format format = RecommendedListWriter.Format.of(conf.get("dfs.result.format"));
+        if (format == RecommendedListWriter.Format.GZIP) {
+            outputPath = outputPath + ".gz";
+        } else if (format == RecommendedListWriter.Format.BINARY) {
+            outputPath = outputPath + ".bin";
+        }
+        LOG.info("Result path is " + outputPath);
+        return new RecommendedListWriter(outputPath, format);
+    }
+
     /**
      * Print the average evaluate results when using cross validation.
      */
@@ -304,8 +459,7 @@ public class RecommenderJob {
      * @param evalValue  value of the evaluate result
      */
     private void collectCVResults(String evalName, Double evalValue) {
-        DataSplitter splitter = dataModel.getDataSplitter();
-        if (splitter != null && (splitter instanceof KCVDataSplitter || splitter instanceof LOOCVDataSplitter)) {
+        if (null != cvEvalResults) {
             if (cvEvalResults.containsKey(evalName)) {
                 cvEvalResults.get(evalName).add(evalValue);
             } else {
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+/**
+ * Walker's alias table of a discrete distribution given by unnormalized
+ * weights, built by Vose's method in O(n) and sampled in O(1). The table
+ * keeps the weights it is built from, e.g. for a Metropolis-Hastings
+ * correction when it is used as a stale proposal.
+ * <p>
+ * The work lists of Vose's method are given to {@link #build} by the caller,
+ * so that many tables, e.g. one per item, can share them.
+ */
+public class AliasTable {
+
+    private final int size;
+    private final double[] weights;
+    private final double[] probs;
+    private final int[] aliases;
+    private double total;
+
+    /**
+     * Construct an empty table for distributions over [0, size).
+     *
+     * @param size number of outcomes
+     */
+    public AliasTable(int size) {
+        this.size = size;
+        this.weights = new double[size];
+        this.probs = new double[size];
+        this.aliases = new int[size];
+    }
+
+    /**
+     * Build the table from non-negative weights, which are copied.
+     *
+     * @param weights weights of the outcomes, not all zero
+     */
+    public void build(double[] weights) {
+        build(weights, new int[size], new int[size]);
+    }
+
+    /**
+     * Build the table from non-negative weights, which are copied, using the
+     * given work lists.
+     *
+     * @param weights weights of the outcomes, not all zero
+     * @param small   work list of at least size entries
+     * @param large   work list of at least size entries
+     */
+    public void build(double[] weights, int[] small, int[] large) {
+        System.arraycopy(weights, 0, this.weights, 0, size);
+        total = 0.0;
+        for (int i = 0; i < size; i++) {
+            total += weights[i];
+        }
+
+        int numSmall = 0, numLarge = 0;
+        for (int i = 0; i < size; i++) {
+            probs[i] = weights[i] * size / total;
+            if (probs[i] < 1.0) {
+                small[numSmall++] = i;
+            } else {
+                large[numLarge++] = i;
+            }
+        }
+        while (numSmall > 0 && numLarge > 0) {
+            int less = small[--numSmall];
+            int more = large[--numLarge];
+            aliases[less] = more;
+            probs[more] = probs[more] + probs[less] - 1.0;
+            if (probs[more] < 1.0) {
+                small[numSmall++] = more;
+            } else {
+                large[numLarge++] = more;
+            }
+        }
+        // left-overs are 1 up to rounding
+        while (numLarge > 0) {
+            probs[large[--numLarge]] = 1.0;
+        }
+        while (numSmall > 0) {
+            probs[small[--numSmall]] = 1.0;
+        }
+    }
+
+    /**
+     * Sample an outcome with probability proportional to its weight.
+     *
+     * @param uniform a random number in [0, 1)
+     * @return the outcome
+     */
+    public int sample(double uniform) {
+        double scaled = uniform * size;
+        int i = Math.min((int) scaled, size - 1);
+        return scaled - i < probs[i] ? i : aliases[i];
+    }
+
+    /**
+     * @param i outcome
+     * @return weight of the outcome the table is built from
+     */
+    public double getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * @return sum of the weights the table is built from
+     */
+    public double getTotal() {
+        return total;
+    }
+}
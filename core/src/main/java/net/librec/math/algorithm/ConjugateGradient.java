@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+/**
+ * Conjugate gradient method for a symmetric positive definite system A * x = b,
+ * where A is given by its product with a vector. Starting from a previous
+ * solution, a few steps are usually enough, as in Takács et al., Applications
+ * of the conjugate gradient method for implicit feedback collaborative
+ * filtering, RecSys 2011.
+ * <p>
+ * The buffers of the method are allocated once, so an instance is meant to
+ * be reused for many systems of the same dimension by a single thread.
+ */
+public abstract class ConjugateGradient {
+
+    /** squared norm of the residual relative to b, under which the method stops */
+    private static final double TOLERANCE = 1e-20;
+
+    private final int dim;
+    private final double[] residual;
+    private final double[] direction;
+    private final double[] product;
+
+    /**
+     * Construct a method for systems of a given dimension.
+     *
+     * @param dim dimension of the systems
+     */
+    protected ConjugateGradient(int dim) {
+        this.dim = dim;
+        this.residual = new double[dim];
+        this.direction = new double[dim];
+        this.product = new double[dim];
+    }
+
+    /**
+     * Compute the product of A and a vector.
+     *
+     * @param vector the vector
+     * @param result A * vector, to be filled
+     */
+    protected abstract void multiply(double[] vector, double[] result);
+
+    /**
+     * Improve a solution x of A * x = b in place by at most a number of steps.
+     *
+     * @param b        the right-hand side b
+     * @param x        the previous solution, overwritten by the new one
+     * @param numSteps maximum number of steps
+     * @return number of steps made
+     */
+    public int solve(double[] b, double[] x, int numSteps) {
+        multiply(x, product);
+        double residualNorm = 0.0, bNorm = 0.0;
+        for (int i = 0; i < dim; i++) {
+            residual[i] = b[i] - product[i];
+            direction[i] = residual[i];
+            residualNorm += residual[i] * residual[i];
+            bNorm += b[i] * b[i];
+        }
+
+        int step = 0;
+        for (; step < numSteps && residualNorm > TOLERANCE * bNorm; step++) {
+            multiply(direction, product);
+            double curvature = 0.0;
+            for (int i = 0; i < dim; i++) {
+                curvature += direction[i] * product[i];
+            }
+            if (!(curvature > 0)) {
+                break;
+            }
+
+            double alpha = residualNorm / curvature;
+            double nextResidualNorm = 0.0;
+            for (int i = 0; i < dim; i++) {
+                x[i] += alpha * direction[i];
+                residual[i] -= alpha * product[i];
+                nextResidualNorm += residual[i] * residual[i];
+            }
+
+            double beta = nextResidualNorm / residualNorm;
+            for (int i = 0; i < dim; i++) {
+                direction[i] = residual[i] + beta * direction[i];
+            }
+            residualNorm = nextResidualNorm;
+        }
+        return step;
+    }
+}
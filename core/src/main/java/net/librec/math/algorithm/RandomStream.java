@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import net.librec.common.LibrecException;
+import net.librec.math.structure.DenseMatrix;
+
+import java.util.Random;
+
+/**
+ * A splittable stream of random numbers by the SplitMix64 generator of
+ * Steele et al., Fast splittable pseudorandom number generators, OOPSLA 2014.
+ * <p>
+ * A stream is meant to be used by a single thread or task without
+ * synchronisation. Independent streams for other threads or tasks are split
+ * from it by {@link #split()}, or derived from a seed and the index of a task
+ * by {@link #of(long, long)}, so parallel work is reproducible for a
+ * given seed however the tasks are scheduled. See {@link Randoms#stream(long)}
+ * for the streams derived from rec.random.seed.
+ * <p>
+ * The helpers of {@link Randoms} are offered on the stream, and it can be
+ * passed wherever a {@link Random} is expected.
+ */
+public class RandomStream extends Random {
+
+    private static final long serialVersionUID = 5394640398016476375L;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+    private final long gamma;
+
+    /**
+     * Construct a stream with a seed.
+     *
+     * @param seed the seed
+     */
+    public RandomStream(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private RandomStream(long state, long gamma) {
+        super(0L);
+        this.state = state;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Return the stream of a task, e.g. of the i-th worker, derived from a
+     * seed. Streams of different indices are independent of each other.
+     *
+     * @param seed  the seed
+     * @param index index of the task
+     * @return the stream of the task
+     */
+    public static RandomStream of(long seed, long index) {
+        return new RandomStream(mix64(seed + GOLDEN_GAMMA * (2 * index + 1)), mixGamma(seed + GOLDEN_GAMMA * (2 * index + 2)));
+    }
+
+    /**
+     * Split a new stream off this one, which is independent of this stream
+     * from then on.
+     *
+     * @return the new stream
+     */
+    public RandomStream split() {
+        return new RandomStream(nextLong(), mixGamma(nextState()));
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (mix64(nextState()) >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextState());
+    }
+
+    @Override
+    public double nextDouble() {
+        return (mix64(nextState()) >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Random generate an integer in [0, range)
+     *
+     * @param range range of the interval
+     * @return an integer random generated in [0, range)
+     */
+    public int uniform(int range) {
+        return nextInt(range);
+    }
+
+    /**
+     * Random generate an integer in [min, max)
+     *
+     * @param min minimum of the range
+     * @param max maximum of the range
+     * @return an integer random generated in [min, max)
+     */
+    public int uniform(int min, int max) {
+        return min + nextInt(max - min);
+    }
+
+    /**
+     * Random (uniformly distributed) double in [0, 1)
+     *
+     * @return Random (uniformly distributed) double in [0, 1)
+     */
+    public double uniform() {
+        return nextDouble();
+    }
+
+    /**
+     * Random (uniformly distributed) double in [min, max)
+     *
+     * @param min min of the range
+     * @param max max of the range
+     * @return Random (uniformly distributed) double in [min, max)
+     */
+    public double uniform(double min, double max) {
+        return min + (max - min) * nextDouble();
+    }
+
+    /**
+     * Return a real number from a Gaussian distribution with given mean and stddev.
+     *
+     * @param mu    mean
+     * @param sigma stddev
+     * @return a real number from a Gaussian distribution with given mean and stddev
+     */
+    public double gaussian(double mu, double sigma) {
+        return Randoms.gaussian(this, mu, sigma);
+    }
+
+    /**
+     * Randomly sample 1 point from Gamma Distribution with the given parameters.
+     *
+     * @param alpha alpha parameter for Gamma Distribution.
+     * @param scale scale parameter for Gamma Distribution.
+     * @return a sample point randomly drawn from the given distribution.
+     */
+    public double gamma(double alpha, double scale) {
+        return Randoms.gamma(this, alpha, scale);
+    }
+
+    /**
+     * Return a number from a discrete distribution: i with probability a[i].
+     *
+     * @param a probability a[i]
+     * @return a number from the discrete distribution
+     */
+    public int discrete(double[] a) {
+        return Randoms.discrete(this, a);
+    }
+
+    /**
+     * Randomly sample a matrix from Wishart Distribution with the given parameters.
+     *
+     * @param scale scale parameter for Wishart Distribution.
+     * @param df    degree of freedom for Wishart Distribution.
+     * @return the sample randomly drawn from the given distribution.
+     * @throws LibrecException if error occurs
+     */
+    public DenseMatrix wishart(DenseMatrix scale, double df) throws LibrecException {
+        return Randoms.wishart(this, scale, df);
+    }
+
+    private long nextState() {
+        return state += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -30,6 +30,11 @@ import java.util.*;
 public class Randoms {
     private static Random r = new Random(System.currentTimeMillis());
 
+    private static long streamSeed = System.currentTimeMillis();
+
+    /** the stream bound to each thread by {@link #bind(long)}, drawn from instead of r */
+    private static final ThreadLocal<BoundStream> boundStream = new ThreadLocal<>();
+
     private static List<Object> _tempList = new ArrayList<>();
 
     /**
@@ -44,6 +49,52 @@ public class Randoms {
 
     public static void seed(long seed) {
         r = new Random(seed);
+        streamSeed = seed;
+    }
+
+    /**
+     * Return an independent stream of random numbers for a task, e.g. a
+     * worker thread. The stream only depends on the last seed and the index
+     * of the task, not on the numbers drawn so far, so tasks run in parallel
+     * draw the same numbers for a given seed whatever their order.
+     *
+     * @param index index of the task
+     * @return the stream of the task
+     */
+    public static RandomStream stream(long index) {
+        BoundStream bound = boundStream.get();
+        return RandomStream.of(bound != null ? bound.streamSeed : streamSeed, index);
+    }
+
+    /**
+     * Bind the stream of a task, e.g. of a fold of cross validation, to the
+     * current thread. Until {@link #unbind()}, the helpers of this class
+     * draw from that stream in this thread, and {@link #stream(long)}
+     * derives the streams of its subtasks from it, so the task draws the same
+     * numbers for a given seed whichever thread runs it and whatever other
+     * tasks run at the same time.
+     *
+     * @param index index of the task
+     */
+    public static void bind(long index) {
+        RandomStream random = stream(index);
+        boundStream.set(new BoundStream(random, random.nextLong()));
+    }
+
+    /**
+     * Unbind the stream of a task from the current thread, which draws from
+     * the generator of the last seed again.
+     */
+    public static void unbind() {
+        boundStream.remove();
+    }
+
+    /**
+     * @return the stream bound to the current thread, or the generator of the last seed
+     */
+    private static Random getRandom() {
+        BoundStream bound = boundStream.get();
+        return bound != null ? bound.random : r;
     }
 
     /**
@@ -54,7 +105,7 @@ public class Randoms {
      * @return     an integer random generated in [min, max)
      */
     public static int uniform(int min, int max) {
-        return min + r.nextInt(max - min);
+        return min + getRandom().nextInt(max - min);
     }
 
     /**
@@ -126,7 +177,7 @@ public class Randoms {
      * @return Random (uniformly distributed) double in [min, max)
      */
     public static double uniform(double min, double max) {
-        return min + (max - min) * r.nextDouble();
+        return min + (max - min) * getRandom().nextDouble();
     }
 
     /**
@@ -156,7 +207,19 @@ public class Randoms {
      * @return  a real number from a Gaussian distribution with given mean and stddev
      */
     public static double gaussian(double mu, double sigma) {
-        return mu + sigma * r.nextGaussian();
+        return gaussian(getRandom(), mu, sigma);
+    }
+
+    /**
+     * Return a real number from a Gaussian distribution with given mean and stddev, drawn by a given random generator.
+     *
+     * @param random the random generator
+     * @param mu     mean
+     * @param sigma  stddev
+     * @return  a real number from a Gaussian distribution with given mean and stddev
+     */
+    public static double gaussian(Random random, double mu, double sigma) {
+        return mu + sigma * random.nextGaussian();
     }
 
     /**
@@ -168,6 +231,18 @@ public class Randoms {
      * @return a sample point randomly drawn from the given distribution.
      */
     public static double gamma(double alpha, double scale) {
+        return gamma(getRandom(), alpha, scale);
+    }
+
+    /**
+     * Randomly sample 1 point from Gamma Distribution with the given parameters and random generator.
+     *
+     * @param random the random generator
+     * @param alpha  alpha parameter for Gamma Distribution.
+     * @param scale  scale parameter for Gamma Distribution.
+     * @return a sample point randomly drawn from the given distribution.
+     */
+    public static double gamma(Random random, double alpha, double scale) {
         double rate = 1 / scale;
 
         if (alpha <= 0.0 || rate <= 0.0) {
@@ -181,18 +256,18 @@ public class Randoms {
         if (alpha < 1.0) {
             b = 1.0 + 0.36788794412 * alpha; // Step 1
             while (true) {
-                double p = b * r.nextDouble();
+                double p = b * random.nextDouble();
                 // Step 2. Case gds <= 1
                 if (p <= 1.0) {
                     gds = Math.exp(Math.log(p) / alpha);
-                    if (Math.log(r.nextDouble()) <= -gds) {
+                    if (Math.log(random.nextDouble()) <= -gds) {
                         return gds / rate;
                     }
                 }
                 // Step 3. Case gds > 1
                 else {
                     gds = -Math.log((b - p) / alpha);
-                    if (Math.log(r.nextDouble()) <= ((alpha - 1.0) * Math.log(gds))) {
+                    if (Math.log(random.nextDouble()) <= ((alpha - 1.0) * Math.log(gds))) {
                         return gds / rate;
                     }
                 }
@@ -217,8 +292,8 @@ public class Randoms {
             double v1;
 
             do {
-                v1 = 2.0 * r.nextDouble() - 1.0;
-                double v2 = 2.0 * r.nextDouble() - 1.0;
+                v1 = 2.0 * random.nextDouble() - 1.0;
+                double v2 = 2.0 * random.nextDouble() - 1.0;
                 v12 = v1 * v1 + v2 * v2;
             } while (v12 > 1.0);
 
@@ -230,7 +305,7 @@ public class Randoms {
                 return gds / rate;
             }
 
-            double u = r.nextDouble();
+            double u = random.nextDouble();
             if (d * u <= t * t * t) { // Squeeze acceptance
                 return gds / rate;
             }
@@ -317,8 +392,8 @@ public class Randoms {
                 double sign_u;
                 double e;
                 do { // Step 9. Rejection of t
-                    e = -Math.log(r.nextDouble());
-                    u = r.nextDouble();
+                    e = -Math.log(random.nextDouble());
+                    u = random.nextDouble();
                     u = u + u - 1.0;
                     sign_u = (u > 0) ? 1.0 : -1.0;
                     t = b + (e * si) * sign_u;
@@ -368,6 +443,19 @@ public class Randoms {
      * @throws LibrecException if error occurs
      */
     public static DenseMatrix wishart(DenseMatrix scale, double df) throws LibrecException {
+        return wishart(getRandom(), scale, df);
+    }
+
+    /**
+     * Randomly sample a matrix from Wishart Distribution with the given parameters and random generator.
+     *
+     * @param random the random generator
+     * @param scale  scale parameter for Wishart Distribution.
+     * @param df     degree of freedom for Wishart Distribution.
+     * @return the sample randomly drawn from the given distribution.
+     * @throws LibrecException if error occurs
+     */
+    public static DenseMatrix wishart(Random random, DenseMatrix scale, double df) throws LibrecException {
         DenseMatrix A = scale.cholesky();
         if (A == null)
             return null;
@@ -377,13 +465,13 @@ public class Randoms {
 
         for (int i = 0; i < p; i++) {
             for (int j = 0; j < p; j++) {
-                z.set(i, j, Randoms.gaussian(0, 1));
+                z.set(i, j, gaussian(random, 0, 1));
             }
         }
 
         SparseVector y = new SparseVector(p);
         for (int i = 0; i < p; i++)
-            y.set(i, Randoms.gamma((df - (i + 1)) / 2, 2));
+            y.set(i, gamma(random, (df - (i + 1)) / 2, 2));
 
         DenseMatrix B = new DenseMatrix(p, p);
         B.set(0, 0, y.get(0));
@@ -470,6 +558,17 @@ public class Randoms {
      * @return  a number from the discrete distribution
      */
     public static int discrete(double[] a) {
+        return discrete(getRandom(), a);
+    }
+
+    /**
+     * Return a number from a discrete distribution: i with probability a[i], drawn by a given random generator.
+     *
+     * @param random the random generator
+     * @param a      probability a[i]
+     * @return  a number from the discrete distribution
+     */
+    public static int discrete(Random random, double[] a) {
         double EPSILON = 1E-6;
         double sum = 0.0;
         for (int i = 0; i < a.length; i++) {
@@ -482,7 +581,7 @@ public class Randoms {
 
         // the for loop may not return a value when both r is (nearly) 1.0 and when the cumulative sum is less than 1.0 (as a result of floating-point roundoff error)
         while (true) {
-            double r = uniform();
+            double r = random.nextDouble();
             sum = 0.0;
             for (int i = 0; i < a.length; i++) {
                 sum = sum + a[i];
@@ -524,7 +623,7 @@ public class Randoms {
     public static int nextInt(int min, int max, int... exceptions) {
         int next;
         while (true) {
-            next = min + r.nextInt(max - min);
+            next = min + getRandom().nextInt(max - min);
             if (exceptions != null && exceptions.length > 0 && Arrays.binarySearch(exceptions, next) >= 0) {
                 continue;
             }
@@ -624,7 +723,7 @@ public class Randoms {
         Set<Integer> ints = new HashSet();
 
         while (true) {
-            int rand = min + r.nextInt(max - min);
+            int rand = min + getRandom().nextInt(max - min);
             ints.add(rand);
 
             if (ints.size() >= length)
@@ -652,7 +751,7 @@ public class Randoms {
         int sum = 0;
         for (int i = 0; i < pros.length; i++) {
             //avoid zero
-            pros[i] = r.nextInt(size) + 1;
+            pros[i] = getRandom().nextInt(size) + 1;
             sum += pros[i];
         }
 
@@ -726,4 +825,17 @@ public class Randoms {
 
         return list;
     }
+
+    /**
+     * The stream bound to a thread, and the seed of the streams of its subtasks.
+     */
+    private static class BoundStream {
+        private final RandomStream random;
+        private final long streamSeed;
+
+        private BoundStream(RandomStream random, long streamSeed) {
+            this.random = random;
+            this.streamSeed = streamSeed;
+        }
+    }
 }
@@ -289,6 +289,47 @@ public class DenseMatrix implements DataMatrix, Serializable {
         return res;
     }
 
+    /**
+     * Inner products of a row vector with all row vectors of a matrix, i.e.
+     * {@code res[nrow] = rowMult(m, mrow, n, nrow)} for every row of n. Four
+     * rows of n are multiplied in one pass over the row of m, and every inner
+     * product is summed in the same order as by
+     * {@link #rowMult(DenseMatrix, int, DenseMatrix, int)}.
+     *
+     * @param m    the first matrix
+     * @param mrow row of the first matrix
+     * @param n    the second matrix
+     * @param res  array of at least n.numRows inner products, to be filled
+     */
+    public static void rowMult(DenseMatrix m, int mrow, DenseMatrix n, double[] res) {
+        assert m.numColumns == n.numColumns;
+
+        double[] row = m.data[mrow];
+        int k = m.numColumns, nrow = 0;
+        for (int end = n.numRows - 3; nrow < end; nrow += 4) {
+            double[] row0 = n.data[nrow], row1 = n.data[nrow + 1], row2 = n.data[nrow + 2], row3 = n.data[nrow + 3];
+            double res0 = 0, res1 = 0, res2 = 0, res3 = 0;
+            for (int j = 0; j < k; j++) {
+                double value = row[j];
+                res0 += value * row0[j];
+                res1 += value * row1[j];
+                res2 += value * row2[j];
+                res3 += value * row3[j];
+            }
+            res[nrow] = res0;
+            res[nrow + 1] = res1;
+            res[nrow + 2] = res2;
+            res[nrow + 3] = res3;
+        }
+        for (; nrow < n.numRows; nrow++) {
+            double[] row0 = n.data[nrow];
+            double res0 = 0;
+            for (int j = 0; j < k; j++)
+                res0 += row[j] * row0[j];
+            res[nrow] = res0;
+        }
+    }
+
     /**
      * Inner product of two column vectors
      *
@@ -966,6 +1007,56 @@ public class DenseMatrix implements DataMatrix, Serializable {
         return L.transpose();
     }
 
+    /**
+     * Solve A * x = b in place for a symmetric positive definite n x n matrix A
+     * by Cholesky decomposition A = L * Lt, without allocating memory. Only
+     * the lower triangle of a is read, and it is overwritten by L; b is
+     * overwritten by x.
+     *
+     * @param a the lower triangle of A
+     * @param b the right-hand side b
+     * @param n dimension of A
+     * @return false if A is not positive definite, in which case a and b are
+     * left partially overwritten
+     */
+    public static boolean choleskySolve(double[][] a, double[] b, int n) {
+        for (int j = 0; j < n; j++) {
+            double[] aj = a[j];
+            double diag = aj[j];
+            for (int k = 0; k < j; k++)
+                diag -= aj[k] * aj[k];
+            if (!(diag > 0))
+                return false;
+            diag = Math.sqrt(diag);
+            aj[j] = diag;
+
+            for (int i = j + 1; i < n; i++) {
+                double[] ai = a[i];
+                double sum = ai[j];
+                for (int k = 0; k < j; k++)
+                    sum -= ai[k] * aj[k];
+                ai[j] = sum / diag;
+            }
+        }
+
+        // L * y = b
+        for (int i = 0; i < n; i++) {
+            double[] ai = a[i];
+            double sum = b[i];
+            for (int k = 0; k < i; k++)
+                sum -= ai[k] * b[k];
+            b[i] = sum / ai[i];
+        }
+        // Lt * x = y
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int k = i + 1; k < n; k++)
+                sum -= a[k][i] * b[k];
+            b[i] = sum / a[i][i];
+        }
+        return true;
+    }
+
     /**
      * @return a transposed matrix of current matrix
      */
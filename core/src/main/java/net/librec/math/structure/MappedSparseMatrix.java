@@ -0,0 +1,825 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A sparse matrix whose CRS and CCS structures live outside of the Java heap,
+ * either in a memory-mapped file or in direct buffers. It keeps the
+ * {@code row()}, {@code column()}, {@code get()} and iterator contract of
+ * {@link SparseMatrix}, so a training matrix larger than the heap can be used
+ * without a huge JVM, and several processes that open the same file share its
+ * pages through the operating system page cache.
+ * <p>
+ * A file is opened with a private (copy-on-write) mapping: values changed by
+ * {@link #set(int, int, double)} are visible to this matrix only and never
+ * written back to the file. The public array fields inherited from
+ * {@link SparseMatrix} are left {@code null}; {@link #getRowPointers()},
+ * {@link #getColumnIndices()} and {@link #getData()} return heap copies, and
+ * {@link #toSparseMatrix()} copies the whole matrix to the heap.
+ */
+public class MappedSparseMatrix extends SparseMatrix {
+
+    private static final long serialVersionUID = 6011496306151720352L;
+
+    /** Magic number of the file format */
+    private static final int MAGIC = 0x4C524D53;
+
+    /** Version of the file format */
+    private static final int VERSION = 1;
+
+    /** Size of the file header in bytes */
+    private static final int HEADER_SIZE = 32;
+
+    /** Each buffer segment holds 2^SEGMENT_SHIFT elements, which keeps it below the 2GB mapping limit */
+    private static final int SEGMENT_SHIFT = 26;
+
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    /** Size of the buffer used to write a file */
+    private static final int BSIZE = 1024 * 1024;
+
+    // Compressed Row Storage (CRS)
+    private transient IntArray crsPtr, crsIndex;
+    private transient DoubleArray crsData;
+
+    // Compressed Col Storage (CCS)
+    private transient IntArray ccsPtr, ccsIndex;
+    private transient DoubleArray ccsData;
+
+    private MappedSparseMatrix(int rows, int cols, IntArray crsPtr, IntArray crsIndex, DoubleArray crsData,
+                               IntArray ccsPtr, IntArray ccsIndex, DoubleArray ccsData) {
+        super(rows, cols);
+        this.crsPtr = crsPtr;
+        this.crsIndex = crsIndex;
+        this.crsData = crsData;
+        this.ccsPtr = ccsPtr;
+        this.ccsIndex = ccsIndex;
+        this.ccsData = ccsData;
+
+        for (int i = 0; i < crsData.length; i++)
+            valueSetAdd(crsData.get(i));
+    }
+
+    /**
+     * Write a sparse matrix to the given file and map it into memory.
+     *
+     * @param matrix the matrix to write
+     * @param path   path of the file
+     * @return the memory-mapped matrix
+     * @throws IOException if I/O error occurs during writing
+     */
+    public static MappedSparseMatrix write(SparseMatrix matrix, String path) throws IOException {
+        MappedSparseMatrix source = matrix instanceof MappedSparseMatrix ? (MappedSparseMatrix) matrix : wrap(matrix);
+
+        File file = new File(path);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        ByteOrder order = ByteOrder.nativeOrder();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BSIZE).order(order);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(order == ByteOrder.BIG_ENDIAN ? 1 : 0);
+            buffer.putInt(source.numRows).putInt(source.numColumns).putInt(source.crsData.length);
+            while (buffer.position() < HEADER_SIZE) {
+                buffer.put((byte) 0);
+            }
+
+            long position = HEADER_SIZE;
+            position = writeInts(channel, buffer, source.crsPtr, position);
+            position = writeInts(channel, buffer, source.crsIndex, position);
+            position = writeInts(channel, buffer, source.ccsPtr, position);
+            position = writeInts(channel, buffer, source.ccsIndex, position);
+            while (position % 8 != 0) {
+                putByte(channel, buffer, (byte) 0);
+                position++;
+            }
+            position = writeDoubles(channel, buffer, source.crsData, position);
+            writeDoubles(channel, buffer, source.ccsData, position);
+            flush(channel, buffer);
+        }
+
+        return open(path);
+    }
+
+    /**
+     * Map a file written by {@link #write(SparseMatrix, String)} into memory.
+     * A file without write permission is mapped read-only, and setting a
+     * value of the returned matrix then throws {@link java.nio.ReadOnlyBufferException}.
+     *
+     * @param path path of the file
+     * @return the memory-mapped matrix
+     * @throws IOException if the file is missing or is not a matrix file
+     */
+    public static MappedSparseMatrix open(String path) throws IOException {
+        // a private mapping needs a writable channel, read-only files are mapped read-only
+        boolean writable = new File(path).canWrite();
+        MapMode mode = writable ? MapMode.PRIVATE : MapMode.READ_ONLY;
+        try (RandomAccessFile raf = new RandomAccessFile(path, writable ? "rw" : "r");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Truncated matrix file: " + path);
+                }
+            }
+            header.flip();
+            header.order(ByteOrder.BIG_ENDIAN);
+            if (header.getInt(8) != 1) {
+                header.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteOrder order = header.order();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a matrix file: " + path);
+            }
+            header.getInt();
+            int numRows = header.getInt();
+            int numColumns = header.getInt();
+            int nnz = header.getInt();
+
+            long position = HEADER_SIZE;
+            long intsEnd = position + 4L * ((long) numRows + 1 + nnz + numColumns + 1 + nnz);
+            long end = (intsEnd + 7) / 8 * 8 + 16L * nnz;
+            if (numRows < 0 || numColumns < 0 || nnz < 0 || channel.size() < end) {
+                throw new IOException("Truncated matrix file: " + path);
+            }
+
+            IntArray crsPtr = mapInts(channel, mode, position, numRows + 1, order);
+            position += 4L * (numRows + 1);
+            IntArray crsIndex = mapInts(channel, mode, position, nnz, order);
+            position += 4L * nnz;
+            IntArray ccsPtr = mapInts(channel, mode, position, numColumns + 1, order);
+            position += 4L * (numColumns + 1);
+            IntArray ccsIndex = mapInts(channel, mode, position, nnz, order);
+            position = (intsEnd + 7) / 8 * 8;
+            DoubleArray crsData = mapDoubles(channel, mode, position, nnz, order);
+            position += 8L * nnz;
+            DoubleArray ccsData = mapDoubles(channel, mode, position, nnz, order);
+
+            return new MappedSparseMatrix(numRows, numColumns, crsPtr, crsIndex, crsData, ccsPtr, ccsIndex, ccsData);
+        }
+    }
+
+    /**
+     * Copy a sparse matrix into direct buffers outside of the Java heap.
+     *
+     * @param matrix the matrix to copy
+     * @return the off-heap matrix
+     */
+    public static MappedSparseMatrix allocateDirect(SparseMatrix matrix) {
+        MappedSparseMatrix source = matrix instanceof MappedSparseMatrix ? (MappedSparseMatrix) matrix : wrap(matrix);
+        return new MappedSparseMatrix(source.numRows, source.numColumns,
+                source.crsPtr.copyDirect(), source.crsIndex.copyDirect(), source.crsData.copyDirect(),
+                source.ccsPtr.copyDirect(), source.ccsIndex.copyDirect(), source.ccsData.copyDirect());
+    }
+
+    /**
+     * Copy the matrix to the Java heap.
+     *
+     * @return a heap sparse matrix with the same structure and values
+     */
+    public SparseMatrix toSparseMatrix() {
+        return new SparseMatrix(numRows, numColumns, crsPtr.toArray(), crsIndex.toArray(), crsData.toArray(),
+                ccsPtr.toArray(), ccsIndex.toArray(), ccsData.toArray());
+    }
+
+    /**
+     * @return a deep clone of current matrix in direct buffers
+     */
+    @Override
+    public MappedSparseMatrix clone() {
+        return allocateDirect(this);
+    }
+
+    /**
+     * @return the transpose of current matrix in direct buffers
+     */
+    @Override
+    public MappedSparseMatrix transpose() {
+        return new MappedSparseMatrix(numColumns, numRows,
+                ccsPtr.copyDirect(), ccsIndex.copyDirect(), ccsData.copyDirect(),
+                crsPtr.copyDirect(), crsIndex.copyDirect(), crsData.copyDirect());
+    }
+
+    /**
+     * @return a heap copy of the row pointers of CRS structure
+     */
+    @Override
+    public int[] getRowPointers() {
+        return crsPtr.toArray();
+    }
+
+    /**
+     * @return a heap copy of the column indices of CRS structure
+     */
+    @Override
+    public int[] getColumnIndices() {
+        return crsIndex.toArray();
+    }
+
+    /**
+     * @return a heap copy of the data of CRS structure
+     */
+    @Override
+    public double[] getData() {
+        return crsData.toArray();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < crsData.length; i++)
+            if (crsData.get(i) != 0)
+                size++;
+
+        return size;
+    }
+
+    @Override
+    public void set(int row, int column, double val) {
+        crsData.set(getCRSIndex(row, column), val);
+        ccsData.set(getCCSIndex(row, column), val);
+
+        valueSetAdd(val);
+    }
+
+    @Override
+    public void add(int row, int column, double val) {
+        int index = getCRSIndex(row, column);
+        crsData.set(index, crsData.get(index) + val);
+
+        index = getCCSIndex(row, column);
+        ccsData.set(index, ccsData.get(index) + val);
+    }
+
+    @Override
+    public double get(int row, int column) {
+        int index = crsIndex.binarySearch(crsPtr.get(row), crsPtr.get(row + 1), column);
+
+        return index >= 0 ? crsData.get(index) : 0;
+    }
+
+    @Override
+    public boolean contains(int row, int column) {
+        int index = crsIndex.binarySearch(crsPtr.get(row), crsPtr.get(row + 1), column);
+
+        return index >= 0 && crsData.get(index) != 0.0;
+    }
+
+    @Override
+    public SparseVector row(int row) {
+        if (row >= numRows) {
+            // return an empty vector if the row does not exist in training matrix
+            return new SparseVector(numColumns);
+        }
+        return vector(numColumns, crsPtr.get(row), crsPtr.get(row + 1), crsIndex, crsData, -1);
+    }
+
+    @Override
+    public SparseVector row(int row, int except) {
+        return vector(numColumns, crsPtr.get(row), crsPtr.get(row + 1), crsIndex, crsData, except);
+    }
+
+    @Override
+    public SparseVector column(int col) {
+        if (col >= numColumns) {
+            // return an empty vector if the column does not exist in training matrix
+            return new SparseVector(numRows);
+        }
+        return vector(numRows, ccsPtr.get(col), ccsPtr.get(col + 1), ccsIndex, ccsData, -1);
+    }
+
+    /**
+     * Point a given view at a copy of a row, since the CRS structure is outside of the heap.
+     */
+    @Override
+    public SparseVectorView rowView(int row, SparseVectorView view) {
+        SparseVector sv = row(row);
+        return view.reset(numColumns, sv.index, sv.data, 0, sv.count);
+    }
+
+    /**
+     * Point a given view at a copy of a column, since the CCS structure is outside of the heap.
+     */
+    @Override
+    public SparseVectorView columnView(int col, SparseVectorView view) {
+        SparseVector sv = column(col);
+        return view.reset(numRows, sv.index, sv.data, 0, sv.count);
+    }
+
+    @Override
+    public List<Integer> getColumns(int row) {
+        if (row >= numRows) {
+            return new ArrayList<>();
+        }
+        List<Integer> res = new ArrayList<>(crsPtr.get(row + 1) - crsPtr.get(row));
+        for (int j = crsPtr.get(row), end = crsPtr.get(row + 1); j < end; j++)
+            if (crsData.get(j) != 0.0)
+                res.add(crsIndex.get(j));
+
+        return res;
+    }
+
+    @Override
+    public Set<Integer> getColumnsSet(int row) {
+        Set<Integer> res = new HashSet<>();
+        if (row < numRows) {
+            for (int j = crsPtr.get(row), end = crsPtr.get(row + 1); j < end; j++)
+                if (crsData.get(j) != 0.0)
+                    res.add(crsIndex.get(j));
+        }
+
+        return res;
+    }
+
+    @Override
+    public List<Integer> getRows(int col) {
+        if (col >= numColumns) {
+            return new ArrayList<>();
+        }
+        List<Integer> res = new ArrayList<>(ccsPtr.get(col + 1) - ccsPtr.get(col));
+        for (int j = ccsPtr.get(col), end = ccsPtr.get(col + 1); j < end; j++)
+            if (ccsData.get(j) != 0.0)
+                res.add(ccsIndex.get(j));
+
+        return res;
+    }
+
+    @Override
+    public Set<Integer> getRowsSet(int col) {
+        Set<Integer> res = new HashSet<>();
+        if (col < numColumns) {
+            for (int j = ccsPtr.get(col), end = ccsPtr.get(col + 1); j < end; j++)
+                if (ccsData.get(j) != 0.0)
+                    res.add(ccsIndex.get(j));
+        }
+
+        return res;
+    }
+
+    @Override
+    public int rowSize(int row) {
+        int size = 0;
+        for (int j = crsPtr.get(row), end = crsPtr.get(row + 1); j < end; j++)
+            if (crsData.get(j) != 0.0)
+                size++;
+
+        return size;
+    }
+
+    @Override
+    public int columnSize(int col) {
+        int size = 0;
+        for (int j = ccsPtr.get(col), end = ccsPtr.get(col + 1); j < end; j++)
+            if (ccsData.get(j) != 0.0)
+                size++;
+
+        return size;
+    }
+
+    @Override
+    public List<Integer> rows() {
+        List<Integer> list = new ArrayList<>(numRows);
+        for (int row = 0; row < numRows; row++)
+            if (rowSize(row) > 0)
+                list.add(row);
+
+        return list;
+    }
+
+    @Override
+    public List<Integer> columns() {
+        List<Integer> list = new ArrayList<>(numColumns);
+        for (int col = 0; col < numColumns; col++)
+            if (columnSize(col) > 0)
+                list.add(col);
+
+        return list;
+    }
+
+    @Override
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < crsData.length; i++)
+            sum += crsData.get(i);
+
+        return sum;
+    }
+
+    @Override
+    public void normalize(double min, double max) {
+        assert max > min;
+        for (int index = 0; index < crsData.length; index++)
+            crsData.set(index, (crsData.get(index) - min) / (max - min));
+
+        for (int index = 0; index < ccsData.length; index++)
+            ccsData.set(index, (ccsData.get(index) - min) / (max - min));
+    }
+
+    @Override
+    public SparseMatrix reshape(int rows, int cols) {
+        return toSparseMatrix().reshape(rows, cols);
+    }
+
+    @Override
+    public Iterator<MatrixEntry> iterator() {
+        return new MatrixIterator();
+    }
+
+    @Override
+    public Iterator<VectorEntry> colIterator(int row) {
+        return new VectorIterator(crsPtr.get(row), crsPtr.get(row + 1), crsIndex, crsData);
+    }
+
+    @Override
+    public Iterator<VectorEntry> rowIterator(int col) {
+        return new VectorIterator(ccsPtr.get(col), ccsPtr.get(col + 1), ccsIndex, ccsData);
+    }
+
+    /**
+     * Serialize as a heap {@link SparseMatrix}, since buffers are not serializable.
+     *
+     * @return a heap copy of the matrix
+     * @throws ObjectStreamException never
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return toSparseMatrix();
+    }
+
+    private int getCRSIndex(int row, int col) {
+        int i = crsIndex.binarySearch(crsPtr.get(row), crsPtr.get(row + 1), col);
+
+        if (i >= 0)
+            return i;
+        else
+            throw new IndexOutOfBoundsException("Entry (" + (row + 1) + ", " + (col + 1)
+                    + ") is not in the matrix structure");
+    }
+
+    private int getCCSIndex(int row, int col) {
+        int i = ccsIndex.binarySearch(ccsPtr.get(col), ccsPtr.get(col + 1), row);
+
+        if (i >= 0)
+            return i;
+        else
+            throw new IndexOutOfBoundsException("Entry (" + (row + 1) + ", " + (col + 1)
+                    + ") is not in the matrix structure");
+    }
+
+    /**
+     * Copy the non-zero entries in [start, end) into a sparse vector.
+     */
+    private static SparseVector vector(int capacity, int start, int end, IntArray index, DoubleArray data,
+                                       int except) {
+        int[] indices = new int[end - start];
+        double[] values = new double[end - start];
+        int count = 0;
+        for (int j = start; j < end; j++) {
+            int idx = index.get(j);
+            if (idx != except) {
+                indices[count] = idx;
+                values[count++] = data.get(j);
+            }
+        }
+        return new SparseVector(capacity, indices, values, 0, count - 1);
+    }
+
+    /**
+     * Wrap the arrays of a heap matrix without copying them.
+     */
+    private static MappedSparseMatrix wrap(SparseMatrix matrix) {
+        return new MappedSparseMatrix(matrix.numRows, matrix.numColumns,
+                IntArray.wrap(matrix.rowPtr), IntArray.wrap(matrix.colInd), DoubleArray.wrap(matrix.rowData),
+                IntArray.wrap(matrix.colPtr), IntArray.wrap(matrix.rowInd), DoubleArray.wrap(matrix.colData));
+    }
+
+    private static IntArray mapInts(FileChannel channel, MapMode mode, long position, int length,
+                                    ByteOrder order) throws IOException {
+        IntBuffer[] segments = new IntBuffer[numSegments(length)];
+        for (int s = 0; s < segments.length; s++) {
+            int size = segmentSize(length, s);
+            segments[s] = channel.map(mode, position + ((long) s << SEGMENT_SHIFT) * 4, 4L * size)
+                    .order(order).asIntBuffer();
+        }
+        return new IntArray(segments, length);
+    }
+
+    private static DoubleArray mapDoubles(FileChannel channel, MapMode mode, long position, int length,
+                                          ByteOrder order) throws IOException {
+        DoubleBuffer[] segments = new DoubleBuffer[numSegments(length)];
+        for (int s = 0; s < segments.length; s++) {
+            int size = segmentSize(length, s);
+            segments[s] = channel.map(mode, position + ((long) s << SEGMENT_SHIFT) * 8, 8L * size)
+                    .order(order).asDoubleBuffer();
+        }
+        return new DoubleArray(segments, length);
+    }
+
+    private static long writeInts(FileChannel channel, ByteBuffer buffer, IntArray array, long position)
+            throws IOException {
+        for (int i = 0; i < array.length; i++) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(array.get(i));
+        }
+        return position + 4L * array.length;
+    }
+
+    private static long writeDoubles(FileChannel channel, ByteBuffer buffer, DoubleArray array, long position)
+            throws IOException {
+        for (int i = 0; i < array.length; i++) {
+            if (buffer.remaining() < 8) {
+                flush(channel, buffer);
+            }
+            buffer.putDouble(array.get(i));
+        }
+        return position + 8L * array.length;
+    }
+
+    private static void putByte(FileChannel channel, ByteBuffer buffer, byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush(channel, buffer);
+        }
+        buffer.put(b);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int numSegments(int length) {
+        return (int) (((long) length + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    }
+
+    private static int segmentSize(int length, int segment) {
+        return (int) Math.min(1L << SEGMENT_SHIFT, length - ((long) segment << SEGMENT_SHIFT));
+    }
+
+    /**
+     * An int array split into buffer segments of 2^SEGMENT_SHIFT elements.
+     */
+    private static final class IntArray {
+
+        private final IntBuffer[] segments;
+
+        private final int length;
+
+        private IntArray(IntBuffer[] segments, int length) {
+            this.segments = segments;
+            this.length = length;
+        }
+
+        private static IntArray wrap(int[] array) {
+            IntBuffer[] segments = new IntBuffer[numSegments(array.length)];
+            for (int s = 0; s < segments.length; s++)
+                segments[s] = IntBuffer.wrap(array, s << SEGMENT_SHIFT, segmentSize(array.length, s)).slice();
+            return new IntArray(segments, array.length);
+        }
+
+        private int get(int i) {
+            return segments[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+        }
+
+        private void set(int i, int value) {
+            segments[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, value);
+        }
+
+        /**
+         * Search the sorted range [from, to) for the key, see {@link java.util.Arrays#binarySearch(int[], int, int, int)}.
+         */
+        private int binarySearch(int from, int to, int key) {
+            int low = from, high = to - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int value = get(mid);
+                if (value < key)
+                    low = mid + 1;
+                else if (value > key)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -(low + 1);
+        }
+
+        private IntArray copyDirect() {
+            IntBuffer[] copies = new IntBuffer[segments.length];
+            for (int s = 0; s < segments.length; s++) {
+                IntBuffer source = segments[s].duplicate();
+                source.clear();
+                copies[s] = ByteBuffer.allocateDirect(4 * source.capacity()).order(ByteOrder.nativeOrder())
+                        .asIntBuffer();
+                copies[s].put(source);
+                copies[s].clear();
+            }
+            return new IntArray(copies, length);
+        }
+
+        private int[] toArray() {
+            int[] array = new int[length];
+            for (int s = 0; s < segments.length; s++) {
+                IntBuffer source = segments[s].duplicate();
+                source.clear();
+                source.get(array, s << SEGMENT_SHIFT, source.remaining());
+            }
+            return array;
+        }
+    }
+
+    /**
+     * A double array split into buffer segments of 2^SEGMENT_SHIFT elements.
+     */
+    private static final class DoubleArray {
+
+        private final DoubleBuffer[] segments;
+
+        private final int length;
+
+        private DoubleArray(DoubleBuffer[] segments, int length) {
+            this.segments = segments;
+            this.length = length;
+        }
+
+        private static DoubleArray wrap(double[] array) {
+            DoubleBuffer[] segments = new DoubleBuffer[numSegments(array.length)];
+            for (int s = 0; s < segments.length; s++)
+                segments[s] = DoubleBuffer.wrap(array, s << SEGMENT_SHIFT, segmentSize(array.length, s)).slice();
+            return new DoubleArray(segments, array.length);
+        }
+
+        private double get(int i) {
+            return segments[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+        }
+
+        private void set(int i, double value) {
+            segments[i >>> SEGMENT_SHIFT].put(i & SEGMENT_MASK, value);
+        }
+
+        private DoubleArray copyDirect() {
+            DoubleBuffer[] copies = new DoubleBuffer[segments.length];
+            for (int s = 0; s < segments.length; s++) {
+                DoubleBuffer source = segments[s].duplicate();
+                source.clear();
+                copies[s] = ByteBuffer.allocateDirect(8 * source.capacity()).order(ByteOrder.nativeOrder())
+                        .asDoubleBuffer();
+                copies[s].put(source);
+                copies[s].clear();
+            }
+            return new DoubleArray(copies, length);
+        }
+
+        private double[] toArray() {
+            double[] array = new double[length];
+            for (int s = 0; s < segments.length; s++) {
+                DoubleBuffer source = segments[s].duplicate();
+                source.clear();
+                source.get(array, s << SEGMENT_SHIFT, source.remaining());
+            }
+            return array;
+        }
+    }
+
+    /**
+     * Iterates all stored entries in row order, as {@link SparseMatrix#iterator()} does.
+     */
+    private class MatrixIterator implements Iterator<MatrixEntry>, MatrixEntry {
+
+        private int row, cursor, current, currentRow;
+
+        private MatrixIterator() {
+            nextNonEmptyRow();
+        }
+
+        private void nextNonEmptyRow() {
+            while (row < numRows && crsPtr.get(row) == crsPtr.get(row + 1))
+                row++;
+        }
+
+        public boolean hasNext() {
+            return cursor < crsData.length;
+        }
+
+        public MatrixEntry next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            current = cursor++;
+            currentRow = row;
+            if (cursor == crsPtr.get(row + 1)) {
+                row++;
+                nextNonEmptyRow();
+            }
+            return this;
+        }
+
+        public void remove() {
+            throw new IllegalStateException();
+        }
+
+        public int row() {
+            return currentRow;
+        }
+
+        public int column() {
+            return crsIndex.get(current);
+        }
+
+        public double get() {
+            return crsData.get(current);
+        }
+
+        public void set(double value) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Iterates the non-zero entries of a row or a column.
+     */
+    private static class VectorIterator implements Iterator<VectorEntry>, VectorEntry {
+
+        private final int end;
+        private final IntArray index;
+        private final DoubleArray data;
+        private int cursor, current;
+
+        private VectorIterator(int start, int end, IntArray index, DoubleArray data) {
+            this.end = end;
+            this.index = index;
+            this.data = data;
+            this.cursor = start;
+            skipZeros();
+        }
+
+        private void skipZeros() {
+            while (cursor < end && data.get(cursor) == 0.0)
+                cursor++;
+        }
+
+        public boolean hasNext() {
+            return cursor < end;
+        }
+
+        public VectorEntry next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            current = cursor++;
+            skipZeros();
+            return this;
+        }
+
+        public void remove() {
+            throw new IllegalStateException();
+        }
+
+        public int index() {
+            return index.get(current);
+        }
+
+        public double get() {
+            return data.get(current);
+        }
+
+        public void set(double value) {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -100,6 +100,56 @@ public class SparseMatrix implements Iterable<MatrixEntry>, DataMatrix, Serializ
         construct(dataTable, colMap);
     }
 
+    /**
+     * Construct a sparse matrix with both CRS and CCS structures from the
+     * (row, column, value) triples stored in primitive arrays. The structures
+     * are built by counting sort, so no boxed table is needed. Duplicated
+     * entries keep the value of the last occurrence.
+     *
+     * @param rows      number of rows
+     * @param cols      number of columns
+     * @param rowIds    row index of each triple
+     * @param colIds    column index of each triple
+     * @param values    value of each triple
+     * @param size      number of triples to read from the arrays
+     */
+    public SparseMatrix(int rows, int cols, int[] rowIds, int[] colIds, double[] values, int size) {
+        numRows = rows;
+        numColumns = cols;
+        valueSet = new TreeSet<>();
+        construct(rowIds, colIds, values, size);
+    }
+
+    /**
+     * Construct a sparse matrix directly on the given CRS and CCS structures,
+     * which are used without copy.
+     *
+     * @param rows      number of rows
+     * @param cols      number of columns
+     * @param rowPtr    row pointers of CRS structure
+     * @param colInd    column indices of CRS structure
+     * @param rowData   data of CRS structure
+     * @param colPtr    column pointers of CCS structure
+     * @param rowInd    row indices of CCS structure
+     * @param colData   data of CCS structure
+     */
+    public SparseMatrix(int rows, int cols, int[] rowPtr, int[] colInd, double[] rowData,
+                        int[] colPtr, int[] rowInd, double[] colData) {
+        numRows = rows;
+        numColumns = cols;
+        valueSet = new TreeSet<>();
+
+        this.rowPtr = rowPtr;
+        this.colInd = colInd;
+        this.rowData = rowData;
+        this.colPtr = colPtr;
+        this.rowInd = rowInd;
+        this.colData = colData;
+
+        for (double value : rowData)
+            valueSetAdd(value);
+    }
+
     /**
      * Construct a sparse matrix from another sparse matrix
      *
@@ -110,6 +160,11 @@ public class SparseMatrix implements Iterable<MatrixEntry>, DataMatrix, Serializ
         numColumns = mat.numColumns;
         valueSet = new TreeSet<>();
 
+        if (mat instanceof MappedSparseMatrix) {
+            // the structures of a mapped matrix are outside of the heap
+            mat = ((MappedSparseMatrix) mat).toSparseMatrix();
+        }
+
         copyCRS(mat.rowData, mat.rowPtr, mat.colInd);
 
         copyCCS(mat.colData, mat.colPtr, mat.rowInd);
@@ -288,6 +343,87 @@ public class SparseMatrix implements Iterable<MatrixEntry>, DataMatrix, Serializ
         }
     }
 
+    /**
+     * Construct a sparse matrix from (row, column, value) triples
+     *
+     * @param rowIds row index of each triple
+     * @param colIds column index of each triple
+     * @param values value of each triple
+     * @param size   number of triples
+     */
+    private void construct(int[] rowIds, int[] colIds, double[] values, int size) {
+        for (int k = 0; k < size; k++) {
+            if (rowIds[k] < 0 || rowIds[k] >= numRows)
+                throw new IllegalArgumentException("rowInd[" + k + "]=" + rowIds[k] + ", which is not a valid row index");
+            if (colIds[k] < 0 || colIds[k] >= numColumns)
+                throw new IllegalArgumentException("colInd[" + k + "]=" + colIds[k]
+                        + ", which is not a valid column index");
+        }
+
+        // stable counting sort by column, then by row: triples ordered by (row, column, input order)
+        int[] byColumn = new int[size];
+        int[] count = new int[numColumns + 1];
+        for (int k = 0; k < size; k++)
+            count[colIds[k] + 1]++;
+        for (int j = 0; j < numColumns; j++)
+            count[j + 1] += count[j];
+        for (int k = 0; k < size; k++)
+            byColumn[count[colIds[k]]++] = k;
+
+        int[] order = new int[size];
+        count = new int[numRows + 1];
+        for (int k = 0; k < size; k++)
+            count[rowIds[k] + 1]++;
+        for (int i = 0; i < numRows; i++)
+            count[i + 1] += count[i];
+        for (int k = 0; k < size; k++) {
+            int entry = byColumn[k];
+            order[count[rowIds[entry]]++] = entry;
+        }
+        byColumn = null;
+
+        // CRS: drop duplicated cells, keeping the last occurrence
+        rowPtr = new int[numRows + 1];
+        int nnz = 0;
+        for (int k = 0; k < size; k++) {
+            int entry = order[k];
+            if (k + 1 < size && rowIds[order[k + 1]] == rowIds[entry] && colIds[order[k + 1]] == colIds[entry])
+                continue;
+            order[nnz++] = entry;
+            rowPtr[rowIds[entry] + 1]++;
+        }
+        for (int i = 0; i < numRows; i++)
+            rowPtr[i + 1] += rowPtr[i];
+
+        colInd = new int[nnz];
+        rowData = new double[nnz];
+        for (int k = 0; k < nnz; k++) {
+            int entry = order[k];
+            colInd[k] = colIds[entry];
+            rowData[k] = values[entry];
+            valueSetAdd(values[entry]);
+        }
+        order = null;
+
+        // CCS: scatter the CRS entries by column, rows stay in ascending order
+        colPtr = new int[numColumns + 1];
+        for (int k = 0; k < nnz; k++)
+            colPtr[colInd[k] + 1]++;
+        for (int j = 0; j < numColumns; j++)
+            colPtr[j + 1] += colPtr[j];
+
+        rowInd = new int[nnz];
+        colData = new double[nnz];
+        int[] cursor = Arrays.copyOf(colPtr, numColumns);
+        for (int i = 0; i < numRows; i++) {
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                int pos = cursor[colInd[k]]++;
+                rowInd[pos] = i;
+                colData[pos] = rowData[k];
+            }
+        }
+    }
+
     /**
      * @return number of rows
      */
@@ -326,7 +462,7 @@ public class SparseMatrix implements Iterable<MatrixEntry>, DataMatrix, Serializ
         valueSetAdd(val);
     }
 
-    private void valueSetAdd(double value){
+    void valueSetAdd(double value){
         if(value != 0.0) {
             valueSet.add(value);
         }
@@ -402,6 +538,32 @@ public class SparseMatrix implements Iterable<MatrixEntry>, DataMatrix, Serializ
         return sv;
     }
 
+    /**
+     * get a read-only view of a row, sharing the CRS arrays of the matrix
+     *
+     * @param row row id
+     * @return a view of the row entries
+     */
+    public SparseVectorView rowView(int row) {
+        return rowView(row, new SparseVectorView());
+    }
+
+    /**
+     * point a given view at a row, sharing the CRS arrays of the matrix
+     *
+     * @param row  row id
+     * @param view the view to reuse
+     * @return the given view
+     */
+    public SparseVectorView rowView(int row, SparseVectorView view) {
+        if (row < numRows) {
+            return view.reset(numColumns, colInd, rowData, rowPtr[row], rowPtr[row + 1] - rowPtr[row]);
+        } else {
+            // an empty view if the row does not exist in training matrix
+            return view.reset(numColumns, colInd, rowData, 0, 0);
+        }
+    }
+
     /**
      * get columns of a specific row where (row, column) entries are non-zero
      *
@@ -638,6 +800,32 @@ public class SparseMatrix implements Iterable<MatrixEntry>, DataMatrix, Serializ
         return sv;
     }
 
+    /**
+     * get a read-only view of a column, sharing the CCS arrays of the matrix
+     *
+     * @param col col id
+     * @return a view of the column entries
+     */
+    public SparseVectorView columnView(int col) {
+        return columnView(col, new SparseVectorView());
+    }
+
+    /**
+     * point a given view at a column, sharing the CCS arrays of the matrix
+     *
+     * @param col  col id
+     * @param view the view to reuse
+     * @return the given view
+     */
+    public SparseVectorView columnView(int col, SparseVectorView view) {
+        if (col < numColumns) {
+            return view.reset(numRows, rowInd, colData, colPtr[col], colPtr[col + 1] - colPtr[col]);
+        } else {
+            // an empty view if the column does not exist in training matrix
+            return view.reset(numRows, rowInd, colData, 0, 0);
+        }
+    }
+
     /**
      * query the size of a specific col
      *
@@ -836,6 +1024,74 @@ public class SparseMatrix implements Iterable<MatrixEntry>, DataMatrix, Serializ
         mat.colPtr = res.colPtr;
     }
 
+    /**
+     * Split the entries of this matrix by their assigned parts into the
+     * matrix of the entries not assigned to the given part and the matrix of
+     * the entries assigned to it. The structures of both matrices are built in
+     * one pass over the entries, without copying this matrix, which is not
+     * changed. Zero entries are dropped as by {@link #reshape(SparseMatrix)},
+     * and both matrices keep the value set of this matrix.
+     *
+     * @param assignments the part of each entry, in the order of the CRS structure
+     * @param part        the given part
+     * @return the matrix of the other entries and the matrix of the entries of the part
+     */
+    public SparseMatrix[] splitByAssignment(int[] assignments, int part) {
+        int[] ptr = getRowPointers();
+        int[] idx = getColumnIndices();
+        double[] data = getData();
+        if (assignments.length < ptr[numRows]) {
+            throw new IllegalArgumentException("size of assignments is less than the number of entries");
+        }
+
+        // count the entries of the two matrices in each row and column
+        int[][] rowPtrs = {new int[numRows + 1], new int[numRows + 1]};
+        int[][] colPtrs = {new int[numColumns + 1], new int[numColumns + 1]};
+        for (int row = 0; row < numRows; row++) {
+            for (int entry = ptr[row]; entry < ptr[row + 1]; entry++) {
+                if (data[entry] != 0) {
+                    int which = assignments[entry] == part ? 1 : 0;
+                    rowPtrs[which][row + 1]++;
+                    colPtrs[which][idx[entry] + 1]++;
+                }
+            }
+        }
+
+        SparseMatrix[] matrices = new SparseMatrix[2];
+        int[][] colCursors = new int[2][];
+        for (int which = 0; which < 2; which++) {
+            for (int row = 0; row < numRows; row++) {
+                rowPtrs[which][row + 1] += rowPtrs[which][row];
+            }
+            for (int col = 0; col < numColumns; col++) {
+                colPtrs[which][col + 1] += colPtrs[which][col];
+            }
+            int nnz = rowPtrs[which][numRows];
+            matrices[which] = new SparseMatrix(numRows, numColumns, rowPtrs[which], new int[nnz], new double[nnz],
+                    colPtrs[which], new int[nnz], new double[nnz]);
+            matrices[which].valueSet.addAll(getValueSet());
+            colCursors[which] = Arrays.copyOf(colPtrs[which], numColumns);
+        }
+
+        // scatter the entries, the rows stay in ascending order in each column
+        int[] rowCursors = {0, 0};
+        for (int row = 0; row < numRows; row++) {
+            for (int entry = ptr[row]; entry < ptr[row + 1]; entry++) {
+                if (data[entry] != 0) {
+                    int which = assignments[entry] == part ? 1 : 0;
+                    SparseMatrix matrix = matrices[which];
+                    int col = idx[entry];
+                    matrix.colInd[rowCursors[which]] = col;
+                    matrix.rowData[rowCursors[which]++] = data[entry];
+                    int colEntry = colCursors[which][col]++;
+                    matrix.rowInd[colEntry] = row;
+                    matrix.colData[colEntry] = data[entry];
+                }
+            }
+        }
+        return matrices;
+    }
+
     /**
      * Return a new matrix with shape (rows, cols) with data from the current matrix.
      *
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view of a row or a column of a {@link SparseMatrix}. The view
+ * points into the CRS or CCS arrays of the matrix by offset and length, so
+ * taking a view copies nothing, and a view can be reused for another row or
+ * column through {@link SparseMatrix#rowView(int, SparseVectorView)} and
+ * {@link SparseMatrix#columnView(int, SparseVectorView)}.
+ * <p>
+ * The entries of the view are the stored entries of the matrix in ascending
+ * index order. A matrix may store explicit zeros, which {@link SparseMatrix#row(int)}
+ * leaves out; callers walking the entries skip zero values to see the same
+ * entries. Changes of the matrix values are visible through the view.
+ */
+public class SparseVectorView {
+
+    /** maximum size of the vector */
+    private int capacity;
+
+    /** indices and data of the underlying matrix structure */
+    private int[] index;
+    private double[] data;
+
+    /** entries of the view are in [offset, offset + length) */
+    private int offset, length;
+
+    /**
+     * Construct an empty view, to be pointed at a row or a column of a matrix.
+     */
+    public SparseVectorView() {
+        this.index = new int[0];
+        this.data = new double[0];
+    }
+
+    /**
+     * Point the view at the given slice of arrays.
+     *
+     * @param capacity maximum size of the vector
+     * @param index    indices of the entries
+     * @param data     values of the entries
+     * @param offset   position of the first entry
+     * @param length   number of entries
+     * @return this view
+     */
+    SparseVectorView reset(int capacity, int[] index, double[] data, int offset, int length) {
+        this.capacity = capacity;
+        this.index = index;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * @return maximum size of the vector
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of stored entries of the view
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Return the index of the k-th stored entry.
+     *
+     * @param k position of the entry, in [0, size())
+     * @return the index of the entry
+     */
+    public int getIndex(int k) {
+        return index[offset + k];
+    }
+
+    /**
+     * Return the value of the k-th stored entry.
+     *
+     * @param k position of the entry, in [0, size())
+     * @return the value of the entry
+     */
+    public double getValue(int k) {
+        return data[offset + k];
+    }
+
+    /**
+     * Find the position of the entry with the given index by binary search.
+     *
+     * @param idx the index to search
+     * @return the position of the entry, or a negative value if there is none
+     */
+    public int position(int idx) {
+        int i = Arrays.binarySearch(index, offset, offset + length, idx);
+        return i >= 0 ? i - offset : -1;
+    }
+
+    /**
+     * Check if the view contains a non-zero entry at a specific index.
+     *
+     * @param idx the index to search
+     * @return true if the entry at {@code idx} is non-zero
+     */
+    public boolean contains(int idx) {
+        int k = position(idx);
+        return k >= 0 && data[offset + k] != 0.0;
+    }
+
+    /**
+     * Retrieve the value at a specific index.
+     *
+     * @param idx the index
+     * @return the value at {@code idx}, 0 if there is no entry
+     */
+    public double get(int idx) {
+        int k = position(idx);
+        return k >= 0 ? data[offset + k] : 0;
+    }
+
+    /**
+     * @return number of non-zero entries of the view
+     */
+    public int getCount() {
+        int count = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+            if (data[i] != 0.0)
+                count++;
+
+        return count;
+    }
+
+    /**
+     * @return a sparse vector copied from the non-zero entries of the view
+     */
+    public SparseVector toSparseVector() {
+        return new SparseVector(capacity, index, data, offset, offset + length - 1);
+    }
+}
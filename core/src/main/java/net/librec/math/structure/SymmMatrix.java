@@ -20,15 +20,35 @@ package net.librec.math.structure;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 
+import java.util.Arrays;
+
 /**
- *
+ * Data Structure: Symmetric Sparse Matrix, e.g. a user-user or item-item
+ * similarity matrix.
+ * <p>
+ * Every row keeps its neighbours as a sorted primitive index array and a
+ * parallel value array, in the manner of Compressed Row Storage. An entry
+ * (row, col) is stored in both row and col, so {@link #row(int)} reads a
+ * single neighbour list and {@link #get(int, int)} is a binary search in
+ * O(log d).
  */
 public class SymmMatrix {
 
+    /** initial capacity of a row when the first entry is set */
+    private static final int INITIAL_ROW_CAPACITY = 4;
+
+    private static final int[] EMPTY_INDEX = new int[0];
+    private static final double[] EMPTY_DATA = new double[0];
+
     // matrix dimension
     protected int dim;
-    // matrix data
-    Table<Integer, Integer, Double> data;
+
+    // sorted neighbour indices and values of each row
+    int[][] rowIndex;
+    double[][] rowData;
+
+    // number of neighbours of each row
+    int[] rowSize;
 
     /**
      * Construct a symmetric matrix
@@ -37,8 +57,11 @@ public class SymmMatrix {
      */
     public SymmMatrix(int dim) {
         this.dim = dim;
-        data = HashBasedTable.create(); // do not specify the size here as a
-        // sparse matrix
+        rowIndex = new int[dim][];
+        rowData = new double[dim][];
+        rowSize = new int[dim];
+        Arrays.fill(rowIndex, EMPTY_INDEX);
+        Arrays.fill(rowData, EMPTY_DATA);
     }
 
     /**
@@ -48,7 +71,13 @@ public class SymmMatrix {
      */
     public SymmMatrix(SymmMatrix mat) {
         dim = mat.dim;
-        data = HashBasedTable.create(mat.data);
+        rowIndex = new int[dim][];
+        rowData = new double[dim][];
+        rowSize = Arrays.copyOf(mat.rowSize, dim);
+        for (int row = 0; row < dim; row++) {
+            rowIndex[row] = Arrays.copyOf(mat.rowIndex[row], rowSize[row]);
+            rowData[row] = Arrays.copyOf(mat.rowData[row], rowSize[row]);
+        }
     }
 
     /**
@@ -66,13 +95,9 @@ public class SymmMatrix {
      * @return value at entry (row, col)
      */
     public double get(int row, int col) {
+        int i = Arrays.binarySearch(rowIndex[row], 0, rowSize[row], col);
 
-        if (data.contains(row, col))
-            return data.get(row, col);
-        else if (data.contains(col, row))
-            return data.get(col, row);
-
-        return 0.0d;
+        return i >= 0 ? rowData[row][i] : 0.0d;
     }
 
     /**
@@ -83,11 +108,7 @@ public class SymmMatrix {
      * @return value at entry (row, col)
      */
     public boolean contains(int row, int col) {
-
-        if (data.contains(row, col)||data.contains(col, row))
-            return true;
-        else
-            return false;
+        return Arrays.binarySearch(rowIndex[row], 0, rowSize[row], col) >= 0;
     }
 
     /**
@@ -98,10 +119,9 @@ public class SymmMatrix {
      * @param val value to set
      */
     public void set(int row, int col, double val) {
-        if (row >= col)
-            data.put(row, col, val);
-        else
-            data.put(col, row, val);
+        put(row, col, val);
+        if (row != col)
+            put(col, row, val);
     }
 
     /**
@@ -112,10 +132,7 @@ public class SymmMatrix {
      * @param val value to add
      */
     public void add(int row, int col, double val) {
-        if (row >= col)
-            data.put(row, col, val + get(row, col));
-        else
-            data.put(col, row, val + get(col, row));
+        set(row, col, val + get(row, col));
     }
 
     /**
@@ -125,14 +142,28 @@ public class SymmMatrix {
      * @return a complete row of similar items
      */
     public SparseVector row(int row) {
-        SparseVector res = new SparseVector(dim);
-        for (int col = 0; col < dim; col++) {
-            double val = get(row, col);
-            if (val != 0)
-                res.set(col, val);
-        }
+        return new SparseVector(dim, rowIndex[row], rowData[row], 0, rowSize[row] - 1);
+    }
 
-        return res;
+    /**
+     * Get a read-only view of the neighbours of a row, sharing the arrays of the matrix
+     *
+     * @param row row index
+     * @return a view of the row entries
+     */
+    public SparseVectorView rowView(int row) {
+        return rowView(row, new SparseVectorView());
+    }
+
+    /**
+     * Point a given view at the neighbours of a row, sharing the arrays of the matrix
+     *
+     * @param row  row index
+     * @param view the view to reuse
+     * @return the given view
+     */
+    public SparseVectorView rowView(int row, SparseVectorView view) {
+        return view.reset(dim, rowIndex[row], rowData[row], 0, rowSize[row]);
     }
 
     /**
@@ -143,15 +174,80 @@ public class SymmMatrix {
     }
 
     /**
-     * @return the data
+     * @return number of stored entries (row, col) with row &gt;= col
      */
+    public int size() {
+        int size = 0;
+        for (int row = 0; row < dim; row++) {
+            int[] index = rowIndex[row];
+            for (int i = 0; i < rowSize[row] && index[i] <= row; i++)
+                size++;
+        }
+        return size;
+    }
+
+    /**
+     * Return a copy of the lower triangular entries of the matrix. The
+     * entries are stored in per-row arrays, so writes to the returned table
+     * do not change the matrix; use {@link #set(int, int, double)} instead.
+     *
+     * @return a table of the lower triangular entries (row &gt;= col) of the matrix
+     * @deprecated the table is a copy, not the data of the matrix; use {@link #copyData()}
+     */
+    @Deprecated
     public Table<Integer, Integer, Double> getData() {
+        return copyData();
+    }
+
+    /**
+     * Build a new table of the lower triangular entries of the matrix. Writes
+     * to the table do not change the matrix.
+     *
+     * @return a table of the lower triangular entries (row &gt;= col) of the matrix
+     */
+    public Table<Integer, Integer, Double> copyData() {
+        Table<Integer, Integer, Double> data = HashBasedTable.create();
+        for (int row = 0; row < dim; row++) {
+            int[] index = rowIndex[row];
+            for (int i = 0; i < rowSize[row] && index[i] <= row; i++)
+                data.put(row, index[i], rowData[row][i]);
+        }
         return data;
     }
 
+    /**
+     * Insert or replace the entry col in the neighbour list of row.
+     *
+     * @param row row index
+     * @param col column index
+     * @param val value to set
+     */
+    private void put(int row, int col, double val) {
+        int size = rowSize[row];
+        int[] index = rowIndex[row];
+        int i = Arrays.binarySearch(index, 0, size, col);
+        if (i >= 0) {
+            rowData[row][i] = val;
+            return;
+        }
+
+        i = -(i + 1);
+        double[] data = rowData[row];
+        if (size == index.length) {
+            int capacity = Math.max(INITIAL_ROW_CAPACITY, size + (size >> 1));
+            index = rowIndex[row] = Arrays.copyOf(index, capacity);
+            data = rowData[row] = Arrays.copyOf(data, capacity);
+        }
+        System.arraycopy(index, i, index, i + 1, size - i);
+        System.arraycopy(data, i, data, i + 1, size - i);
+        index[i] = col;
+        data[i] = val;
+        rowSize[row] = size + 1;
+    }
+
     @Override
     public String toString() {
-        return "Dimension: " + dim + " x " + dim + "\n" + data.toString();
+        return "Dimension: " + dim + " x " + dim + "\n" + copyData().toString();
     }
 
 }
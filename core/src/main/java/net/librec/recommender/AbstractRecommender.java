@@ -24,15 +24,23 @@ import net.librec.data.DataModel;
 import net.librec.eval.Measure;
 import net.librec.eval.Measure.MeasureValue;
 import net.librec.eval.RecommenderEvaluator;
-import net.librec.math.structure.MatrixEntry;
+import net.librec.eval.ranking.FusedRankingEvaluator;
+import net.librec.eval.rating.FusedRatingEvaluator;
 import net.librec.math.structure.SparseMatrix;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.item.*;
 import net.librec.util.ReflectionUtil;
+import net.librec.util.TopKHeap;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Abstract Recommender Methods
@@ -85,6 +93,12 @@ public abstract class AbstractRecommender implements Recommender {
      */
     protected RecommendedList recommendedList;
 
+    /**
+     * predicted ratings of the entries of the test matrix in its compressed row order,
+     * null unless the ratings are predicted by {@link #recommendRating()}
+     */
+    protected double[] testPredictions;
+
     /**
      * the number of users
      */
@@ -113,7 +127,7 @@ public abstract class AbstractRecommender implements Recommender {
     /**
      * a list of rating scales
      */
-    protected static List<Double> ratingScale;
+    protected List<Double> ratingScale;
 
     /**
      * user Mapping Data
@@ -138,7 +152,7 @@ public abstract class AbstractRecommender implements Recommender {
     /**
      * verbose
      */
-    protected static boolean verbose = true;
+    protected boolean verbose = true;
 
     /**
      * objective loss
@@ -233,6 +247,7 @@ public abstract class AbstractRecommender implements Recommender {
      * @throws LibrecException  if error occurs during recommending
      */
     protected RecommendedList recommend() throws LibrecException {
+        testPredictions = null;
         if (isRanking && topN > 0) {
             recommendedList = recommendRank();
         } else {
@@ -249,21 +264,40 @@ public abstract class AbstractRecommender implements Recommender {
      * @throws LibrecException if error occurs during recommending
      */
     protected RecommendedList recommendRank() throws LibrecException {
-        recommendedList = new RecommendedItemList(numUsers - 1, numUsers);
+        recommendedList = new ColumnarRecommendedList(numUsers, topN);
+
+        int numThreads = getPredictThreadCount("rec.recommender.ranking.thread.count");
+        numThreads = Math.max(1, Math.min(numThreads, numUsers));
+        List<RankingBlock> blocks = new ArrayList<>();
+        int blockSize = (numUsers + numThreads * 4 - 1) / (numThreads * 4);
+        for (int fromUser = 0; fromUser < numUsers; fromUser += blockSize) {
+            blocks.add(new RankingBlock(fromUser, Math.min(numUsers, fromUser + blockSize)));
+        }
 
-        for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
-            Set<Integer> itemSet = trainMatrix.getColumnsSet(userIdx);
-            for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
-                if (itemSet.contains(itemIdx)) {
-                    continue;
+        if (numThreads == 1) {
+            for (RankingBlock block : blocks) {
+                block.call();
+                block.addTo(recommendedList);
+            }
+        } else {
+            ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<RankingBlock>> results = executorService.invokeAll(blocks);
+                for (Future<RankingBlock> result : results) {
+                    result.get().addTo(recommendedList);
                 }
-                double predictRating = predict(userIdx, itemIdx);
-                if (Double.isNaN(predictRating)) {
-                    continue;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LibrecException) {
+                    throw (LibrecException) e.getCause();
                 }
-                recommendedList.addUserItemIdx(userIdx, itemIdx, predictRating);
+                LOG.error("", e);
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                LOG.error("", e);
+                throw new IllegalStateException(e);
+            } finally {
+                executorService.shutdown();
             }
-            recommendedList.topNRankItemsByUser(userIdx, topN);
         }
 
         if(recommendedList.size()==0){
@@ -273,26 +307,127 @@ public abstract class AbstractRecommender implements Recommender {
         return recommendedList;
     }
 
+    /**
+     * Predict the ranking scores of a user for the items which are not rated
+     * by the user in the train matrix. The scores of the rated items are
+     * ignored, and items scored NaN are not recommended. By default
+     * {@link #predict(int, int)} is called for every unrated item in
+     * ascending order, so recommenders whose predictions depend on their
+     * calling order behave as in a sequential loop over the items.
+     * <p>
+     * If rec.recommender.ranking.thread.count is greater than 1 and
+     * {@link #isPredictThreadSafe()} returns true, this method is called for
+     * different users concurrently.
+     *
+     * @param userIdx    user index
+     * @param ratedItems the items rated by the user in the train matrix
+     * @param scores     the scores of all items, to be filled
+     * @throws LibrecException if error occurs during predicting
+     */
+    protected void predictRankingScores(int userIdx, SparseVectorView ratedItems, double[] scores) throws LibrecException {
+        for (int itemIdx = 0, k = 0, numRated = ratedItems.size(); itemIdx < numItems; ++itemIdx) {
+            while (k < numRated && ratedItems.getIndex(k) < itemIdx) {
+                k++;
+            }
+            if (k < numRated && ratedItems.getIndex(k) == itemIdx && ratedItems.getValue(k) != 0.0) {
+                continue;
+            }
+            scores[itemIdx] = predict(userIdx, itemIdx);
+        }
+    }
+
+    /**
+     * Return whether {@link #predict(int, int)} and
+     * {@link #predictRankingScores(int, SparseVectorView, double[])} only read
+     * the trained model, so that they can be called for different users
+     * concurrently, to rank the items or to predict the test ratings.
+     * Recommenders which keep state between predictions, such as caches built
+     * lazily, must not return true.
+     *
+     * @return false by default, so the predictions are made by one thread
+     */
+    protected boolean isPredictThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Return the number of threads to predict with, read from the given key,
+     * or 1 if {@link #isPredictThreadSafe()} returns false.
+     *
+     * @param threadCountKey key of the number of threads
+     * @return number of threads
+     */
+    private int getPredictThreadCount(String threadCountKey) {
+        int numThreads = conf.getInt(threadCountKey, 1);
+        if (numThreads > 1 && !isPredictThreadSafe()) {
+            LOG.warn(threadCountKey + " is ignored because the predictions of " + getClass().getSimpleName()
+                    + " are not thread safe");
+            numThreads = 1;
+        }
+        return numThreads;
+    }
+
     /**
      * recommend
      * * predict the ratings in the test data
+     * * the ratings are predicted into {@link #testPredictions} by blocks of users,
+     * * which are predicted by rec.recommender.rating.thread.count threads
+     * * if {@link #isPredictThreadSafe()} returns true
      *
      * @return predictive rating matrix
      * @throws LibrecException if error occurs during recommending
      */
     protected RecommendedList recommendRating() throws LibrecException {
-        recommendedList = new RecommendedItemList(numUsers - 1, numUsers);
-
-        for (MatrixEntry matrixEntry : testMatrix) {
-            int userIdx = matrixEntry.row();
-            int itemIdx = matrixEntry.column();
-            double predictRating = predict(userIdx, itemIdx, true);
-            if (Double.isNaN(predictRating)) {
-                predictRating = globalMean;
+        int numTestUsers = testMatrix.numRows();
+        int[] rowPtr = testMatrix.getRowPointers();
+        int[] colInd = testMatrix.getColumnIndices();
+        testPredictions = new double[rowPtr[numTestUsers]];
+
+        int numThreads = getPredictThreadCount("rec.recommender.rating.thread.count");
+        numThreads = Math.max(1, Math.min(numThreads, numTestUsers));
+        List<RatingBlock> blocks = new ArrayList<>();
+        if (numThreads == 1) {
+            blocks.add(new RatingBlock(0, numTestUsers));
+        } else {
+            // blocks of about the same number of test entries
+            int blockSize = (testPredictions.length + numThreads * 4 - 1) / (numThreads * 4);
+            for (int fromUser = 0; fromUser < numTestUsers; ) {
+                int toUser = fromUser + 1;
+                while (toUser < numTestUsers && rowPtr[toUser] - rowPtr[fromUser] < blockSize) {
+                    toUser++;
+                }
+                blocks.add(new RatingBlock(fromUser, toUser));
+                fromUser = toUser;
             }
-            recommendedList.addUserItemIdx(userIdx, itemIdx, predictRating);
         }
 
+        if (numThreads == 1) {
+            for (RatingBlock block : blocks) {
+                block.call();
+            }
+        } else {
+            ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<RatingBlock>> results = executorService.invokeAll(blocks);
+                for (Future<RatingBlock> result : results) {
+                    result.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LibrecException) {
+                    throw (LibrecException) e.getCause();
+                }
+                LOG.error("", e);
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                LOG.error("", e);
+                throw new IllegalStateException(e);
+            } finally {
+                executorService.shutdown();
+            }
+        }
+
+        recommendedList = new ColumnarRecommendedList(rowPtr, colInd, testPredictions);
+
         return recommendedList;
     }
 
@@ -345,6 +480,8 @@ public abstract class AbstractRecommender implements Recommender {
 
     /**
      * evaluate Map
+     * * the ranking measures, or the rating measures of the predicted test ratings,
+     * * are evaluated together in a single pass
      *
      * @return evaluate map
      * @throws LibrecException if error occurs during constructing evaluate map
@@ -353,7 +490,17 @@ public abstract class AbstractRecommender implements Recommender {
         Map<MeasureValue, Double> evaluatedMap = new HashMap<>();
         List<MeasureValue> measureValueList = Measure.getMeasureEnumList(isRanking, topN);
         if (measureValueList != null) {
+            List<MeasureValue> rankingMeasureValues = new ArrayList<>();
+            List<MeasureValue> ratingMeasureValues = new ArrayList<>();
             for (MeasureValue measureValue : measureValueList) {
+                if (isRanking && FusedRankingEvaluator.isSupported(measureValue.getMeasure())) {
+                    rankingMeasureValues.add(measureValue);
+                    continue;
+                }
+                if (!isRanking && testPredictions != null && FusedRatingEvaluator.isSupported(measureValue.getMeasure())) {
+                    ratingMeasureValues.add(measureValue);
+                    continue;
+                }
                 RecommenderEvaluator evaluator = ReflectionUtil
                         .newInstance(measureValue.getMeasure().getEvaluatorClass());
                 if (isRanking && measureValue.getTopN() != null && measureValue.getTopN() > 0) {
@@ -362,6 +509,12 @@ public abstract class AbstractRecommender implements Recommender {
                 double evaluatedValue = evaluator.evaluate(context, recommendedList);
                 evaluatedMap.put(measureValue, evaluatedValue);
             }
+            if (rankingMeasureValues.size() > 0) {
+                evaluatedMap.putAll(new FusedRankingEvaluator(rankingMeasureValues).evaluate(context, recommendedList));
+            }
+            if (ratingMeasureValues.size() > 0) {
+                evaluatedMap.putAll(new FusedRatingEvaluator(ratingMeasureValues).evaluate(context, testPredictions));
+            }
         }
         return evaluatedMap;
     }
@@ -448,6 +601,15 @@ public abstract class AbstractRecommender implements Recommender {
         return null;
     }
 
+    /**
+     * get Recommended List by the inner indices of the users and items
+     *
+     * @return recommended list
+     */
+    public RecommendedList getRecommendedIdxList() {
+        return recommendedList;
+    }
+
     /**
      * Post each iteration, we do things:
      * <ol>
@@ -489,4 +651,107 @@ public abstract class AbstractRecommender implements Recommender {
 
         return converged;
     }
+
+    /**
+     * The predicted ratings of the test entries of the users in
+     * [fromUser, toUserExclusive), which are written into their positions
+     * in {@link #testPredictions}.
+     */
+    private class RatingBlock implements Callable<RatingBlock> {
+
+        private final int fromUser, toUserExclusive;
+
+        private RatingBlock(int fromUser, int toUserExclusive) {
+            this.fromUser = fromUser;
+            this.toUserExclusive = toUserExclusive;
+        }
+
+        @Override
+        public RatingBlock call() throws LibrecException {
+            int[] rowPtr = testMatrix.getRowPointers();
+            int[] colInd = testMatrix.getColumnIndices();
+            for (int userIdx = fromUser; userIdx < toUserExclusive; ++userIdx) {
+                for (int entryIdx = rowPtr[userIdx]; entryIdx < rowPtr[userIdx + 1]; ++entryIdx) {
+                    double predictRating = predict(userIdx, colInd[entryIdx], true);
+                    if (Double.isNaN(predictRating)) {
+                        predictRating = globalMean;
+                    }
+                    testPredictions[entryIdx] = predictRating;
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * The top-N ranked items of the users in [fromUser, toUserExclusive). The
+     * scores of a user are predicted into a reusable array and the unrated
+     * items are offered to a bounded heap, so that no item entries are
+     * created for the items which are not recommended.
+     */
+    private class RankingBlock implements Callable<RankingBlock> {
+
+        private final int fromUser, toUserExclusive;
+
+        /** the ranked items of user fromUser + u are at [u * topN, u * topN + numRanked[u]) */
+        private int[] rankedItems;
+        private double[] rankedScores;
+        private int[] numRanked;
+
+        private RankingBlock(int fromUser, int toUserExclusive) {
+            this.fromUser = fromUser;
+            this.toUserExclusive = toUserExclusive;
+        }
+
+        @Override
+        public RankingBlock call() throws LibrecException {
+            int numBlockUsers = toUserExclusive - fromUser;
+            rankedItems = new int[numBlockUsers * topN];
+            rankedScores = new double[numBlockUsers * topN];
+            numRanked = new int[numBlockUsers];
+
+            double[] scores = new double[numItems];
+            TopKHeap heap = new TopKHeap(topN);
+            SparseVectorView ratedItems = new SparseVectorView();
+            for (int userIdx = fromUser; userIdx < toUserExclusive; ++userIdx) {
+                trainMatrix.rowView(userIdx, ratedItems);
+                predictRankingScores(userIdx, ratedItems, scores);
+
+                // skip the rated items by walking the sorted row of the train matrix
+                heap.clear();
+                int numRated = ratedItems.size();
+                for (int itemIdx = 0, k = 0; itemIdx < numItems; ++itemIdx) {
+                    while (k < numRated && ratedItems.getIndex(k) < itemIdx) {
+                        k++;
+                    }
+                    if (k < numRated && ratedItems.getIndex(k) == itemIdx && ratedItems.getValue(k) != 0.0) {
+                        continue;
+                    }
+                    if (!Double.isNaN(scores[itemIdx])) {
+                        heap.offer(itemIdx, scores[itemIdx]);
+                    }
+                }
+                heap.sortDescending();
+
+                int offset = (userIdx - fromUser) * topN;
+                for (int n = 0; n < heap.size(); n++) {
+                    rankedItems[offset + n] = heap.getIndex(n);
+                    rankedScores[offset + n] = heap.getValue(n);
+                }
+                numRanked[userIdx - fromUser] = heap.size();
+            }
+            return this;
+        }
+
+        private void addTo(RecommendedList recommendedList) {
+            for (int userIdx = fromUser; userIdx < toUserExclusive; ++userIdx) {
+                int offset = (userIdx - fromUser) * topN;
+                for (int n = 0; n < numRanked[userIdx - fromUser]; n++) {
+                    recommendedList.addUserItemIdx(userIdx, rankedItems[offset + n], rankedScores[offset + n]);
+                }
+            }
+            rankedItems = null;
+            rankedScores = null;
+        }
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package net.librec.recommender;
 
 import net.librec.common.LibrecException;
 import net.librec.math.structure.DenseMatrix;
+import net.librec.math.structure.SparseVectorView;
 
 /**
  * Matrix Factorization Recommender
@@ -25,6 +26,11 @@ public abstract class MatrixFactorizationRecommender extends AbstractRecommender
      */
     protected DenseMatrix itemFactors;
 
+    /**
+     * the class declaring predict(int, int), found on first use
+     */
+    private Class<?> predictClass;
+
     /**
      * the number of latent factors;
      */
@@ -97,6 +103,71 @@ public abstract class MatrixFactorizationRecommender extends AbstractRecommender
         return DenseMatrix.rowMult(userFactors, userIdx, itemFactors, itemIdx);
     }
 
+    /**
+     * Predict the ranking scores of a user for all items in one pass over the
+     * item factors. Subclasses which override {@link #predict(int, int)} are
+     * scored item by item, unless they also override this method.
+     *
+     * @param userIdx    user index
+     * @param ratedItems the items rated by the user in the train matrix
+     * @param scores     the scores of all items, to be filled
+     * @throws LibrecException if error occurs during predicting
+     */
+    @Override
+    protected void predictRankingScores(int userIdx, SparseVectorView ratedItems, double[] scores) throws LibrecException {
+        if (getPredictClass() != MatrixFactorizationRecommender.class) {
+            super.predictRankingScores(userIdx, ratedItems, scores);
+            return;
+        }
+        DenseMatrix.rowMult(userFactors, userIdx, itemFactors, scores);
+    }
+
+    /**
+     * The predictions only read the factors, unless a subclass overrides
+     * {@link #predict(int, int)}.
+     *
+     * @return true if {@link #predict(int, int)} is the one of this class
+     */
+    @Override
+    protected boolean isPredictThreadSafe() {
+        return getPredictClass() == MatrixFactorizationRecommender.class;
+    }
+
+    /**
+     * Return the class which declares the implementation of
+     * {@link #predict(int, int)} of this recommender.
+     *
+     * @return the class declaring predict(int, int)
+     */
+    protected Class<?> getPredictClass() {
+        if (predictClass == null) {
+            Class<?> clazz = getClass();
+            for (; clazz != MatrixFactorizationRecommender.class; clazz = clazz.getSuperclass()) {
+                try {
+                    clazz.getDeclaredMethod("predict", int.class, int.class);
+                    break;
+                } catch (NoSuchMethodException e) {
+                    // not declared by this class
+                }
+            }
+            predictClass = clazz;
+        }
+        return predictClass;
+    }
+
+    /**
+     * @return the trained user latent factors
+     */
+    public DenseMatrix getUserFactors() {
+        return userFactors;
+    }
+
+    /**
+     * @return the trained item latent factors
+     */
+    public DenseMatrix getItemFactors() {
+        return itemFactors;
+    }
 
     /**
      * Update current learning rate after each epoch <br>
@@ -18,9 +18,26 @@
 package net.librec.recommender;
 
 import net.librec.common.LibrecException;
+import net.librec.math.structure.SparseVectorView;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by Keqiang Wang
+ * <p>
+ * Gibbs samplers may sample the tokens of blocks of users in parallel, as in
+ * AD-LDA of Newman et al., Distributed Algorithms for Topic Models, JMLR 2009:
+ * the topics of the tokens are kept in an int[] in the CRS order of
+ * trainMatrix, laid out by {@link #buildUserTokenOffsets(boolean)}, the users
+ * are partitioned by {@link #partitionUsers()}, every sweep is run by
+ * {@link #runSamplers(List)} with rec.thread.count threads, and the changes
+ * of the local copies of the counts shared by the blocks are merged by
+ * {@link #mergeCounts(double[][], List)}.
  */
 public abstract class ProbabilisticGraphicalRecommender extends AbstractRecommender {
     /**
@@ -53,6 +70,22 @@ public abstract class ProbabilisticGraphicalRecommender extends AbstractRecommen
      */
     protected int sampleLag;
 
+    /**
+     * number of threads to sample the blocks of users
+     */
+    protected int numThreads;
+
+    /**
+     * entry[u]: index in the CRS order of trainMatrix of the first token of
+     * user u, and entry[numUsers]: number of tokens.
+     */
+    protected int[] userTokenOffsets;
+
+    /**
+     * threads to run the samplers if there are more than one
+     */
+    private ExecutorService executorService;
+
     /**
      * setup
      * init member method
@@ -66,29 +99,172 @@ public abstract class ProbabilisticGraphicalRecommender extends AbstractRecommen
         numItems = trainMatrix.numColumns();
         burnIn = conf.getInt("rec.pgm.burnin", 100);
         sampleLag = conf.getInt("rec.pgm.samplelag", 100);
+        numThreads = Math.max(1, Math.min(conf.getInt("rec.thread.count", 1), numUsers));
     }
 
     @Override
     protected void trainModel() throws LibrecException {
-        for (int iter = 1; iter <= numIterations; iter++) {
-            // E-step: infer parameters
-            eStep();
+        try {
+            for (int iter = 1; iter <= numIterations; iter++) {
+                // E-step: infer parameters
+                eStep();
 
-            // M-step: update hyper-parameters
-            mStep();
+                // M-step: update hyper-parameters
+                mStep();
 
-            // get statistics after burn-in
-            if ((iter > burnIn) && (iter % sampleLag == 0)) {
-                readoutParams();
+                // get statistics after burn-in
+                if ((iter > burnIn) && (iter % sampleLag == 0)) {
+                    readoutParams();
 
-                if (isConverged(iter) && earlyStop)
-                    break;
+                    if (isConverged(iter) && earlyStop)
+                        break;
+                }
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdown();
+                executorService = null;
             }
         }
         // retrieve posterior probability distributions
         estimateParams();
     }
 
+    /**
+     * Fill {@link #userTokenOffsets} with the tokens of the users in the CRS
+     * order of trainMatrix.
+     *
+     * @param tokensByValue whether an entry is as many tokens as its value,
+     *                      e.g. counts of implicit feedback, or one token
+     * @return the number of tokens
+     */
+    protected int buildUserTokenOffsets(boolean tokensByValue) {
+        int numTokens = 0;
+        userTokenOffsets = new int[numUsers + 1];
+        SparseVectorView itemView = new SparseVectorView();
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            userTokenOffsets[userIdx] = numTokens;
+            trainMatrix.rowView(userIdx, itemView);
+            if (!tokensByValue) {
+                numTokens += itemView.size();
+                continue;
+            }
+            for (int k = 0; k < itemView.size(); k++) {
+                numTokens += Math.max(0, (int) itemView.getValue(k));
+            }
+        }
+        userTokenOffsets[numUsers] = numTokens;
+        return numTokens;
+    }
+
+    /**
+     * Partition the users into {@link #numThreads} blocks of consecutive users
+     * with about the same number of tokens of {@link #userTokenOffsets}.
+     *
+     * @return entry[t]: the first user of block t, and entry[numThreads]: numUsers
+     */
+    protected int[] partitionUsers() {
+        int numTokens = userTokenOffsets[numUsers];
+        int[] blockUsers = new int[numThreads + 1];
+        for (int t = 0, toUser = 0; t < numThreads; t++) {
+            long toToken = (long) numTokens * (t + 1) / numThreads;
+            while (toUser < numUsers && (t == numThreads - 1 || userTokenOffsets[toUser] < toToken)) {
+                toUser++;
+            }
+            blockUsers[t + 1] = toUser;
+        }
+        return blockUsers;
+    }
+
+    /**
+     * Run the samplers of the blocks of users for one sweep, in the calling
+     * thread if there is one, or else at the same time, and rethrow their
+     * runtime exceptions.
+     *
+     * @param samplers the samplers of the blocks of users
+     * @param <T>      the result type of the samplers
+     */
+    protected <T> void runSamplers(List<? extends Callable<T>> samplers) {
+        try {
+            if (samplers.size() == 1) {
+                samplers.get(0).call();
+                return;
+            }
+            if (executorService == null) {
+                executorService = Executors.newFixedThreadPool(numThreads);
+            }
+            for (Future<T> result : executorService.invokeAll(samplers)) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            LOG.error("", e);
+            throw new IllegalStateException(e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Merge the changes which the samplers made to their local copies of
+     * the counts into the counts.
+     *
+     * @param counts      the counts, copied by the samplers before the sweep
+     * @param localCounts the local copies of the samplers
+     */
+    protected static void mergeCounts(double[] counts, List<double[]> localCounts) {
+        for (int j = 0; j < counts.length; j++) {
+            double count = counts[j];
+            for (double[] local : localCounts) {
+                count += local[j] - counts[j];
+            }
+            counts[j] = count;
+        }
+    }
+
+    /**
+     * Merge the changes which the samplers made to their local copies of
+     * the counts into the counts.
+     *
+     * @param counts      the counts, copied by the samplers before the sweep
+     * @param localCounts the local copies of the samplers
+     */
+    protected static void mergeCounts(double[][] counts, List<double[][]> localCounts) {
+        for (int i = 0; i < counts.length; i++) {
+            for (int j = 0; j < counts[i].length; j++) {
+                double count = counts[i][j];
+                for (double[][] local : localCounts) {
+                    count += local[i][j] - counts[i][j];
+                }
+                counts[i][j] = count;
+            }
+        }
+    }
+
+    /**
+     * Merge the changes which the samplers made to their local copies of
+     * the counts into the counts.
+     *
+     * @param counts      the counts, copied by the samplers before the sweep
+     * @param localCounts the local copies of the samplers
+     */
+    protected static void mergeCounts(int[][] counts, List<int[][]> localCounts) {
+        for (int i = 0; i < counts.length; i++) {
+            for (int j = 0; j < counts[i].length; j++) {
+                int count = counts[i][j];
+                for (int[][] local : localCounts) {
+                    count += local[i][j] - counts[i][j];
+                }
+                counts[i][j] = count;
+            }
+        }
+    }
+
     protected boolean isConverged(int iter){
         return false;
     }
@@ -22,6 +22,7 @@ import net.librec.data.DataModel;
 import net.librec.eval.Measure.MeasureValue;
 import net.librec.eval.RecommenderEvaluator;
 import net.librec.recommender.item.RecommendedItem;
+import net.librec.recommender.item.RecommendedList;
 
 import java.util.List;
 import java.util.Map;
@@ -85,6 +86,14 @@ public interface Recommender {
      */
     List<RecommendedItem> getRecommendedList();
 
+    /**
+     * get Recommended List by the inner indices of the users and items,
+     * which is not converted to ids
+     *
+     * @return  recommended list
+     */
+    RecommendedList getRecommendedIdxList();
+
 
     /**
      * set Context
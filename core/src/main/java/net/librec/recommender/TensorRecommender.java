@@ -458,6 +458,11 @@ public abstract class TensorRecommender implements Recommender {
         return null;
     }
 
+    @Override
+    public RecommendedList getRecommendedIdxList() {
+        return null;
+    }
+
     /**
      * @param context the context to set
      */
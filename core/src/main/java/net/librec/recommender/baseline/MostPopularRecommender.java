@@ -21,28 +21,27 @@ package net.librec.recommender.baseline;
 import net.librec.common.LibrecException;
 import net.librec.recommender.AbstractRecommender;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Baseline: items are weighted by the number of ratings they received.
  */
 public class MostPopularRecommender extends AbstractRecommender {
 
     /**
-     * most popular items
+     * rated count of each item
      */
-    private Map<Integer, Integer> itemPops;
+    private int[] itemPops;
 
     @Override
     protected void setup() throws LibrecException {
         super.setup();
-        itemPops = new HashMap<>();
+        itemPops = new int[numItems];
     }
 
     @Override
     protected void trainModel() throws LibrecException {
-
+        for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+            itemPops[itemIdx] = trainMatrix.columnSize(itemIdx);
+        }
     }
 
     /**
@@ -55,9 +54,17 @@ public class MostPopularRecommender extends AbstractRecommender {
      */
     @Override
     protected double predict(int userIdx, int itemIdx) throws LibrecException {
-        if (!itemPops.containsKey(itemIdx))
-            itemPops.put(itemIdx, trainMatrix.columnSize(itemIdx));
+        return itemPops[itemIdx];
+    }
 
-        return itemPops.get(itemIdx);
+    /**
+     * The rated counts are counted while training, so the predictions only
+     * read them.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isPredictThreadSafe() {
+        return true;
     }
 }
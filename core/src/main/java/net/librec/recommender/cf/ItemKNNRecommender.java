@@ -21,8 +21,8 @@ import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.structure.DenseVector;
 import net.librec.math.structure.SparseVector;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.math.structure.SymmMatrix;
-import net.librec.math.structure.VectorEntry;
 import net.librec.recommender.AbstractRecommender;
 import net.librec.util.Lists;
 
@@ -138,13 +138,15 @@ public class ItemKNNRecommender extends AbstractRecommender {
      */
     public void createItemSimilarityList() {
         itemSimilarityList = new ArrayList[numItems];
+        SparseVectorView similarityView = new SparseVectorView();
         for (int itemIdx = 0; itemIdx < numItems; ++itemIdx) {
-            SparseVector similarityVector = similarityMatrix.row(itemIdx);
-            itemSimilarityList[itemIdx] = new ArrayList<>(similarityVector.size());
-            Iterator<VectorEntry> simItr = similarityVector.iterator();
-            while (simItr.hasNext()) {
-                VectorEntry simVectorEntry = simItr.next();
-                itemSimilarityList[itemIdx].add(new AbstractMap.SimpleImmutableEntry<>(simVectorEntry.index(), simVectorEntry.get()));
+            similarityMatrix.rowView(itemIdx, similarityView);
+            itemSimilarityList[itemIdx] = new ArrayList<>(similarityView.size());
+            for (int k = 0; k < similarityView.size(); k++) {
+                double sim = similarityView.getValue(k);
+                if (sim != 0.0) {
+                    itemSimilarityList[itemIdx].add(new AbstractMap.SimpleImmutableEntry<>(similarityView.getIndex(k), sim));
+                }
             }
             Lists.sortList(itemSimilarityList[itemIdx], true);
         }
@@ -21,8 +21,8 @@ import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.structure.DenseVector;
 import net.librec.math.structure.SparseVector;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.math.structure.SymmMatrix;
-import net.librec.math.structure.VectorEntry;
 import net.librec.recommender.AbstractRecommender;
 import net.librec.util.Lists;
 
@@ -83,10 +83,10 @@ public class UserKNNRecommender extends AbstractRecommender {
         List<Map.Entry<Integer, Double>> simList = userSimilarityList[userIdx];
 
         int count = 0;
-        Set<Integer> userSet = trainMatrix.getRowsSet(itemIdx);
+        SparseVectorView userRatingsView = trainMatrix.columnView(itemIdx);
         for (Map.Entry<Integer, Double> userRatingEntry : simList) {
             int similarUserIdx = userRatingEntry.getKey();
-            if (!userSet.contains(similarUserIdx)) {
+            if (!userRatingsView.contains(similarUserIdx)) {
                 continue;
             }
             double sim = userRatingEntry.getValue();
@@ -116,7 +116,7 @@ public class UserKNNRecommender extends AbstractRecommender {
             for (Entry<Integer, Double> userRatingEntry : nns) {
                 int similarUserIdx = userRatingEntry.getKey();
                 double sim = userRatingEntry.getValue();
-                double rate = trainMatrix.get(similarUserIdx, itemIdx);
+                double rate = userRatingsView.get(similarUserIdx);
                 sum += sim * (rate - userMeans.get(similarUserIdx));
                 ws += Math.abs(sim);
             }
@@ -129,13 +129,15 @@ public class UserKNNRecommender extends AbstractRecommender {
      */
     public void createUserSimilarityList() {
         userSimilarityList = new ArrayList[numUsers];
+        SparseVectorView similarityView = new SparseVectorView();
         for (int userIndex = 0; userIndex < numUsers; ++userIndex) {
-            SparseVector similarityVector = similarityMatrix.row(userIndex);
-            userSimilarityList[userIndex] = new ArrayList<>(similarityVector.size());
-            Iterator<VectorEntry> simItr = similarityVector.iterator();
-            while (simItr.hasNext()) {
-                VectorEntry simVectorEntry = simItr.next();
-                userSimilarityList[userIndex].add(new AbstractMap.SimpleImmutableEntry<>(simVectorEntry.index(), simVectorEntry.get()));
+            similarityMatrix.rowView(userIndex, similarityView);
+            userSimilarityList[userIndex] = new ArrayList<>(similarityView.size());
+            for (int k = 0; k < similarityView.size(); k++) {
+                double sim = similarityView.getValue(k);
+                if (sim != 0.0) {
+                    userSimilarityList[userIndex].add(new AbstractMap.SimpleImmutableEntry<>(similarityView.getIndex(k), sim));
+                }
             }
             Lists.sortList(userSimilarityList[userIndex], true);
         }
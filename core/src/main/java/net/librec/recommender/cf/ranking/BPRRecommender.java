@@ -20,34 +20,51 @@ package net.librec.recommender.cf.ranking;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.algorithm.Maths;
+import net.librec.math.algorithm.RandomStream;
 import net.librec.math.algorithm.Randoms;
-import net.librec.math.structure.MatrixEntry;
-import net.librec.math.structure.SparseMatrix;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.MatrixFactorizationRecommender;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Rendle et al., <strong>BPR: Bayesian Personalized Ranking from Implicit Feedback</strong>, UAI 2009.
+ * <p>
+ * With rec.thread.count greater than 1, the samples of an iteration are drawn
+ * and learned by several threads which update the shared factors without
+ * locks, as in Niu et al., Hogwild!: A lock-free approach to parallelizing
+ * stochastic gradient descent, NIPS 2011.
  *
  * @author GuoGuibing and Keqiang Wang
  */
 @ModelData({"isRanking", "bpr", "userFactors", "itemFactors"})
 public class BPRRecommender extends MatrixFactorizationRecommender {
-    private List<Set<Integer>> userItemsSet;
+
+    /**
+     * number of threads to learn the samples
+     */
+    private int numThreads;
 
     @Override
     protected void setup() throws LibrecException {
         super.setup();
+        numThreads = Math.max(1, conf.getInt("rec.thread.count", 1));
     }
 
     @Override
     protected void trainModel() throws LibrecException {
+        if (numThreads > 1) {
+            trainModelInParallel();
+            return;
+        }
 
-        userItemsSet = getUserItemsSet(trainMatrix);
+        SparseVectorView itemView = new SparseVectorView();
 
         for (int iter = 1; iter <= numIterations; iter++) {
 
@@ -58,53 +75,163 @@ public class BPRRecommender extends MatrixFactorizationRecommender {
                 int userIdx, posItemIdx, negItemIdx;
                 while (true) {
                     userIdx = Randoms.uniform(numUsers);
-                    Set<Integer> itemSet = userItemsSet.get(userIdx);
-                    if (itemSet.size() == 0 || itemSet.size() == numItems)
+                    trainMatrix.rowView(userIdx, itemView);
+                    int numPosItems = itemView.getCount();
+                    if (numPosItems == 0 || numPosItems == numItems)
                         continue;
 
-                    List<Integer> itemList = trainMatrix.getColumns(userIdx);
-                    posItemIdx = itemList.get(Randoms.uniform(itemList.size()));
+                    posItemIdx = getPosItemIdx(itemView, Randoms.uniform(numPosItems));
                     do {
                         negItemIdx = Randoms.uniform(numItems);
-                    } while (itemSet.contains(negItemIdx));
+                    } while (itemView.contains(negItemIdx));
 
                     break;
                 }
 
                 // update parameters
-                double posPredictRating = predict(userIdx, posItemIdx);
-                double negPredictRating = predict(userIdx, negItemIdx);
-                double diffValue = posPredictRating - negPredictRating;
-
-                double lossValue = -Math.log(Maths.logistic(diffValue));
-                loss += lossValue;
-
-                double deriValue = Maths.logistic(-diffValue);
+                loss = updateFactors(userIdx, posItemIdx, negItemIdx, loss);
+            }
+            if (isConverged(iter) && earlyStop) {
+                break;
+            }
+            updateLRate(iter);
+        }
+    }
 
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    double userFactorValue = userFactors.get(userIdx, factorIdx);
-                    double posItemFactorValue = itemFactors.get(posItemIdx, factorIdx);
-                    double negItemFactorValue = itemFactors.get(negItemIdx, factorIdx);
+    /**
+     * Learn the samples of every iteration with {@link #numThreads} threads,
+     * each drawing its share of the samples with its own random stream.
+     * The streams are derived from the random seed, so the samples are the
+     * same for a given random seed and number of threads, and the model is
+     * reproducible up to the order of the unsynchronized updates.
+     *
+     * @throws LibrecException if error occurs during training
+     */
+    private void trainModelInParallel() throws LibrecException {
+        int numSamples = numUsers * 100;
+        List<SampleWorker> workers = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int fromSample = (int) ((long) numSamples * t / numThreads);
+            int toSample = (int) ((long) numSamples * (t + 1) / numThreads);
+            workers.add(new SampleWorker(toSample - fromSample, Randoms.stream(t)));
+        }
 
-                    userFactors.add(userIdx, factorIdx, learnRate * (deriValue * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue));
-                    itemFactors.add(posItemIdx, factorIdx, learnRate * (deriValue * userFactorValue - regItem * posItemFactorValue));
-                    itemFactors.add(negItemIdx, factorIdx, learnRate * (deriValue * (-userFactorValue) - regItem * negItemFactorValue));
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (int iter = 1; iter <= numIterations; iter++) {
 
-                    loss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue + regItem * negItemFactorValue * negItemFactorValue;
+                loss = 0.0d;
+                for (Future<Double> result : executorService.invokeAll(workers)) {
+                    loss += result.get();
+                }
+                if (isConverged(iter) && earlyStop) {
+                    break;
                 }
+                updateLRate(iter);
             }
-            if (isConverged(iter) && earlyStop) {
-                break;
+        } catch (InterruptedException | ExecutionException e) {
+            LOG.error("", e);
+            throw new IllegalStateException(e);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Return the index of the n-th non-zero entry of a row, skipping the
+     * explicit zeros stored in the train matrix.
+     *
+     * @param itemView view of the row of a user
+     * @param n        position among the non-zero entries, in [0, getCount())
+     * @return index of the item
+     */
+    private static int getPosItemIdx(SparseVectorView itemView, int n) {
+        for (int k = 0, numEntries = itemView.size(); k < numEntries; k++) {
+            if (itemView.getValue(k) != 0.0 && n-- == 0) {
+                return itemView.getIndex(k);
             }
-            updateLRate(iter);
         }
+        throw new IndexOutOfBoundsException("position out of the non-zero entries");
+    }
+
+    /**
+     * Update the factors with a sample (userIdx, posItemIdx, negItemIdx).
+     *
+     * @param userIdx    user index
+     * @param posItemIdx index of an item rated by the user
+     * @param negItemIdx index of an item not rated by the user
+     * @param loss       loss of the previous samples
+     * @return loss of the previous samples and this sample
+     */
+    private double updateFactors(int userIdx, int posItemIdx, int negItemIdx, double loss) {
+        double[] userFactorValues = userFactors.data[userIdx];
+        double[] posItemFactorValues = itemFactors.data[posItemIdx];
+        double[] negItemFactorValues = itemFactors.data[negItemIdx];
+
+        double posPredictRating = 0, negPredictRating = 0;
+        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+            posPredictRating += userFactorValues[factorIdx] * posItemFactorValues[factorIdx];
+            negPredictRating += userFactorValues[factorIdx] * negItemFactorValues[factorIdx];
+        }
+        double diffValue = posPredictRating - negPredictRating;
+
+        double lossValue = -Math.log(Maths.logistic(diffValue));
+        loss += lossValue;
+
+        double deriValue = Maths.logistic(-diffValue);
+
+        for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+            double userFactorValue = userFactorValues[factorIdx];
+            double posItemFactorValue = posItemFactorValues[factorIdx];
+            double negItemFactorValue = negItemFactorValues[factorIdx];
+
+            userFactorValues[factorIdx] += learnRate * (deriValue * (posItemFactorValue - negItemFactorValue) - regUser * userFactorValue);
+            posItemFactorValues[factorIdx] += learnRate * (deriValue * userFactorValue - regItem * posItemFactorValue);
+            negItemFactorValues[factorIdx] += learnRate * (deriValue * (-userFactorValue) - regItem * negItemFactorValue);
+
+            loss += regUser * userFactorValue * userFactorValue + regItem * posItemFactorValue * posItemFactorValue + regItem * negItemFactorValue * negItemFactorValue;
+        }
+        return loss;
     }
 
-    private List<Set<Integer>> getUserItemsSet(SparseMatrix sparseMatrix) {
-        List<Set<Integer>> userItemsSet = new ArrayList<>();
-        for (int userIdx = 0; userIdx < numUsers; ++userIdx) {
-            userItemsSet.add(new HashSet(sparseMatrix.getColumns(userIdx)));
+    /**
+     * Draws and learns a number of samples per iteration with its own random
+     * generator, and returns their loss.
+     */
+    private class SampleWorker implements Callable<Double> {
+
+        private final int numSamples;
+        private final RandomStream random;
+        private final SparseVectorView itemView = new SparseVectorView();
+
+        private SampleWorker(int numSamples, RandomStream random) {
+            this.numSamples = numSamples;
+            this.random = random;
+        }
+
+        @Override
+        public Double call() {
+            double loss = 0.0d;
+            for (int sampleCount = 0; sampleCount < numSamples; sampleCount++) {
+                int userIdx, posItemIdx, negItemIdx;
+                while (true) {
+                    userIdx = random.nextInt(numUsers);
+                    trainMatrix.rowView(userIdx, itemView);
+                    int numPosItems = itemView.getCount();
+                    if (numPosItems == 0 || numPosItems == numItems)
+                        continue;
+
+                    posItemIdx = getPosItemIdx(itemView, random.nextInt(numPosItems));
+                    do {
+                        negItemIdx = random.nextInt(numItems);
+                    } while (itemView.contains(negItemIdx));
+
+                    break;
+                }
+
+                loss = updateFactors(userIdx, posItemIdx, negItemIdx, loss);
+            }
+            return loss;
         }
-        return userItemsSet;
     }
 }
@@ -2,12 +2,15 @@ package net.librec.recommender.cf.ranking;
 
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
+import net.librec.math.algorithm.ConjugateGradient;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.MatrixEntry;
 import net.librec.math.structure.SparseMatrix;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.MatrixFactorizationRecommender;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -18,6 +21,8 @@ import java.util.List;
  * <li><strong>Real ratings:</strong> Hu et al., Collaborative filtering for implicit feedback datasets, ICDM 2008.</li>
  * <li>Fast Matrix Factorization for Online Recommendation With Implicit Feedback, SIGIR 2016</li>
  * </ul>
+ * With rec.wrmf.cg.steps greater than 0, the factors of a user or an item are
+ * updated by a few conjugate gradient steps instead of coordinate-wise.
  *
  * @author Keqiang Wang
  */
@@ -53,6 +58,11 @@ public class EALSRecommender extends MatrixFactorizationRecommender {
      */
     private SparseMatrix weights;
 
+    /**
+     * number of conjugate gradient steps to update a row, or 0 to update it coordinate-wise
+     */
+    private int cgSteps;
+
     @Override
     protected void setup() throws LibrecException {
         super.setup();
@@ -60,6 +70,7 @@ public class EALSRecommender extends MatrixFactorizationRecommender {
         ratio = conf.getFloat("rec.eals.ratio", 0.4f);
         overallWeight = conf.getFloat("rec.eals.overall", 128.0f);
         WRMFJudge = conf.getInt("rec.eals.wrmf.judge", 1);
+        cgSteps = conf.getInt("rec.wrmf.cg.steps", 0);
 
         confidences = new double[numItems];
         weights = new SparseMatrix(trainMatrix);
@@ -114,6 +125,8 @@ public class EALSRecommender extends MatrixFactorizationRecommender {
         //Init user factors cache Sp
         DenseMatrix userFactorsCache;
 
+        RowSystem rowSystem = cgSteps > 0 ? new RowSystem() : null;
+
         for (int iter = 1; iter <= numIterations; iter++) {
             // Update the Sq cache
             for (int factorIdx1 = 0; factorIdx1 < numFactors; factorIdx1++) {
@@ -128,6 +141,10 @@ public class EALSRecommender extends MatrixFactorizationRecommender {
             }
             // Step 1: update user factors;
             for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+                if (rowSystem != null) {
+                    rowSystem.updateUser(userIdx, itemFactorsCache);
+                    continue;
+                }
                 for (int itemIdx : userItemsList.get(userIdx)) {
                     itemsPredictions[itemIdx] = DenseMatrix.rowMult(userFactors, userIdx, itemFactors, itemIdx);
                     itemsWeights[itemIdx] = weights.get(userIdx, itemIdx);
@@ -161,6 +178,10 @@ public class EALSRecommender extends MatrixFactorizationRecommender {
             userFactorsCache = userFactors.transpose().mult(userFactors);
             // Step 2: update item factors;
             for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+                if (rowSystem != null) {
+                    rowSystem.updateItem(itemIdx, userFactorsCache);
+                    continue;
+                }
                 for (int userIdx : itemUsersList.get(itemIdx)) {
                     usersPredictions[userIdx] = DenseMatrix.rowMult(userFactors, userIdx, itemFactors, itemIdx);
                     usersWeights[userIdx] = weights.get(userIdx, itemIdx);
@@ -210,4 +231,95 @@ public class EALSRecommender extends MatrixFactorizationRecommender {
         }
         return itemUsersList;
     }
+
+    /**
+     * The least squares system of a user, (Sq + sum_i (w_ui - c_i) * q_i * q_it +
+     * lambda * I) * p_u = sum_i w_ui * q_i over the items i rated by the user, or
+     * of an item, (c_i * Sp + sum_u (w_ui - c_i) * p_u * p_ut + lambda * I) * q_i =
+     * sum_u w_ui * p_u over the users u who rated the item. The factors of the
+     * row are updated by a few conjugate gradient steps from their current
+     * values, multiplying the system with a vector in O(k^2 + nnz * k).
+     */
+    private class RowSystem extends ConjugateGradient {
+
+        private final SparseVectorView ratingView = new SparseVectorView();
+        private final SparseVectorView weightView = new SparseVectorView();
+        private final double[] b = new double[numFactors];
+
+        private boolean isUser;
+        private int row;
+        private double[][] cache;
+        private DenseMatrix fixedFactors;
+        private double reg;
+
+        private RowSystem() {
+            super(numFactors);
+        }
+
+        private void updateUser(int userIdx, DenseMatrix itemFactorsCache) {
+            isUser = true;
+            row = userIdx;
+            cache = itemFactorsCache.data;
+            fixedFactors = itemFactors;
+            reg = regUser;
+            trainMatrix.rowView(userIdx, ratingView);
+            weights.rowView(userIdx, weightView);
+            update(userFactors.data[userIdx]);
+        }
+
+        private void updateItem(int itemIdx, DenseMatrix userFactorsCache) {
+            isUser = false;
+            row = itemIdx;
+            cache = userFactorsCache.data;
+            fixedFactors = userFactors;
+            reg = regItem;
+            trainMatrix.columnView(itemIdx, ratingView);
+            weights.columnView(itemIdx, weightView);
+            update(itemFactors.data[itemIdx]);
+        }
+
+        private void update(double[] factorValues) {
+            Arrays.fill(b, 0.0);
+            // the weights share the structure of the train matrix
+            for (int k = 0, size = ratingView.size(); k < size; k++) {
+                if (ratingView.getValue(k) == 0.0) {
+                    continue;
+                }
+                double[] fixedFactorValues = fixedFactors.data[ratingView.getIndex(k)];
+                double weight = weightView.getValue(k);
+                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                    b[factorIdx] += weight * fixedFactorValues[factorIdx];
+                }
+            }
+            solve(b, factorValues, cgSteps);
+        }
+
+        @Override
+        protected void multiply(double[] vector, double[] result) {
+            double cacheScale = isUser ? 1.0 : confidences[row];
+            for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                double[] cacheRow = cache[factorIdx];
+                double value = 0.0;
+                for (int factorIdxIn = 0; factorIdxIn < numFactors; factorIdxIn++) {
+                    value += cacheRow[factorIdxIn] * vector[factorIdxIn];
+                }
+                result[factorIdx] = cacheScale * value + reg * vector[factorIdx];
+            }
+            for (int k = 0, size = ratingView.size(); k < size; k++) {
+                if (ratingView.getValue(k) == 0.0) {
+                    continue;
+                }
+                int fixedIdx = ratingView.getIndex(k);
+                double[] fixedFactorValues = fixedFactors.data[fixedIdx];
+                double value = 0.0;
+                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                    value += fixedFactorValues[factorIdx] * vector[factorIdx];
+                }
+                value *= weightView.getValue(k) - confidences[isUser ? fixedIdx : row];
+                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                    result[factorIdx] += value * fixedFactorValues[factorIdx];
+                }
+            }
+        }
+    }
 }
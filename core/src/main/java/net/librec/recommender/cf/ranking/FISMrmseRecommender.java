@@ -41,7 +41,7 @@ public class FISMrmseRecommender extends MatrixFactorizationRecommender {
 	/**
 	 * Guava cache configuration
 	 */
-	protected static String cacheSpec;
+	protected String cacheSpec;
 	/**
 	 * user-items cache, item-users cache
 	 */
@@ -60,7 +60,7 @@ public class GBPRRecommender extends MatrixFactorizationRecommender {
     /**
      * Guava cache configuration
      */
-    protected static String cacheSpec;
+    protected String cacheSpec;
 
     @Override
     protected void setup() throws LibrecException {
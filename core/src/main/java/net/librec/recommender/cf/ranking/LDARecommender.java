@@ -19,14 +19,19 @@ package net.librec.recommender.cf.ranking;
 
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
+import net.librec.math.algorithm.AliasTable;
 import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.DenseVector;
 import net.librec.math.structure.MatrixEntry;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.ProbabilisticGraphicalRecommender;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
 
 import static net.librec.math.algorithm.Gamma.digamma;
 
@@ -39,6 +44,14 @@ import static net.librec.math.algorithm.Gamma.digamma;
  * mentioned that, one way is to treat items as documents and ratings as words. We did not provide such an LDA
  * implementation for explicit ratings. Instead, we provide recommender {@code URP} as an alternative LDA model for
  * explicit ratings.
+ * <p>
+ * With rec.thread.count greater than 1, the users are partitioned among the
+ * threads, which sample the topics of their users with local copies of the
+ * topic-item counts and merge the changes at the end of every sweep, as in
+ * AD-LDA of Newman et al., Distributed Algorithms for Topic Models, JMLR 2009,
+ * see {@link ProbabilisticGraphicalRecommender}.
+ * With rec.lda.alias.sampling, a topic is sampled from an alias table of the
+ * item and the topics of the user instead of all topics.
  *
  * @author guoguibing and Keqiang Wang
  */
@@ -65,9 +78,9 @@ public class LDARecommender extends ProbabilisticGraphicalRecommender {
     protected DenseMatrix userTopicNumbers;
 
     /**
-     * topic assignment as list from the iterator of trainMatrix
+     * topic assignment of every token, in the order of the entries of trainMatrix
      */
-    protected List<Integer> topicAssignments;
+    protected int[] topicAssignments;
 
     /**
      * entry[u]: number of tokens rated by user u.
@@ -104,6 +117,21 @@ public class LDARecommender extends ProbabilisticGraphicalRecommender {
      */
     protected int numStats = 0;
 
+    /**
+     * number of Metropolis-Hastings steps of alias sampling per token
+     */
+    private static final int NUM_MH_STEPS = 2;
+
+    /**
+     * whether to sample the topics from alias tables of the items
+     */
+    protected boolean aliasSampling;
+
+    /**
+     * samplers of the blocks of users
+     */
+    private List<GibbsSampler> samplers;
+
     /**
      * setup
      * init member method
@@ -136,8 +164,11 @@ public class LDARecommender extends ProbabilisticGraphicalRecommender {
         beta = new DenseVector(numItems);
         beta.setAll(initBeta);
 
+        int numTokens = buildUserTokenOffsets(true);
+
         // The z_u,i are initialized to values in [0, K-1] to determine the initial state of the Markov chain.
-        topicAssignments = new ArrayList<>(trainMatrix.size());
+        topicAssignments = new int[numTokens];
+        int topicAssignmentsIdx = 0;
         for (MatrixEntry matrixEntry : trainMatrix) {
             int userIdx = matrixEntry.row();
             int itemIdx = matrixEntry.column();
@@ -146,7 +177,7 @@ public class LDARecommender extends ProbabilisticGraphicalRecommender {
                 int topicIdx = Randoms.uniform(numTopics); // 0 ~ k-1
 
                 // assign a topic t to pair (u, i)
-                topicAssignments.add(topicIdx);
+                topicAssignments[topicAssignmentsIdx++] = topicIdx;
 
                 // number of items of user u assigned to topic t.
                 userTopicNumbers.add(userIdx, topicIdx, 1);
@@ -158,6 +189,17 @@ public class LDARecommender extends ProbabilisticGraphicalRecommender {
                 topicTokenNumbers.add(topicIdx, 1);
             }
         }
+
+        aliasSampling = conf.getBoolean("rec.lda.alias.sampling", false);
+        samplers = new ArrayList<>();
+        if (numThreads == 1) {
+            samplers.add(new GibbsSampler(0, numUsers, null));
+        } else {
+            int[] blockUsers = partitionUsers();
+            for (int t = 0; t < numThreads; t++) {
+                samplers.add(new GibbsSampler(blockUsers[t], blockUsers[t + 1], Randoms.stream(t)));
+            }
+        }
     }
 
     @Override
@@ -166,48 +208,24 @@ public class LDARecommender extends ProbabilisticGraphicalRecommender {
         double sumBeta = beta.sum();
 
         // Gibbs sampling from full conditional distribution
-        int topicAssignmentsIdx = 0;
-        for (MatrixEntry matrixEntry : trainMatrix) {
-            int userIdx = matrixEntry.row();
-            int itemIdx = matrixEntry.column();
-
-            int num = (int) (matrixEntry.get());
-            for (int numIdx = 0; numIdx < num; numIdx++) {
-                int topicIdx = topicAssignments.get(topicAssignmentsIdx); // topic
-
-                userTopicNumbers.add(userIdx, topicIdx, -1);
-                userTokenNumbers.add(userIdx, -1);
-                topicItemNumbers.add(topicIdx, itemIdx, -1);
-                topicTokenNumbers.add(topicIdx, -1);
-
-                // do multinomial sampling via cumulative method:
-                double[] p = new double[numTopics];
-                for (topicIdx = 0; topicIdx < numTopics; topicIdx++) {
-                    p[topicIdx] = (userTopicNumbers.get(userIdx, topicIdx) + alpha.get(topicIdx)) / (userTokenNumbers.get(userIdx)
-                            + sumAlpha) * (topicItemNumbers.get(topicIdx, itemIdx) + beta.get(itemIdx))
-                            / (topicTokenNumbers.get(topicIdx) + sumBeta);
-                }
-                // cumulating multinomial parameters
-                for (topicIdx = 1; topicIdx < p.length; topicIdx++) {
-                    p[topicIdx] += p[topicIdx - 1];
-                }
-                // scaled sample because of unnormalized p[], randomly sampled a new topic t
-                double rand = Randoms.uniform() * p[numTopics - 1];
-                for (topicIdx = 0; topicIdx < p.length; topicIdx++) {
-                    if (rand < p[topicIdx])
-                        break;
-                }
-
-                // add newly estimated z_i to count variables
-                userTopicNumbers.add(userIdx, topicIdx, 1);
-                userTokenNumbers.add(userIdx, 1);
-                topicItemNumbers.add(topicIdx, itemIdx, 1);
-                topicTokenNumbers.add(topicIdx, 1);
+        for (GibbsSampler sampler : samplers) {
+            sampler.sumAlpha = sumAlpha;
+            sampler.sumBeta = sumBeta;
+        }
+        runSamplers(samplers);
+        if (samplers.size() == 1) {
+            return;
+        }
 
-                topicAssignments.set(topicAssignmentsIdx, topicIdx);
-                topicAssignmentsIdx ++;
-            }
+        // merge the changes of the local topic counts
+        List<double[][]> localTopicItemCounts = new ArrayList<>();
+        List<double[]> localTopicTokenCounts = new ArrayList<>();
+        for (GibbsSampler sampler : samplers) {
+            localTopicItemCounts.add(sampler.topicItemCounts);
+            localTopicTokenCounts.add(sampler.topicTokenCounts);
         }
+        mergeCounts(topicItemNumbers.data, localTopicItemCounts);
+        mergeCounts(topicTokenNumbers.getData(), localTopicTokenCounts);
     }
 
     @Override
@@ -278,4 +296,242 @@ public class LDARecommender extends ProbabilisticGraphicalRecommender {
     protected double predict(int userIdx, int itemIdx) throws LibrecException {
         return DenseMatrix.product(userTopicProbs, userIdx, topicItemProbs, itemIdx);
     }
+
+    /**
+     * Samples the topics of the tokens of a block of users. With a random
+     * stream of its own, it samples against local copies of the topic counts,
+     * which are merged by {@link #eStep()}; otherwise it updates the topic
+     * counts in place and draws from the global random generator, like a
+     * sequential sampler.
+     * <p>
+     * With alias sampling, the full conditional of a token is split into the
+     * sparse term n_uk * q_k(i) over the topics of the user and the dense
+     * term alpha_k * q_k(i), where q_k(i) = (n_ki + beta_i) / (n_k + sum beta).
+     * The dense term is drawn from an alias table of the item, rebuilt after
+     * as many draws as there are topics, and the staleness of the table is
+     * corrected by Metropolis-Hastings steps, as in Li et al., Reducing the
+     * sampling complexity of topic models, KDD 2014.
+     */
+    private class GibbsSampler implements Callable<GibbsSampler> {
+
+        private final int fromUser;
+        private final int toUser;
+        private final Random random;
+        private final double[] p = new double[numTopics];
+        private final SparseVectorView itemView = new SparseVectorView();
+
+        private double sumAlpha;
+        private double sumBeta;
+        private double[][] topicItemCounts;
+        private double[] topicTokenCounts;
+        private double[] alphaValues;
+        private double[] betaValues;
+
+        /** alias tables of the items and the number of draws left before rebuilding them */
+        private AliasTable[] aliasTables;
+        private int[] aliasDraws;
+        /** work lists shared by the alias tables of the sampler to build them */
+        private int[] aliasSmall;
+        private int[] aliasLarge;
+
+        /** topics of the current user with non-zero counts, and their positions in the list or -1 */
+        private int[] userTopics;
+        private int[] userTopicPositions;
+        private int numUserTopics;
+
+        /** weights of the sparse term over userTopics, and of the dense term to build a table */
+        private double[] weights;
+        private double[] denseWeights;
+
+        private GibbsSampler(int fromUser, int toUser, Random random) {
+            this.fromUser = fromUser;
+            this.toUser = toUser;
+            this.random = random;
+            if (random != null) {
+                topicItemCounts = new double[numTopics][numItems];
+                topicTokenCounts = new double[numTopics];
+            }
+            if (aliasSampling) {
+                aliasTables = new AliasTable[numItems];
+                aliasDraws = new int[numItems];
+                aliasSmall = new int[numTopics];
+                aliasLarge = new int[numTopics];
+                userTopics = new int[numTopics];
+                userTopicPositions = new int[numTopics];
+                Arrays.fill(userTopicPositions, -1);
+                weights = new double[numTopics];
+                denseWeights = new double[numTopics];
+            }
+        }
+
+        @Override
+        public GibbsSampler call() {
+            if (random == null) {
+                topicItemCounts = topicItemNumbers.data;
+                topicTokenCounts = topicTokenNumbers.getData();
+            } else {
+                for (int topicIdx = 0; topicIdx < numTopics; topicIdx++) {
+                    System.arraycopy(topicItemNumbers.data[topicIdx], 0, topicItemCounts[topicIdx], 0, numItems);
+                }
+                System.arraycopy(topicTokenNumbers.getData(), 0, topicTokenCounts, 0, numTopics);
+            }
+            double[] userTokenCounts = userTokenNumbers.getData();
+            alphaValues = alpha.getData();
+            betaValues = beta.getData();
+
+            int topicAssignmentsIdx = userTokenOffsets[fromUser];
+            for (int userIdx = fromUser; userIdx < toUser; userIdx++) {
+                double[] userTopicCounts = userTopicNumbers.data[userIdx];
+                if (aliasSampling) {
+                    resetUserTopics(userTopicCounts);
+                }
+                trainMatrix.rowView(userIdx, itemView);
+                for (int k = 0; k < itemView.size(); k++) {
+                    int itemIdx = itemView.getIndex(k);
+                    int num = (int) itemView.getValue(k);
+                    for (int numIdx = 0; numIdx < num; numIdx++) {
+                        int topicIdx = topicAssignments[topicAssignmentsIdx]; // topic
+
+                        userTopicCounts[topicIdx] += -1;
+                        userTokenCounts[userIdx] += -1;
+                        topicItemCounts[topicIdx][itemIdx] += -1;
+                        topicTokenCounts[topicIdx] += -1;
+
+                        if (aliasSampling) {
+                            if (userTopicCounts[topicIdx] == 0) {
+                                removeUserTopic(topicIdx);
+                            }
+                            topicIdx = sampleByAlias(userTopicCounts, itemIdx, topicIdx);
+                            if (userTopicCounts[topicIdx] == 0) {
+                                addUserTopic(topicIdx);
+                            }
+                        } else {
+                            // do multinomial sampling via cumulative method:
+                            for (topicIdx = 0; topicIdx < numTopics; topicIdx++) {
+                                p[topicIdx] = (userTopicCounts[topicIdx] + alphaValues[topicIdx]) / (userTokenCounts[userIdx]
+                                        + sumAlpha) * (topicItemCounts[topicIdx][itemIdx] + betaValues[itemIdx])
+                                        / (topicTokenCounts[topicIdx] + sumBeta);
+                            }
+                            // cumulating multinomial parameters
+                            for (topicIdx = 1; topicIdx < numTopics; topicIdx++) {
+                                p[topicIdx] += p[topicIdx - 1];
+                            }
+                            // scaled sample because of unnormalized p[], randomly sampled a new topic t
+                            double rand = nextUniform() * p[numTopics - 1];
+                            for (topicIdx = 0; topicIdx < numTopics; topicIdx++) {
+                                if (rand < p[topicIdx])
+                                    break;
+                            }
+                        }
+
+                        // add newly estimated z_i to count variables
+                        userTopicCounts[topicIdx] += 1;
+                        userTokenCounts[userIdx] += 1;
+                        topicItemCounts[topicIdx][itemIdx] += 1;
+                        topicTokenCounts[topicIdx] += 1;
+
+                        topicAssignments[topicAssignmentsIdx++] = topicIdx;
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Sample a new topic of a token of an item by alias sampling, whose
+         * counts have been removed.
+         *
+         * @param userTopicCounts topic counts of the user
+         * @param itemIdx         item index
+         * @param topicIdx        current topic of the token
+         * @return the new topic
+         */
+        private int sampleByAlias(double[] userTopicCounts, int itemIdx, int topicIdx) {
+            double sparseTotal = 0.0;
+            for (int n = 0; n < numUserTopics; n++) {
+                int userTopic = userTopics[n];
+                weights[n] = userTopicCounts[userTopic] * topicItemWeight(userTopic, itemIdx);
+                sparseTotal += weights[n];
+            }
+
+            AliasTable aliasTable = aliasTables[itemIdx];
+            if (aliasTable == null || aliasDraws[itemIdx] <= 0) {
+                if (aliasTable == null) {
+                    aliasTable = aliasTables[itemIdx] = new AliasTable(numTopics);
+                }
+                for (int topic = 0; topic < numTopics; topic++) {
+                    denseWeights[topic] = alphaValues[topic] * topicItemWeight(topic, itemIdx);
+                }
+                aliasTable.build(denseWeights, aliasSmall, aliasLarge);
+                aliasDraws[itemIdx] = numTopics;
+            }
+
+            double total = sparseTotal + aliasTable.getTotal();
+            for (int step = 0; step < NUM_MH_STEPS; step++) {
+                double rand = nextUniform() * total;
+                int proposal;
+                if (rand < sparseTotal) {
+                    int n = 0;
+                    while (n < numUserTopics - 1 && rand >= weights[n]) {
+                        rand -= weights[n++];
+                    }
+                    proposal = userTopics[n];
+                } else {
+                    proposal = aliasTable.sample(nextUniform());
+                    aliasDraws[itemIdx]--;
+                }
+                if (proposal == topicIdx) {
+                    continue;
+                }
+
+                // p(proposal) * q(current) / (p(current) * q(proposal))
+                double proposalWeight = topicItemWeight(proposal, itemIdx);
+                double currentWeight = topicItemWeight(topicIdx, itemIdx);
+                double acceptance = (userTopicCounts[proposal] + alphaValues[proposal]) * proposalWeight
+                        * (userTopicCounts[topicIdx] * currentWeight + aliasTable.getWeight(topicIdx))
+                        / ((userTopicCounts[topicIdx] + alphaValues[topicIdx]) * currentWeight
+                        * (userTopicCounts[proposal] * proposalWeight + aliasTable.getWeight(proposal)));
+                if (acceptance >= 1.0 || nextUniform() < acceptance) {
+                    topicIdx = proposal;
+                }
+            }
+            return topicIdx;
+        }
+
+        /**
+         * @return (n_ki + beta_i) / (n_k + sum beta) for a topic k and an item i
+         */
+        private double topicItemWeight(int topicIdx, int itemIdx) {
+            return (topicItemCounts[topicIdx][itemIdx] + betaValues[itemIdx]) / (topicTokenCounts[topicIdx] + sumBeta);
+        }
+
+        private void resetUserTopics(double[] userTopicCounts) {
+            for (int n = 0; n < numUserTopics; n++) {
+                userTopicPositions[userTopics[n]] = -1;
+            }
+            numUserTopics = 0;
+            for (int topicIdx = 0; topicIdx < numTopics; topicIdx++) {
+                if (userTopicCounts[topicIdx] > 0) {
+                    addUserTopic(topicIdx);
+                }
+            }
+        }
+
+        private void addUserTopic(int topicIdx) {
+            userTopicPositions[topicIdx] = numUserTopics;
+            userTopics[numUserTopics++] = topicIdx;
+        }
+
+        private void removeUserTopic(int topicIdx) {
+            int position = userTopicPositions[topicIdx];
+            int lastTopic = userTopics[--numUserTopics];
+            userTopics[position] = lastTopic;
+            userTopicPositions[lastTopic] = position;
+            userTopicPositions[topicIdx] = -1;
+        }
+
+        private double nextUniform() {
+            return random == null ? Randoms.uniform() : random.nextDouble();
+        }
+    }
 }
@@ -66,7 +66,7 @@ public class SLIMRecommender extends AbstractRecommender {
     /**
      * number of nearest neighbors
      */
-    protected static int knn;
+    protected int knn;
 
     /**
      * item similarity matrix
@@ -72,7 +72,7 @@ public class WBPRRecommender extends MatrixFactorizationRecommender {
     /**
      * Guava cache configuration
      */
-    protected static String cacheSpec;
+    protected String cacheSpec;
 
     @Override
     protected void setup() throws LibrecException {
@@ -19,11 +19,18 @@ package net.librec.recommender.cf.ranking;
 
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
+import net.librec.math.algorithm.ConjugateGradient;
 import net.librec.math.structure.*;
 import net.librec.recommender.MatrixFactorizationRecommender;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <h3>WRMF: Weighted Regularized Matrix Factorization.</h3>
@@ -33,6 +40,13 @@ import java.util.List;
  * <li><strong>Binary ratings:</strong> Pan et al., One-class Collaborative Filtering, ICDM 2008.</li>
  * <li><strong>Real ratings:</strong> Hu et al., Collaborative filtering for implicit feedback datasets, ICDM 2008.</li>
  * </ul>
+ * <p>
+ * The rows of the user factors, and then of the item factors, are independent
+ * of each other within a half-step of alternating least squares. They are
+ * solved in blocks by rec.thread.count threads, each accumulating the normal
+ * equations of a row from its sparse entries into buffers of its own and
+ * solving them by Cholesky decomposition, or by a few conjugate gradient steps
+ * from the previous factors if rec.wrmf.cg.steps is greater than 0.
  *
  * @author guoguibing and Keqiang Wang
  */
@@ -53,10 +67,22 @@ public class WRMFRecommender extends MatrixFactorizationRecommender {
      */
     protected SparseMatrix preferenceMatrix;
 
+    /**
+     * number of threads to solve the rows of a half-step
+     */
+    protected int numThreads;
+
+    /**
+     * number of conjugate gradient steps to solve a row, or 0 to solve it exactly
+     */
+    protected int cgSteps;
+
     @Override
     protected void setup() throws LibrecException {
         super.setup();
         weightCoefficient = conf.getFloat("rec.wrmf.weight.coefficient", 4.0f);
+        numThreads = Math.max(1, conf.getInt("rec.thread.count", Runtime.getRuntime().availableProcessors()));
+        cgSteps = conf.getInt("rec.wrmf.cg.steps", 0);
 
         confindenceMinusIdentityMatrix = new SparseMatrix(trainMatrix);
         preferenceMatrix = new SparseMatrix(trainMatrix);
@@ -71,105 +97,223 @@ public class WRMFRecommender extends MatrixFactorizationRecommender {
 
     @Override
     protected void trainModel() throws LibrecException {
-
-        SparseMatrix userIdentityMatrix = DiagMatrix.eye(numFactors).scale(regUser);
-        SparseMatrix itemIdentityMatrix = DiagMatrix.eye(numFactors).scale(regItem);
-
-        // To be consistent with the symbols in the paper
-        DenseMatrix X = userFactors, Y = itemFactors;
+        ExecutorService executorService = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
         // Updating by using alternative least square (ALS)
         // due to large amount of entries to be processed (SGD will be too slow)
-        for (int iter = 1; iter <= numIterations; iter++) {
-            // Step 1: update user factors;
-            DenseMatrix Yt = Y.transpose();
-            DenseMatrix YtY = Yt.mult(Y);
-            for (int userIdx = 0; userIdx < numUsers; userIdx++) {
-
-                DenseMatrix YtCuI = new DenseMatrix(numFactors, numItems);//actually YtCuI is a sparse matrix
-                //Yt * (Cu-itemIdx)
-                List<Integer> itemList = trainMatrix.getColumns(userIdx);
-                for (int itemIdx : itemList) {
-                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                        YtCuI.set(factorIdx, itemIdx, Y.get(itemIdx, factorIdx) * confindenceMinusIdentityMatrix.get(userIdx, itemIdx));
-                    }
-                }
+        try {
+            for (int iter = 1; iter <= numIterations; iter++) {
+                // Step 1: update user factors;
+                updateFactors(executorService, userFactors, itemFactors, true, regUser);
+                // Step 2: update item factors;
+                updateFactors(executorService, itemFactors, userFactors, false, regItem);
 
-                // YtY + Yt * (Cu - itemIdx) * Y
-                DenseMatrix YtCuY = new DenseMatrix(numFactors, numFactors);
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    for (int factorIdxIn = 0; factorIdxIn < numFactors; factorIdxIn++) {
-                        double value = 0.0;
-                        for (int itemIdx : itemList) {
-                            value += YtCuI.get(factorIdx, itemIdx) * Y.get(itemIdx, factorIdxIn);
-                        }
-                        YtCuY.set(factorIdx, factorIdxIn, value);
-                    }
+                if (verbose) {
+                    LOG.info(getClass() + " runs at iteration = " + iter + " " + new Date());
                 }
-                YtCuY.addEqual(YtY);
-                // (YtCuY + lambda * itemIdx)^-1
-                //lambda * itemIdx can be pre-difined because every time is the same.
-                DenseMatrix Wu = (YtCuY.add(userIdentityMatrix)).inv();
-                // Yt * (Cu - itemIdx) * Pu + Yt * Pu
-                DenseVector YtCuPu = new DenseVector(numFactors);
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    for (int itemIdx : itemList) {
-                        YtCuPu.add(factorIdx, preferenceMatrix.get(userIdx, itemIdx) * (YtCuI.get(factorIdx, itemIdx) + Yt.get(factorIdx, itemIdx)));
-                    }
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Solve every row of the factors for the fixed factors, e.g. the user
+     * factors X for the item factors Y, where x_u = (YtY + Yt(Cu - I)Y +
+     * lambda * I)^-1 * YtCuPu.
+     *
+     * @param executorService the threads to solve the blocks of rows, or null to solve them in this thread
+     * @param factors         the factors to update
+     * @param fixedFactors    the fixed factors
+     * @param isUser          true if the rows of the factors are users
+     * @param reg             regularization of the factors
+     * @throws LibrecException if error occurs during solving
+     */
+    private void updateFactors(ExecutorService executorService, DenseMatrix factors, DenseMatrix fixedFactors,
+                               boolean isUser, double reg) throws LibrecException {
+        // YtY, shared by all rows
+        double[][] gram = new double[numFactors][numFactors];
+        for (double[] fixedFactorValues : fixedFactors.data) {
+            for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                double fixedFactorValue = fixedFactorValues[factorIdx];
+                double[] gramRow = gram[factorIdx];
+                for (int factorIdxIn = 0; factorIdxIn <= factorIdx; factorIdxIn++) {
+                    gramRow[factorIdxIn] += fixedFactorValue * fixedFactorValues[factorIdxIn];
                 }
+            }
+        }
+
+        int numRows = factors.numRows();
+        int numBlocks = Math.max(1, Math.min(numRows, numThreads * 4));
+        List<SolverBlock> blocks = new ArrayList<>();
+        for (int block = 0; block < numBlocks; block++) {
+            int fromRow = (int) ((long) numRows * block / numBlocks);
+            int toRow = (int) ((long) numRows * (block + 1) / numBlocks);
+            blocks.add(new SolverBlock(factors, fixedFactors, gram, isUser, reg, fromRow, toRow));
+        }
 
-                DenseVector xu = Wu.mult(YtCuPu);
-                // udpate user factors
-                X.setRow(userIdx, xu);
+        if (executorService == null) {
+            for (SolverBlock block : blocks) {
+                block.call();
+            }
+        } else {
+            try {
+                for (Future<SolverBlock> result : executorService.invokeAll(blocks)) {
+                    result.get();
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LibrecException) {
+                    throw (LibrecException) e.getCause();
+                }
+                LOG.error("", e);
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                LOG.error("", e);
+                throw new IllegalStateException(e);
             }
+        }
+    }
+
+    /**
+     * Solves a block of rows of the factors with buffers of its own, so that
+     * no matrix is allocated per row.
+     */
+    private class SolverBlock implements Callable<SolverBlock> {
 
-            // Step 2: update item factors;
-            DenseMatrix Xt = X.transpose();
-            DenseMatrix XtX = Xt.mult(X);
+        private final DenseMatrix factors;
+        private final DenseMatrix fixedFactors;
+        private final double[][] gram;
+        private final boolean isUser;
+        private final double reg;
+        private final int fromRow;
+        private final int toRow;
 
-            for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+        private final SparseVectorView ratingView = new SparseVectorView();
+        private final SparseVectorView confidenceView = new SparseVectorView();
+        private final SparseVectorView preferenceView = new SparseVectorView();
 
+        private SolverBlock(DenseMatrix factors, DenseMatrix fixedFactors, double[][] gram, boolean isUser,
+                            double reg, int fromRow, int toRow) {
+            this.factors = factors;
+            this.fixedFactors = fixedFactors;
+            this.gram = gram;
+            this.isUser = isUser;
+            this.reg = reg;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
 
-                DenseMatrix XtCiI = new DenseMatrix(numFactors, numUsers);
-                //actually XtCiI is a sparse matrix
-                //Xt * (Ci-itemIdx)
-                List<Integer> userList = trainMatrix.getRows(itemIdx);
-                for (int userIdx : userList) {
-                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                        XtCiI.set(factorIdx, userIdx, X.get(userIdx, factorIdx) * confindenceMinusIdentityMatrix.get(userIdx, itemIdx));
-                    }
+        @Override
+        public SolverBlock call() throws LibrecException {
+            double[][] a = cgSteps > 0 ? null : new double[numFactors][numFactors];
+            double[] b = new double[numFactors];
+            RowSystem rowSystem = cgSteps > 0 ? new RowSystem() : null;
+
+            for (int row = fromRow; row < toRow; row++) {
+                if (isUser) {
+                    trainMatrix.rowView(row, ratingView);
+                    confindenceMinusIdentityMatrix.rowView(row, confidenceView);
+                    preferenceMatrix.rowView(row, preferenceView);
+                } else {
+                    trainMatrix.columnView(row, ratingView);
+                    confindenceMinusIdentityMatrix.columnView(row, confidenceView);
+                    preferenceMatrix.columnView(row, preferenceView);
+                }
+                if (rowSystem != null) {
+                    // warm started from the factors of the previous iteration
+                    accumulate(null, b);
+                    rowSystem.solve(b, factors.data[row], cgSteps);
+                    continue;
                 }
 
-                // XtX + Xt * (Ci - itemIdx) * X
-                DenseMatrix XtCiX = new DenseMatrix(numFactors, numFactors);
-                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    for (int factorIdxIn = 0; factorIdxIn < numFactors; factorIdxIn++) {
-                        double value = 0.0;
-                        for (int userIdx : userList) {
-                            value += XtCiI.get(factorIdx, userIdx) * X.get(userIdx, factorIdxIn);
+                accumulate(a, b);
+                if (!DenseMatrix.choleskySolve(a, b, numFactors)) {
+                    // not positive definite, e.g. without regularization
+                    accumulate(a, b);
+                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                        for (int factorIdxIn = 0; factorIdxIn < factorIdx; factorIdxIn++) {
+                            a[factorIdxIn][factorIdx] = a[factorIdx][factorIdxIn];
                         }
-                        XtCiX.set(factorIdx, factorIdxIn, value);
                     }
+                    b = new DenseMatrix(a).inv().mult(new DenseVector(b)).getData();
                 }
-                XtCiX.addEqual(XtX);
+                System.arraycopy(b, 0, factors.data[row], 0, numFactors);
+            }
+            return this;
+        }
 
-                // (XtCuX + lambda * itemIdx)^-1
-                //lambda * itemIdx can be pre-difined because every time is the same.
-                DenseMatrix Wi = (XtCiX.add(itemIdentityMatrix)).inv();
-                // Xt * (Ci - itemIdx) * Pu + Xt * Pu
-                DenseVector XtCiPu = new DenseVector(numFactors);
+        /**
+         * Accumulate the lower triangle of YtY + Yt(Cu - I)Y + lambda * I into a,
+         * unless a is null, and YtCuPu into b from the entries of the current
+         * row, e.g. of a user u.
+         */
+        private void accumulate(double[][] a, double[] b) {
+            for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                if (a != null) {
+                    System.arraycopy(gram[factorIdx], 0, a[factorIdx], 0, factorIdx + 1);
+                    a[factorIdx][factorIdx] += reg;
+                }
+                b[factorIdx] = 0.0;
+            }
+            // the three matrices share the same structure
+            for (int k = 0, size = ratingView.size(); k < size; k++) {
+                if (ratingView.getValue(k) == 0.0) {
+                    continue;
+                }
+                double[] fixedFactorValues = fixedFactors.data[ratingView.getIndex(k)];
+                double confidence = confidenceView.getValue(k);
+                double preference = preferenceView.getValue(k);
                 for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
-                    for (int userIdx : userList) {
-                        XtCiPu.add(factorIdx, preferenceMatrix.get(userIdx, itemIdx) * (XtCiI.get(factorIdx, userIdx) + Xt.get(factorIdx, userIdx)));
+                    double value = confidence * fixedFactorValues[factorIdx];
+                    if (a != null) {
+                        double[] aRow = a[factorIdx];
+                        for (int factorIdxIn = 0; factorIdxIn <= factorIdx; factorIdxIn++) {
+                            aRow[factorIdxIn] += value * fixedFactorValues[factorIdxIn];
+                        }
                     }
+                    b[factorIdx] += preference * (value + fixedFactorValues[factorIdx]);
                 }
+            }
+        }
 
-                DenseVector yi = Wi.mult(XtCiPu);
-                // udpate item factors
-                Y.setRow(itemIdx, yi);
+        /**
+         * The system YtY + Yt(Cu - I)Y + lambda * I of the current row, multiplied
+         * with a vector from YtY and the entries of the row in O(k^2 + nnz * k).
+         */
+        private class RowSystem extends ConjugateGradient {
+
+            private RowSystem() {
+                super(numFactors);
             }
 
-            if (verbose) {
-                LOG.info(getClass()+" runs at iteration = "+iter+" "+new Date());
+            @Override
+            protected void multiply(double[] vector, double[] result) {
+                for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                    double[] gramRow = gram[factorIdx];
+                    double value = reg * vector[factorIdx];
+                    for (int factorIdxIn = 0; factorIdxIn <= factorIdx; factorIdxIn++) {
+                        value += gramRow[factorIdxIn] * vector[factorIdxIn];
+                    }
+                    for (int factorIdxIn = factorIdx + 1; factorIdxIn < numFactors; factorIdxIn++) {
+                        value += gram[factorIdxIn][factorIdx] * vector[factorIdxIn];
+                    }
+                    result[factorIdx] = value;
+                }
+                for (int k = 0, size = ratingView.size(); k < size; k++) {
+                    if (ratingView.getValue(k) == 0.0) {
+                        continue;
+                    }
+                    double[] fixedFactorValues = fixedFactors.data[ratingView.getIndex(k)];
+                    double value = 0.0;
+                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                        value += fixedFactorValues[factorIdx] * vector[factorIdx];
+                    }
+                    value *= confidenceView.getValue(k);
+                    for (int factorIdx = 0; factorIdx < numFactors; factorIdx++) {
+                        result[factorIdx] += value * fixedFactorValues[factorIdx];
+                    }
+                }
             }
         }
     }
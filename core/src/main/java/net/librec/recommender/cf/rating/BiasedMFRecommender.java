@@ -22,6 +22,7 @@ import net.librec.common.LibrecException;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.DenseVector;
 import net.librec.math.structure.MatrixEntry;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.MatrixFactorizationRecommender;
 
 /**
@@ -119,4 +120,37 @@ public class BiasedMFRecommender extends MatrixFactorizationRecommender {
     protected double predict(int userIdx, int itemIdx) throws LibrecException {
         return DenseMatrix.rowMult(userFactors, userIdx, itemFactors, itemIdx) + userBiases.get(userIdx) + itemBiases.get(itemIdx) + globalMean;
     }
+
+    /**
+     * The predictions only read the factors and the biases, unless a subclass
+     * overrides {@link #predict(int, int)}.
+     *
+     * @return true if {@link #predict(int, int)} is the one of biased MF
+     */
+    @Override
+    protected boolean isPredictThreadSafe() {
+        return getPredictClass() == BiasedMFRecommender.class;
+    }
+
+    /**
+     * Predict the ranking scores of a user for all items in one pass over the
+     * item factors, if {@link #predict(int, int)} is the one of biased MF.
+     *
+     * @param userIdx    user index
+     * @param ratedItems the items rated by the user in the train matrix
+     * @param scores     the scores of all items, to be filled
+     * @throws LibrecException if error occurs during predicting
+     */
+    @Override
+    protected void predictRankingScores(int userIdx, SparseVectorView ratedItems, double[] scores) throws LibrecException {
+        if (getPredictClass() != BiasedMFRecommender.class) {
+            super.predictRankingScores(userIdx, ratedItems, scores);
+            return;
+        }
+        DenseMatrix.rowMult(userFactors, userIdx, itemFactors, scores);
+        double userBias = userBiases.get(userIdx);
+        for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+            scores[itemIdx] = scores[itemIdx] + userBias + itemBiases.get(itemIdx) + globalMean;
+        }
+    }
 }
@@ -17,15 +17,19 @@
  */
 package net.librec.recommender.cf.rating;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import net.librec.common.LibrecException;
 import net.librec.math.algorithm.Randoms;
 import net.librec.math.structure.DenseMatrix;
 import net.librec.math.structure.DenseVector;
 import net.librec.math.structure.MatrixEntry;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.ProbabilisticGraphicalRecommender;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
 import static net.librec.math.algorithm.Gamma.digamma;
 
 /**
@@ -34,6 +38,11 @@ import static net.librec.math.algorithm.Gamma.digamma;
  * Benjamin Marlin, <strong>Modeling user rating profiles for collaborative filtering</strong>, NIPS 2003.<br>
  * <p>
  * Nicola Barbieri, <strong>Regularized gibbs sampling for user profiling with soft constraints</strong>, ASONAM 2011.
+ * <p>
+ * With rec.thread.count greater than 1, the users are partitioned among the
+ * threads, which sample the topics of the ratings of their users with local
+ * copies of the topic-item counts merged at the end of every sweep, see
+ * {@link ProbabilisticGraphicalRecommender}.
  *
  * @author Guo Guibing and Haidong Zhang
  */
@@ -71,9 +80,9 @@ public class URPRecommender extends ProbabilisticGraphicalRecommender {
     private DenseVector beta;
 
     /**
-     *
+     * topic assignment of every rating, in the order of the entries of trainMatrix
      */
-    protected Table<Integer, Integer, Integer> topics;
+    protected int[] topicAssignments;
 
     /**
      * number of topics
@@ -99,6 +108,11 @@ public class URPRecommender extends ProbabilisticGraphicalRecommender {
      */
     protected double[][][] topicItemRatingProbs;    //Pkir;
 
+    /**
+     * samplers of the blocks of users
+     */
+    private List<GibbsSampler> samplers;
+
     @Override
     protected void setup() throws LibrecException {
         super.setup();
@@ -125,7 +139,8 @@ public class URPRecommender extends ProbabilisticGraphicalRecommender {
         beta.setAll(initBeta);
 
         // initialize topics
-        topics = HashBasedTable.create();
+        topicAssignments = new int[buildUserTokenOffsets(false)];
+        int topicAssignmentsIdx = 0;
         for (MatrixEntry me : trainMatrix) {
             int u = me.row();
             int i = me.column();
@@ -135,7 +150,7 @@ public class URPRecommender extends ProbabilisticGraphicalRecommender {
             int t = (int) (Randoms.uniform() * numTopics); // 0 ~ k-1
 
             // Assign a topic t to pair (u, i)
-            topics.put(u, i, t);
+            topicAssignments[topicAssignmentsIdx++] = t;
             // number of pairs (u, t) in (u, i, t)
             userTopicNum.add(u, t, 1);
             // total number of items of user u
@@ -146,6 +161,16 @@ public class URPRecommender extends ProbabilisticGraphicalRecommender {
             // total number of words assigned to topic t
             topicItemNum.add(t, i, 1);
         }
+
+        samplers = new ArrayList<>();
+        if (numThreads == 1) {
+            samplers.add(new GibbsSampler(0, numUsers, null));
+        } else {
+            int[] blockUsers = partitionUsers();
+            for (int t = 0; t < numThreads; t++) {
+                samplers.add(new GibbsSampler(blockUsers[t], blockUsers[t + 1], Randoms.stream(t)));
+            }
+        }
     }
 
     @Override
@@ -155,46 +180,28 @@ public class URPRecommender extends ProbabilisticGraphicalRecommender {
         double sumBeta = beta.sum();
 
         // collapse Gibbs sampling
-        for (MatrixEntry me : trainMatrix) {
-            int u = me.row();
-            int i = me.column();
-            double rui = me.get();
-
-            int r = ratingScale.indexOf(rui);  // rating level 0 ~ numLevels
-            int t = topics.get(u, i);
-
-            userTopicNum.add(u, t, -1);
-            userNum.add(u, -1);
-            topicItemRatingNum[t][i][r]--;
-            topicItemNum.add(t, i, -1);
+        for (GibbsSampler sampler : samplers) {
+            sampler.sumAlpha = sumAlpha;
+            sampler.sumBeta = sumBeta;
+        }
+        runSamplers(samplers);
+        if (samplers.size() == 1) {
+            return;
+        }
 
-            // do multinomial sampling via cumulative method:
-            double[] p = new double[numTopics];
-            for (int k = 0; k < numTopics; k++) {
-                p[k] = (userTopicNum.get(u, k) + alpha.get(k)) / (userNum.get(u) + sumAlpha) * (topicItemRatingNum[k][i][r] + beta.get(r))
-                        / (topicItemNum.get(k, i) + sumBeta);
-            }
-            // cumulate multinomial parameters
-            for (int k = 1; k < p.length; k++) {
-                p[k] += p[k - 1];
-            }
-            // scaled sample because of unnormalized p[], randomly sampled a new topic t
-            double rand = Randoms.uniform() * p[numTopics - 1];
-            for (t = 0; t < p.length; t++) {
-                if (rand < p[t])
-                    break;
+        // merge the changes of the local topic counts
+        List<double[][]> localTopicItemCounts = new ArrayList<>();
+        for (GibbsSampler sampler : samplers) {
+            localTopicItemCounts.add(sampler.topicItemCounts);
+        }
+        mergeCounts(topicItemNum.data, localTopicItemCounts);
+        for (int k = 0; k < numTopics; k++) {
+            List<int[][]> localItemRatingCounts = new ArrayList<>();
+            for (GibbsSampler sampler : samplers) {
+                localItemRatingCounts.add(sampler.topicItemRatingCounts[k]);
             }
-
-            // new topic t
-            topics.put(u, i, t);
-
-            // add newly estimated z_i to count variables
-            userTopicNum.add(u, t, 1);
-            userNum.add(u, 1);
-            topicItemRatingNum[t][i][r]++;
-            topicItemNum.add(t, i, 1);
+            mergeCounts(topicItemRatingNum[k], localItemRatingCounts);
         }
-
     }
 
     /**
@@ -331,4 +338,97 @@ public class URPRecommender extends ProbabilisticGraphicalRecommender {
 
         return pred;
     }
+
+    /**
+     * Samples the topics of the ratings of a block of users. With a random
+     * stream of its own, it samples against local copies of the topic-item
+     * counts, which are merged by {@link #eStep()}; otherwise it updates the
+     * counts in place and draws from the global random generator, like a
+     * sequential sampler.
+     */
+    private class GibbsSampler implements Callable<GibbsSampler> {
+
+        private final int fromUser;
+        private final int toUser;
+        private final Random random;
+        private final double[] p = new double[numTopics];
+        private final SparseVectorView itemView = new SparseVectorView();
+
+        private double sumAlpha;
+        private double sumBeta;
+        private int[][][] topicItemRatingCounts;
+        private double[][] topicItemCounts;
+
+        private GibbsSampler(int fromUser, int toUser, Random random) {
+            this.fromUser = fromUser;
+            this.toUser = toUser;
+            this.random = random;
+            if (random != null) {
+                topicItemRatingCounts = new int[numTopics][numItems][numRatingLevels];
+                topicItemCounts = new double[numTopics][numItems];
+            }
+        }
+
+        @Override
+        public GibbsSampler call() {
+            if (random == null) {
+                topicItemRatingCounts = topicItemRatingNum;
+                topicItemCounts = topicItemNum.data;
+            } else {
+                for (int k = 0; k < numTopics; k++) {
+                    for (int i = 0; i < numItems; i++) {
+                        System.arraycopy(topicItemRatingNum[k][i], 0, topicItemRatingCounts[k][i], 0, numRatingLevels);
+                    }
+                    System.arraycopy(topicItemNum.data[k], 0, topicItemCounts[k], 0, numItems);
+                }
+            }
+
+            int topicAssignmentsIdx = userTokenOffsets[fromUser];
+            for (int u = fromUser; u < toUser; u++) {
+                trainMatrix.rowView(u, itemView);
+                for (int n = 0; n < itemView.size(); n++) {
+                    int i = itemView.getIndex(n);
+                    double rui = itemView.getValue(n);
+
+                    int r = ratingScale.indexOf(rui);  // rating level 0 ~ numLevels
+                    int t = topicAssignments[topicAssignmentsIdx];
+
+                    userTopicNum.add(u, t, -1);
+                    userNum.add(u, -1);
+                    topicItemRatingCounts[t][i][r]--;
+                    topicItemCounts[t][i] += -1;
+
+                    // do multinomial sampling via cumulative method:
+                    for (int k = 0; k < numTopics; k++) {
+                        p[k] = (userTopicNum.get(u, k) + alpha.get(k)) / (userNum.get(u) + sumAlpha) * (topicItemRatingCounts[k][i][r] + beta.get(r))
+                                / (topicItemCounts[k][i] + sumBeta);
+                    }
+                    // cumulate multinomial parameters
+                    for (int k = 1; k < p.length; k++) {
+                        p[k] += p[k - 1];
+                    }
+                    // scaled sample because of unnormalized p[], randomly sampled a new topic t
+                    double rand = nextUniform() * p[numTopics - 1];
+                    for (t = 0; t < p.length; t++) {
+                        if (rand < p[t])
+                            break;
+                    }
+
+                    // new topic t
+                    topicAssignments[topicAssignmentsIdx++] = t;
+
+                    // add newly estimated z_i to count variables
+                    userTopicNum.add(u, t, 1);
+                    userNum.add(u, 1);
+                    topicItemRatingCounts[t][i][r]++;
+                    topicItemCounts[t][i] += 1;
+                }
+            }
+            return this;
+        }
+
+        private double nextUniform() {
+            return random == null ? Randoms.uniform() : random.nextDouble();
+        }
+    }
 }
@@ -60,7 +60,7 @@ public class SBPRRecommender extends SocialRecommender {
     /**
      * Guava cache configuration
      */
-    protected static String cacheSpec;
+    protected String cacheSpec;
 
     /**
      * find items rated by trusted neighbors only
@@ -45,7 +45,7 @@ public class TimeSVDRecommender extends BiasedMFRecommender {
     /**
      * the span of days of rating timestamps
      */
-    private static int numDays;
+    private int numDays;
 
     /**
      * {user, mean date}
@@ -105,12 +105,12 @@ public class TimeSVDRecommender extends BiasedMFRecommender {
     /**
      * minimum, maximum timestamp
      */
-    private static long minTimestamp, maxTimestamp;
+    private long minTimestamp, maxTimestamp;
 
     /**
      * Guava cache configuration
      */
-    protected static String cacheSpec;
+    protected String cacheSpec;
 
     /**
      * user-items cache
@@ -120,7 +120,7 @@ public class TimeSVDRecommender extends BiasedMFRecommender {
     /**
      * matrix of time stamp
      */
-    private static SparseMatrix timeMatrix;
+    private SparseMatrix timeMatrix;
 
     /**
      * factorized item-factor matrix
@@ -80,7 +80,7 @@ public class TrustSVDRecommender extends SocialRecommender {
     /**
      * Guava cache configuration
      */
-    protected static String cacheSpec;
+    protected String cacheSpec;
 
     /**
      * initial the model
@@ -20,7 +20,7 @@ package net.librec.recommender.ext;
 import net.librec.annotation.ModelData;
 import net.librec.common.LibrecException;
 import net.librec.math.structure.DenseMatrix;
-import net.librec.math.structure.SparseVector;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.AbstractRecommender;
 
 /**
@@ -59,15 +59,20 @@ public class SlopeOneRecommender extends AbstractRecommender {
     @Override
     protected void trainModel() throws LibrecException {
         // compute items' differences
+        SparseVectorView itemRatingsView = new SparseVectorView();
         for (int userIdx = 0; userIdx < numUsers; userIdx++) {
-            SparseVector itemRatingsVector = trainMatrix.row(userIdx);
-            int[] items = itemRatingsVector.getIndex();
+            trainMatrix.rowView(userIdx, itemRatingsView);
+            int numEntries = itemRatingsView.size();
 
-            for (int itemIdx : items) {
-                double userItemRating = itemRatingsVector.get(itemIdx);
-                for (int comparedItemIdx : items) {
-                    if (itemIdx != comparedItemIdx) {
-                        double comparedRating = itemRatingsVector.get(comparedItemIdx);
+            for (int k = 0; k < numEntries; k++) {
+                double userItemRating = itemRatingsView.getValue(k);
+                if (userItemRating == 0.0)
+                    continue;
+                int itemIdx = itemRatingsView.getIndex(k);
+                for (int l = 0; l < numEntries; l++) {
+                    double comparedRating = itemRatingsView.getValue(l);
+                    if (l != k && comparedRating != 0.0) {
+                        int comparedItemIdx = itemRatingsView.getIndex(l);
                         devMatrix.add(itemIdx, comparedItemIdx, userItemRating - comparedRating);
                         cardMatrix.add(itemIdx, comparedItemIdx, 1);
                     }
@@ -98,12 +103,16 @@ public class SlopeOneRecommender extends AbstractRecommender {
      */
     @Override
     protected double predict(int userIdx, int itemIdx) throws LibrecException {
-        SparseVector itemRatingsVector = trainMatrix.row(userIdx, itemIdx);
+        SparseVectorView itemRatingsView = trainMatrix.rowView(userIdx);
         double predictRatings = 0, cardinaryValues = 0;
-        for (int comparedItemIdx : itemRatingsVector.getIndex()) {
+        for (int k = 0, numEntries = itemRatingsView.size(); k < numEntries; k++) {
+            int comparedItemIdx = itemRatingsView.getIndex(k);
+            double comparedRating = itemRatingsView.getValue(k);
+            if (comparedItemIdx == itemIdx || comparedRating == 0.0)
+                continue;
             double cardinaryValue = cardMatrix.get(itemIdx, comparedItemIdx);
             if (cardinaryValue > 0) {
-                predictRatings += (devMatrix.get(itemIdx, comparedItemIdx) + itemRatingsVector.get(comparedItemIdx)) * cardinaryValue;
+                predictRatings += (devMatrix.get(itemIdx, comparedItemIdx) + comparedRating) * cardinaryValue;
                 cardinaryValues += cardinaryValue;
             }
         }
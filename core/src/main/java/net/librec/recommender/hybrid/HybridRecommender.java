@@ -20,12 +20,11 @@ package net.librec.recommender.hybrid;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import net.librec.common.LibrecException;
-import net.librec.math.structure.SparseVector;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.recommender.AbstractRecommender;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Zhou et al., <strong>Solving the apparent diversity-accuracy dilemma of recommender systems</strong>, Proceedings of
@@ -74,17 +73,21 @@ public class HybridRecommender extends AbstractRecommender {
             // new user
             userItemRanks.clear();
 
-            SparseVector itemRatingsVector = trainMatrix.row(userIdx);
-            Set<Integer> itemsSet = itemRatingsVector.getIndexSet();
+            SparseVectorView itemsView = trainMatrix.rowView(userIdx);
+            SparseVectorView tempView = new SparseVectorView();
 
             // distribute resources to users, including user u
             Map<Integer, Double> userResources = new HashMap<>();
             for (int tempUserIdx = 0; tempUserIdx < numUsers; tempUserIdx++) {
-                SparseVector tempItemRatingsVector = trainMatrix.row(tempUserIdx);
+                trainMatrix.rowView(tempUserIdx, tempView);
                 double sum = 0;
-                int tempItemsCount = tempItemRatingsVector.getCount();
-                for (int tempItemIdx : tempItemRatingsVector.getIndex()) {
-                    if (itemsSet.contains(tempItemIdx))
+                int tempItemsCount = 0;
+                for (int k = 0; k < tempView.size(); k++) {
+                    if (tempView.getValue(k) == 0.0)
+                        continue;
+                    tempItemsCount++;
+                    int tempItemIdx = tempView.getIndex(k);
+                    if (itemsView.contains(tempItemIdx))
                         sum += 1.0 / Math.pow(itemDegrees.get(tempItemIdx), lambda);
                 }
 
@@ -94,13 +97,17 @@ public class HybridRecommender extends AbstractRecommender {
 
             // redistribute resources to items
             for (int tempItemIdx = 0; tempItemIdx < numItems; tempItemIdx++) {
-                if (itemsSet.contains(tempItemIdx))
+                if (itemsView.contains(tempItemIdx))
                     continue;
 
-                SparseVector tempUserRatingsVector = trainMatrix.column(tempItemIdx);
+                trainMatrix.columnView(tempItemIdx, tempView);
                 double sum = 0;
-                for (int tempUserIdx : tempUserRatingsVector.getIndex())
+                for (int k = 0; k < tempView.size(); k++) {
+                    if (tempView.getValue(k) == 0.0)
+                        continue;
+                    int tempUserIdx = tempView.getIndex(k);
                     sum += userResources.containsKey(tempUserIdx) ? userResources.get(tempUserIdx) : 0.0;
+                }
 
                 double score = sum / Math.pow(itemDegrees.get(tempItemIdx), 1 - lambda);
                 userItemRanks.put(userIdx, tempItemIdx, score);
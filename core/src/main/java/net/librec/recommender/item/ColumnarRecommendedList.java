@@ -0,0 +1,470 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.item;
+
+import net.librec.annotation.LibrecWaring;
+import net.librec.util.TopKHeap;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Recommended List stored in columns: the item indices and the values of all
+ * users are kept in two flat arrays, where the entries of user u take the
+ * slots [userOffsets[u], userOffsets[u + 1]). No objects are kept per entry.
+ * <p>
+ * The slots are fixed when the list is constructed, either with the same
+ * number of slots for every user, e.g. the top-N items, or with the layout of
+ * a compressed row matrix, e.g. the predicted ratings of the entries of the
+ * test matrix. Adding an entry to a user whose slots are full throws an
+ * {@link IndexOutOfBoundsException}.
+ * <p>
+ * The lists returned by {@link #getItemIdxListByUserIdx(int)} are read-only
+ * views, which create the item entries when they are read. The entries can
+ * be read without objects by {@link #getUserSize(int)},
+ * {@link #getItemIdx(int, int)} and {@link #getValue(int, int)}.
+ */
+public class ColumnarRecommendedList implements RecommendedList, Serializable {
+    private static final long serialVersionUID = 2694113872961264873L;
+
+    /**
+     * the number of users
+     */
+    private final int numUsers;
+
+    /**
+     * the slots of user u are [userOffsets[u], userOffsets[u + 1])
+     */
+    private final int[] userOffsets;
+
+    /**
+     * item indices and values of the entries
+     */
+    private int[] itemIndices;
+    private double[] values;
+
+    /**
+     * whether the arrays of the entries are shared with the caller, and
+     * must be copied before the entries are changed
+     */
+    private boolean sharedEntries;
+
+    /**
+     * the number of entries of each user
+     */
+    private final int[] userSizes;
+
+    /**
+     * the number of users with entries
+     */
+    private int size;
+
+    /**
+     * whether the items of every user are in ascending order
+     */
+    private boolean sortedByItem = true;
+
+    /**
+     * Constructs an empty list with the same number of slots for every user.
+     *
+     * @param numUsers        the number of users
+     * @param numItemsPerUser the maximum number of entries of a user, e.g. top-N
+     */
+    public ColumnarRecommendedList(int numUsers, int numItemsPerUser) {
+        if (numUsers < 0 || numItemsPerUser < 0)
+            throw new IllegalArgumentException("Illegal number of users or items: " + numUsers + ", " + numItemsPerUser);
+        this.numUsers = numUsers;
+        this.userOffsets = new int[numUsers + 1];
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            userOffsets[userIdx + 1] = userOffsets[userIdx] + numItemsPerUser;
+        }
+        this.itemIndices = new int[userOffsets[numUsers]];
+        this.values = new double[userOffsets[numUsers]];
+        this.userSizes = new int[numUsers];
+    }
+
+    /**
+     * Constructs a full list over the entries of a compressed row matrix,
+     * e.g. the predicted ratings of the test entries. The arrays are shared,
+     * not copied, until the entries are changed.
+     *
+     * @param userOffsets the row pointers of the matrix, of length numUsers + 1
+     * @param itemIndices the column indices of the entries
+     * @param values      the values of the entries
+     */
+    public ColumnarRecommendedList(int[] userOffsets, int[] itemIndices, double[] values) {
+        this.numUsers = userOffsets.length - 1;
+        this.userOffsets = userOffsets;
+        this.itemIndices = itemIndices;
+        this.values = values;
+        this.sharedEntries = true;
+        this.userSizes = new int[numUsers];
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            userSizes[userIdx] = userOffsets[userIdx + 1] - userOffsets[userIdx];
+            if (userSizes[userIdx] > 0) {
+                size++;
+            }
+            for (int entryIdx = userOffsets[userIdx] + 1; entryIdx < userOffsets[userIdx + 1]; entryIdx++) {
+                if (itemIndices[entryIdx - 1] >= itemIndices[entryIdx]) {
+                    sortedByItem = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the specified entry to the entries of the user.
+     *
+     * @param userIdx user index
+     * @param itemIdx item index
+     * @param rating  rating value
+     * @return <tt>true</tt> (as specified by {@link Collection#add})
+     * @throws IndexOutOfBoundsException if the slots of the user are full
+     */
+    @Override
+    public boolean addUserItemIdx(int userIdx, int itemIdx, double rating) {
+        userRangeCheck(userIdx);
+        int userSize = userSizes[userIdx];
+        int entryIdx = userOffsets[userIdx] + userSize;
+        if (entryIdx >= userOffsets[userIdx + 1])
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(userSize, " Item of user " + userIdx,
+                    userOffsets[userIdx + 1] - userOffsets[userIdx]));
+        ownEntries();
+        if (userSize == 0) {
+            size++;
+        } else if (itemIndices[entryIdx - 1] >= itemIdx) {
+            sortedByItem = false;
+        }
+        itemIndices[entryIdx] = itemIdx;
+        values[entryIdx] = rating;
+        userSizes[userIdx] = userSize + 1;
+        return true;
+    }
+
+    /**
+     * Returns a read-only view of the entries of the user.
+     *
+     * @param userIdx user index
+     * @return the entries of the user
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @Override
+    public List<ItemEntry<Integer, Double>> getItemIdxListByUserIdx(int userIdx) throws IndexOutOfBoundsException {
+        userRangeCheck(userIdx);
+        return new UserItemList(userIdx);
+    }
+
+    /**
+     * Returns the number of entries of the user.
+     *
+     * @param userIdx user index
+     * @return the number of entries of the user
+     */
+    public int getUserSize(int userIdx) {
+        userRangeCheck(userIdx);
+        return userSizes[userIdx];
+    }
+
+    /**
+     * Returns the item index of an entry of the user.
+     *
+     * @param userIdx  user index
+     * @param position position of the entry in [0, getUserSize(userIdx))
+     * @return the item index
+     */
+    public int getItemIdx(int userIdx, int position) {
+        return itemIndices[userOffsets[userIdx] + position];
+    }
+
+    /**
+     * Returns the value of an entry of the user.
+     *
+     * @param userIdx  user index
+     * @param position position of the entry in [0, getUserSize(userIdx))
+     * @return the value
+     */
+    public double getValue(int userIdx, int position) {
+        return values[userOffsets[userIdx] + position];
+    }
+
+    /**
+     * Removes the entries of the user.
+     *
+     * @param userIdx user index
+     * @return the entries that were removed from the list
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @Override
+    public List<ItemEntry<Integer, Double>> removeUserIdx(int userIdx) throws IndexOutOfBoundsException {
+        List<ItemEntry<Integer, Double>> oldValue = new ArrayList<>(getItemIdxListByUserIdx(userIdx));
+        if (userSizes[userIdx] > 0) {
+            userSizes[userIdx] = 0;
+            size--;
+        }
+        return oldValue;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this list contains entries of the specified userIdx.
+     *
+     * @param userIdx element whose presence in this list is to be tested
+     * @return <tt>true</tt> if this list contains the specified userIdx
+     */
+    @Override
+    public boolean contains(int userIdx) {
+        return userIdx >= 0 && userIdx < numUsers && userSizes[userIdx] > 0;
+    }
+
+    /**
+     * Returns the value of the entry of the user and the item, found by a
+     * binary search if the items of every user are in ascending order, e.g.
+     * in the list of the test entries.
+     *
+     * @param userIdx user index
+     * @param itemIdx item index
+     * @return the value of the entry, -1.0 if there is no such entry
+     */
+    @Override
+    @Deprecated
+    @LibrecWaring("It is best not to use this method! The complexity is O(itemIdxList.size()) unless the items are sorted.")
+    public double getEntryValue(int userIdx, int itemIdx) {
+        userRangeCheck(userIdx);
+        int from = userOffsets[userIdx], to = from + userSizes[userIdx];
+        if (sortedByItem) {
+            int entryIdx = Arrays.binarySearch(itemIndices, from, to, itemIdx);
+            return entryIdx >= 0 ? values[entryIdx] : -1.0;
+        }
+        for (int entryIdx = from; entryIdx < to; entryIdx++) {
+            if (itemIndices[entryIdx] == itemIdx) {
+                return values[entryIdx];
+            }
+        }
+        return -1.0;
+    }
+
+    /**
+     * top n ranked Items at user userIdx
+     * * the entries are ranked as {@link net.librec.util.Lists#sortItemEntryListTopK(List, boolean, int)}
+     *
+     * @param userIdx user userIdx
+     * @param topN    top n ranked Items
+     */
+    @Override
+    public void topNRankItemsByUser(int userIdx, int topN) {
+        topNRankItemsByUser(userIdx, new TopKHeap(topN));
+    }
+
+    /**
+     * top n ranked Items for all userIdx
+     *
+     * @param itemTopN top n ranked Items
+     */
+    @Override
+    public void topNRank(int itemTopN) {
+        TopKHeap heap = new TopKHeap(itemTopN);
+        for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+            if (userSizes[userIdx] > 0) {
+                topNRankItemsByUser(userIdx, heap);
+            }
+        }
+    }
+
+    private void topNRankItemsByUser(int userIdx, TopKHeap heap) {
+        userRangeCheck(userIdx);
+        int from = userOffsets[userIdx], to = from + userSizes[userIdx];
+        heap.clear();
+        for (int entryIdx = from; entryIdx < to; entryIdx++) {
+            heap.offer(itemIndices[entryIdx], values[entryIdx]);
+        }
+        if (heap.size() == 0) {
+            return;
+        }
+        heap.sortDescending();
+
+        ownEntries();
+        for (int position = 0; position < heap.size(); position++) {
+            itemIndices[from + position] = heap.getIndex(position);
+            values[from + position] = heap.getValue(position);
+        }
+        userSizes[userIdx] = heap.size();
+        sortedByItem = false;
+    }
+
+    /**
+     * Copy the arrays of the entries if they are shared, before they are changed.
+     */
+    private void ownEntries() {
+        if (sharedEntries) {
+            itemIndices = itemIndices.clone();
+            values = values.clone();
+            sharedEntries = false;
+        }
+    }
+
+    /**
+     * the number of users with entries
+     *
+     * @return the number of users
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * get the iterator of user index
+     *
+     * @return user index iterator
+     */
+    @Override
+    public Iterator<Integer> userIterator() {
+        return new UserListIterator();
+    }
+
+    /**
+     * get the iterator of user-item-rating entry
+     *
+     * @return user item-rating-entry iterator
+     */
+    @Override
+    public Iterator<UserItemRatingEntry> entryIterator() {
+        return new UserItemRatingItr();
+    }
+
+    /**
+     * Checks if the given user index is in range. If not, throws an appropriate
+     * runtime exception.
+     *
+     * @param userIdx user index
+     */
+    private void userRangeCheck(int userIdx) {
+        if (userIdx >= numUsers)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(userIdx, " User", numUsers - 1));
+    }
+
+    private String outOfBoundsMsg(int index, String msg, int size) {
+        return msg + " Index: " + index + ", Size: " + size;
+    }
+
+    /**
+     * read-only view of the entries of a user
+     */
+    private class UserItemList extends AbstractList<ItemEntry<Integer, Double>> implements RandomAccess {
+        private final int userIdx;
+
+        private UserItemList(int userIdx) {
+            this.userIdx = userIdx;
+        }
+
+        @Override
+        public ItemEntry<Integer, Double> get(int position) {
+            if (position < 0 || position >= userSizes[userIdx])
+                throw new IndexOutOfBoundsException(outOfBoundsMsg(position, " Item", userSizes[userIdx]));
+            int entryIdx = userOffsets[userIdx] + position;
+            return new ItemEntry<Integer, Double>(itemIndices[entryIdx], values[entryIdx]);
+        }
+
+        @Override
+        public int size() {
+            return userSizes[userIdx];
+        }
+    }
+
+    /**
+     * user list iterator
+     */
+    private class UserListIterator implements Iterator<Integer> {
+        int cursor; // index of next element to return
+        int lastRet = -1; // index of last element returned; -1 if no such
+
+        public UserListIterator() {
+            cursor = nextUser(0);
+        }
+
+        private int nextUser(int userIdx) {
+            while (userIdx < numUsers && userSizes[userIdx] == 0) {
+                userIdx++;
+            }
+            return userIdx;
+        }
+
+        public boolean hasNext() {
+            return cursor < numUsers;
+        }
+
+        public Integer next() {
+            if (cursor >= numUsers)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            cursor = nextUser(cursor + 1);
+            return lastRet;
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            ColumnarRecommendedList.this.removeUserIdx(lastRet);
+            lastRet = -1;
+        }
+    }
+
+    /**
+     * iterator of user-item-rating entry
+     */
+    private class UserItemRatingItr implements Iterator<UserItemRatingEntry> {
+        private final UserItemRatingEntry entry = new UserItemRatingEntry();
+        private int userIdx = -1;
+        private int entryIdx, userEnd;
+
+        public UserItemRatingItr() {
+            nextUser();
+        }
+
+        private void nextUser() {
+            do {
+                userIdx++;
+            } while (userIdx < numUsers && userSizes[userIdx] == 0);
+            if (userIdx < numUsers) {
+                entryIdx = userOffsets[userIdx];
+                userEnd = entryIdx + userSizes[userIdx];
+            }
+        }
+
+        public boolean hasNext() {
+            return userIdx < numUsers;
+        }
+
+        public UserItemRatingEntry next() {
+            if (userIdx >= numUsers)
+                throw new NoSuchElementException();
+            entry.setUserIdx(userIdx);
+            entry.setItemIdx(itemIndices[entryIdx]);
+            entry.setValue(values[entryIdx]);
+            if (++entryIdx >= userEnd) {
+                nextUser();
+            }
+            return entry;
+        }
+
+        @Override
+        @Deprecated
+        public void remove() {
+            throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.item;
+
+import com.google.common.collect.BiMap;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writer of recommended items, which streams them user by user into a
+ * buffered file, without building the whole result in memory.
+ * <p>
+ * The entries of a {@link RecommendedList} are written from the inner
+ * indices of the users and items. The ids are resolved through the inverse
+ * of the mappings when the entries are written, once per user for the users.
+ * Entries whose ids are not found are skipped, as in
+ * {@link net.librec.recommender.Recommender#getRecommendedList()}.
+ * <p>
+ * The formats are:
+ * <ul>
+ * <li>text: a line "userId,itemId,value" for each entry</li>
+ * <li>gzip: the text format compressed by gzip</li>
+ * <li>binary: for each entry the user id and the item id by
+ * {@link DataOutput#writeUTF(String)}, then the value by
+ * {@link DataOutput#writeDouble(double)}</li>
+ * </ul>
+ */
+public class RecommendedListWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * format of the written file
+     */
+    public enum Format {
+        TEXT, GZIP, BINARY;
+
+        /**
+         * Return the format of a name, text if the name is blank.
+         *
+         * @param name name of the format, case insensitive
+         * @return the format
+         */
+        public static Format of(String name) {
+            return StringUtils.isBlank(name) ? TEXT : valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    private final Format format;
+    private final Writer writer;
+    private final DataOutputStream dataOutput;
+
+    /**
+     * Open a writer of the file. The directories of the file are created if
+     * they do not exist.
+     *
+     * @param filePath path of the file
+     * @param format   format of the file
+     * @throws IOException if I/O error occurs
+     */
+    public RecommendedListWriter(String filePath, Format format) throws IOException {
+        File file = new File(filePath);
+        if (file.getParentFile() != null && !file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+        this.format = format;
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        switch (format) {
+            case GZIP:
+                writer = new OutputStreamWriter(new GZIPOutputStream(outputStream, BUFFER_SIZE), "UTF-8");
+                dataOutput = null;
+                break;
+            case BINARY:
+                writer = null;
+                dataOutput = new DataOutputStream(outputStream);
+                break;
+            default:
+                writer = new OutputStreamWriter(outputStream, "UTF-8");
+                dataOutput = null;
+                break;
+        }
+    }
+
+    /**
+     * Write the entries of a recommended list in the order of the users.
+     *
+     * @param recommendedList the recommended list by inner indices
+     * @param userMapping     mapping of the user ids to the inner indices
+     * @param itemMapping     mapping of the item ids to the inner indices
+     * @throws IOException if I/O error occurs
+     */
+    public void write(RecommendedList recommendedList, BiMap<String, Integer> userMapping,
+                      BiMap<String, Integer> itemMapping) throws IOException {
+        BiMap<Integer, String> userMappingInverse = userMapping.inverse();
+        BiMap<Integer, String> itemMappingInverse = itemMapping.inverse();
+        ColumnarRecommendedList columnarList = recommendedList instanceof ColumnarRecommendedList
+                ? (ColumnarRecommendedList) recommendedList : null;
+        Iterator<Integer> userItr = recommendedList.userIterator();
+        while (userItr.hasNext()) {
+            int userIdx = userItr.next();
+            String userId = userMappingInverse.get(userIdx);
+            if (StringUtils.isBlank(userId)) {
+                continue;
+            }
+            if (columnarList != null) {
+                for (int position = 0, userSize = columnarList.getUserSize(userIdx); position < userSize; position++) {
+                    String itemId = itemMappingInverse.get(columnarList.getItemIdx(userIdx, position));
+                    if (StringUtils.isNotBlank(itemId)) {
+                        write(userId, itemId, columnarList.getValue(userIdx, position));
+                    }
+                }
+            } else {
+                for (ItemEntry<Integer, Double> itemEntry : recommendedList.getItemIdxListByUserIdx(userIdx)) {
+                    String itemId = itemMappingInverse.get(itemEntry.getKey());
+                    if (StringUtils.isNotBlank(itemId)) {
+                        write(userId, itemId, itemEntry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Write recommended items.
+     *
+     * @param recommendedList the recommended items
+     * @throws IOException if I/O error occurs
+     */
+    public void write(List<RecommendedItem> recommendedList) throws IOException {
+        for (RecommendedItem recItem : recommendedList) {
+            write(recItem.getUserId(), recItem.getItemId(), recItem.getValue());
+        }
+    }
+
+    /**
+     * Write an entry.
+     *
+     * @param userId user id
+     * @param itemId item id
+     * @param value  value of the entry
+     * @throws IOException if I/O error occurs
+     */
+    public void write(String userId, String itemId, double value) throws IOException {
+        if (format == Format.BINARY) {
+            dataOutput.writeUTF(userId);
+            dataOutput.writeUTF(itemId);
+            dataOutput.writeDouble(value);
+        } else {
+            writer.write(userId);
+            writer.write(',');
+            writer.write(itemId);
+            writer.write(',');
+            writer.write(String.valueOf(value));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Flush and close the file.
+     *
+     * @throws IOException if I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (format == Format.BINARY) {
+            dataOutput.close();
+        } else {
+            writer.close();
+        }
+    }
+}
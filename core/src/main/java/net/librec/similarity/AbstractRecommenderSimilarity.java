@@ -17,16 +17,27 @@
  */
 package net.librec.similarity;
 
+import com.google.common.primitives.Doubles;
 import net.librec.conf.Configuration;
 import net.librec.data.DataModel;
 import net.librec.data.convertor.appender.SocialDataAppender;
 import net.librec.math.structure.SparseMatrix;
 import net.librec.math.structure.SparseVector;
+import net.librec.math.structure.SparseVectorView;
 import net.librec.math.structure.SymmMatrix;
+import net.librec.util.TopKHeap;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Calculate Recommender Similarity, such as cosine, Pearson, Jaccard
@@ -37,6 +48,13 @@ import java.util.List;
 
 public abstract class AbstractRecommenderSimilarity implements RecommenderSimilarity {
 
+    private static final Log LOG = LogFactory.getLog(AbstractRecommenderSimilarity.class);
+
+    /**
+     * Number of rows of the upper triangle computed by one task
+     */
+    private static final int BLOCK_SIZE = 64;
+
     /**
      * Configuration
      */
@@ -46,6 +64,17 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
      */
     protected SymmMatrix similarityMatrix;
 
+    /**
+     * Shrinkage of the similarities while building the matrix
+     */
+    private int shrinkage;
+
+    /**
+     * Number of the most similar neighbours kept for each user or item, all
+     * neighbours are kept if not positive
+     */
+    private int topK;
+
     /**
      * Build social similarity matrix with trainMatrix in dataModel.
      *
@@ -55,6 +84,8 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
     @Override
     public void buildSimilarityMatrix(DataModel dataModel) {
         conf = dataModel.getContext().getConf();
+        shrinkage = conf.getInt("rec.similarity.shrinkage", 0);
+        topK = conf.getInt("rec.similarity.topk", 0);
         String similarityKey = conf.get("rec.recommender.similarity.key", "user");
         if(StringUtils.isNotBlank(similarityKey)){
             if (StringUtils.equals(similarityKey, "social")) {
@@ -67,36 +98,88 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
                 int numUsers = trainMatrix.numRows();
                 int numItems = trainMatrix.numColumns();
                 int count = isUser ? numUsers : numItems;
-                
-                similarityMatrix = new SymmMatrix(count);
-                
+
+                SparseVectorView[] vectors = new SparseVectorView[count];
                 for (int i = 0; i < count; i++) {
-                    SparseVector thisVector = isUser ? trainMatrix.row(i) : trainMatrix.column(i);
-                    if (thisVector.getCount() == 0) {
-                        continue;
-                    }
-                    // user/item itself exclusive
-                    for (int j = i + 1; j < count; j++) {
-                        SparseVector thatVector = isUser ? trainMatrix.row(j) : trainMatrix.column(j);
-                        if (thatVector.getCount() == 0) {
-                            continue;
-                        }
-                        
-                        double sim = getCorrelation(thisVector, thatVector);
-                        if (!Double.isNaN(sim) && sim != 0) {
-                            similarityMatrix.set(i, j, sim);
-                        }
-                    }
+                    vectors[i] = isUser ? trainMatrix.rowView(i) : trainMatrix.columnView(i);
+                }
+                // the users who rated each item, or the items rated by each user
+                int numInverted = isUser ? numItems : numUsers;
+                SparseVectorView[] invertedVectors = new SparseVectorView[numInverted];
+                for (int k = 0; k < numInverted; k++) {
+                    invertedVectors[k] = isUser ? trainMatrix.columnView(k) : trainMatrix.rowView(k);
                 }
+
+                similarityMatrix = new SymmMatrix(count);
+                buildSimilarityMatrix(vectors, invertedVectors);
             }
         }
 
     }
 
+    /**
+     * Compute the similarities of all pairs of the given vectors which have
+     * common rated entries. The pairs and their common rated values are found
+     * through the inverted vectors, so pairs without common rated entries,
+     * whose similarity is not defined or zero, are never visited. The upper
+     * triangle is split into blocks of rows which are computed in parallel
+     * into block local buffers, and the blocks are merged into the
+     * similarity matrix in order.
+     * <p>
+     * If {@link #topK} is positive, the blocks compute whole rows and keep
+     * the {@link #topK} most similar neighbours of each row in a bounded heap.
+     * A pair is in the similarity matrix if either of its two vectors keeps
+     * the other, so the matrix holds at most 2 * count * topK entries.
+     *
+     * The number of non-zero values and the sum of the squared values of each
+     * vector are computed once here and passed to
+     * {@link #getCorrelation(int, double, int, double, double[], double[], int)}
+     * for every pair, so the pairs only cost their common rated values.
+     *
+     * @param vectors         the rows or columns of the train matrix
+     * @param invertedVectors the columns or rows of the train matrix
+     */
+    private void buildSimilarityMatrix(SparseVectorView[] vectors, SparseVectorView[] invertedVectors) {
+        int count = vectors.length;
+        int[] counts = new int[count];
+        double[] squareSums = new double[count];
+        int maxSize = 0;
+        for (int i = 0; i < count; i++) {
+            counts[i] = vectors[i].getCount();
+            squareSums[i] = getSquareSum(vectors[i]);
+            maxSize = Math.max(maxSize, vectors[i].size());
+        }
+        int numThreads = conf.getInt("rec.similarity.thread.count", Runtime.getRuntime().availableProcessors());
+        numThreads = Math.max(1, Math.min(numThreads, (count + BLOCK_SIZE - 1) / BLOCK_SIZE));
+        LOG.info("Building similarity matrix of " + count + " vectors with " + numThreads + " threads");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<SimilarityBlock>> results = new ArrayList<>();
+            for (int fromRow = 0; fromRow < count; fromRow += BLOCK_SIZE) {
+                int toRowExclusive = Math.min(count, fromRow + BLOCK_SIZE);
+                results.add(executorService.submit(
+                        new SimilarityBlock(vectors, invertedVectors, counts, squareSums, fromRow, toRowExclusive, maxSize)));
+            }
+            for (int k = 0; k < results.size(); k++) {
+                SimilarityBlock block = results.get(k).get();
+                results.set(k, null);
+                for (int n = 0; n < block.size; n++) {
+                    similarityMatrix.set(block.rows[n], block.columns[n], block.values[n]);
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            LOG.error("", e);
+            throw new IllegalStateException(e);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
     /**
      * Build social similarity matrix with trainMatrix
      * and socialMatrix in dataModel.
-     * 
+     *
      * @param dataModel
      *            the input data model
      */
@@ -107,19 +190,23 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
 
         similarityMatrix = new SymmMatrix(numUsers);
 
+        SparseVectorView userVector = new SparseVectorView();
+        SparseVectorView socialVector = new SparseVectorView();
+        double[] thisValues = new double[trainMatrix.numColumns()];
+        double[] thatValues = new double[trainMatrix.numColumns()];
         for (int userIdx = 0; userIdx < numUsers; userIdx++) {
-            SparseVector userVector = trainMatrix.row(userIdx);
+            trainMatrix.rowView(userIdx, userVector);
             if (userVector.getCount() == 0) {
                 continue;
             }
             List<Integer> socialList = socialMatrix.getRows(userIdx);
             for (int socialIdx : socialList) {
-                SparseVector socialVector = trainMatrix.row(socialIdx);
+                trainMatrix.rowView(socialIdx, socialVector);
                 if (socialVector.getCount() == 0) {
                     continue;
                 }
 
-                double sim = getCorrelation(userVector, socialVector);
+                double sim = getCorrelation(userVector, socialVector, thisValues, thatValues);
                 if (!Double.isNaN(sim)) {
                     similarityMatrix.set(userIdx, socialIdx, sim);
                 }
@@ -163,6 +250,96 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
         return sim;
     }
 
+    /**
+     * Find the common rated items of two row or column views by merging their
+     * sorted indices, and return the similarity of the common rated values.
+     *
+     * @param thisVector
+     *            the rated items by this user, or users that have rated this
+     *            item
+     * @param thatVector
+     *            the rated items by that user, or users that have rated that
+     *            item
+     * @param thisValues
+     *            buffer of the common rated values of this vector
+     * @param thatValues
+     *            buffer of the common rated values of that vector
+     * @return similarity
+     */
+    protected double getCorrelation(SparseVectorView thisVector, SparseVectorView thatVector,
+                                    double[] thisValues, double[] thatValues) {
+        int n = 0;
+        int thisSize = thisVector.size(), thatSize = thatVector.size();
+        for (int i = 0, j = 0; i < thisSize && j < thatSize; ) {
+            int thisIdx = thisVector.getIndex(i), thatIdx = thatVector.getIndex(j);
+            if (thisIdx < thatIdx) {
+                i++;
+            } else if (thisIdx > thatIdx) {
+                j++;
+            } else {
+                double thisValue = thisVector.getValue(i++), thatValue = thatVector.getValue(j++);
+                if (thisValue != 0.0 && thatValue != 0.0) {
+                    thisValues[n] = thisValue;
+                    thatValues[n] = thatValue;
+                    n++;
+                }
+            }
+        }
+        return getCorrelation(thisVector.getCount(), getSquareSum(thisVector),
+                thatVector.getCount(), getSquareSum(thatVector), thisValues, thatValues, n);
+    }
+
+    /**
+     * Return the sum of the squared values of a row or column view.
+     *
+     * @param vector the row or column view
+     * @return the sum of the squared values
+     */
+    private static double getSquareSum(SparseVectorView vector) {
+        double squareSum = 0.0;
+        for (int i = 0, size = vector.size(); i < size; i++) {
+            double value = vector.getValue(i);
+            squareSum += value * value;
+        }
+        return squareSum;
+    }
+
+    /**
+     * Return the similarity of two row or column views from their common
+     * rated values, in ascending order of the common rated indices. The
+     * similarity of two views without common rated values must be undefined
+     * or zero, as such pairs are left out of the similarity matrix without
+     * calling this method. The statistics of the whole vectors are computed
+     * once per vector rather than once per pair.
+     *
+     * @param thisCount
+     *            number of non-zero values of this vector
+     * @param thisSquareSum
+     *            sum of the squared values of this vector
+     * @param thatCount
+     *            number of non-zero values of that vector
+     * @param thatSquareSum
+     *            sum of the squared values of that vector
+     * @param thisValues
+     *            the common rated values of this vector
+     * @param thatValues
+     *            the common rated values of that vector
+     * @param n
+     *            number of common rated values
+     * @return similarity
+     */
+    protected double getCorrelation(int thisCount, double thisSquareSum, int thatCount, double thatSquareSum,
+                                    double[] thisValues, double[] thatValues, int n) {
+        double sim = getSimilarity(thisValues, thatValues, n);
+
+        // shrink to account for vector size
+        if (!Double.isNaN(sim) && shrinkage > 0) {
+            sim *= n / (n + shrinkage + 0.0);
+        }
+
+        return sim;
+    }
+
     /**
      * Calculate the similarity between thisList and thatList.
      *
@@ -174,6 +351,38 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
      */
     protected abstract double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList);
 
+    /**
+     * Calculate the similarity between the first {@code length} values of
+     * two arrays. Subclasses override this method to avoid boxing the values
+     * into lists.
+     *
+     * @param thisValues
+     *            this values
+     * @param thatValues
+     *            that values
+     * @param length
+     *            number of values
+     * @return similarity
+     */
+    protected double getSimilarity(double[] thisValues, double[] thatValues, int length) {
+        return getSimilarity(Doubles.asList(Arrays.copyOf(thisValues, length)),
+                Doubles.asList(Arrays.copyOf(thatValues, length)));
+    }
+
+    /**
+     * Copy the values of a list into an array.
+     *
+     * @param list a list of numbers
+     * @return an array of the values
+     */
+    protected static double[] toArray(List<? extends Number> list) {
+        double[] values = new double[list.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = list.get(i).doubleValue();
+        }
+        return values;
+    }
+
     /**
      * Return the similarity matrix.
      *
@@ -184,4 +393,159 @@ public abstract class AbstractRecommenderSimilarity implements RecommenderSimila
         return similarityMatrix;
     }
 
+    /**
+     * The similarities of the pairs (i, j) with i in [fromRow, toRowExclusive)
+     * and j &gt; i which have common rated entries, in row major order. If
+     * {@link #topK} is positive, the {@link #topK} most similar neighbours j
+     * of each row i instead.
+     */
+    private class SimilarityBlock implements Callable<SimilarityBlock> {
+
+        private final SparseVectorView[] vectors, invertedVectors;
+        private final int[] counts;
+        private final double[] squareSums;
+        private final int fromRow, toRowExclusive, maxSize;
+
+        private int[] rows = new int[16], columns = new int[16];
+        private double[] values = new double[16];
+        private int size;
+
+        private SimilarityBlock(SparseVectorView[] vectors, SparseVectorView[] invertedVectors, int[] counts,
+                                double[] squareSums, int fromRow, int toRowExclusive, int maxSize) {
+            this.vectors = vectors;
+            this.invertedVectors = invertedVectors;
+            this.counts = counts;
+            this.squareSums = squareSums;
+            this.fromRow = fromRow;
+            this.toRowExclusive = toRowExclusive;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public SimilarityBlock call() {
+            int count = vectors.length;
+            double[] thisValues = new double[maxSize];
+            double[] thatValues = new double[maxSize];
+            // number of common rated entries with each candidate j, and the
+            // position of the common rated values of j in the pooled buffers
+            int[] numCommon = new int[count];
+            int[] offsets = new int[count];
+            int[] candidates = new int[16];
+            double[] thisPool = new double[16], thatPool = new double[16];
+            TopKHeap neighbors = topK > 0 ? new TopKHeap(topK) : null;
+
+            for (int i = fromRow; i < toRowExclusive; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                SparseVectorView thisVector = vectors[i];
+                int thisSize = thisVector.size();
+
+                // find the candidates j having common rated entries with i,
+                // only j > i unless the neighbours of whole rows are kept
+                int numCandidates = 0, poolSize = 0;
+                for (int a = 0; a < thisSize; a++) {
+                    if (thisVector.getValue(a) == 0.0) {
+                        continue;
+                    }
+                    SparseVectorView invertedVector = invertedVectors[thisVector.getIndex(a)];
+                    int invertedSize = invertedVector.size();
+                    // user/item itself exclusive
+                    for (int b = firstCandidate(invertedVector, i); b < invertedSize; b++) {
+                        int j = invertedVector.getIndex(b);
+                        if (j == i || invertedVector.getValue(b) == 0.0) {
+                            continue;
+                        }
+                        if (numCommon[j]++ == 0) {
+                            if (numCandidates == candidates.length) {
+                                candidates = Arrays.copyOf(candidates, numCandidates + (numCandidates >> 1));
+                            }
+                            candidates[numCandidates++] = j;
+                        }
+                        poolSize++;
+                    }
+                }
+                if (numCandidates == 0) {
+                    continue;
+                }
+
+                Arrays.sort(candidates, 0, numCandidates);
+                for (int c = 0, offset = 0; c < numCandidates; c++) {
+                    int j = candidates[c];
+                    offsets[j] = offset;
+                    offset += numCommon[j];
+                }
+                if (poolSize > thisPool.length) {
+                    thisPool = new double[poolSize];
+                    thatPool = new double[poolSize];
+                }
+
+                // pool the common rated values in ascending order of the common rated indices
+                for (int a = 0; a < thisSize; a++) {
+                    double thisValue = thisVector.getValue(a);
+                    if (thisValue == 0.0) {
+                        continue;
+                    }
+                    SparseVectorView invertedVector = invertedVectors[thisVector.getIndex(a)];
+                    int invertedSize = invertedVector.size();
+                    for (int b = firstCandidate(invertedVector, i); b < invertedSize; b++) {
+                        int j = invertedVector.getIndex(b);
+                        double thatValue = invertedVector.getValue(b);
+                        if (j == i || thatValue == 0.0) {
+                            continue;
+                        }
+                        int position = offsets[j]++;
+                        thisPool[position] = thisValue;
+                        thatPool[position] = thatValue;
+                    }
+                }
+
+                for (int c = 0; c < numCandidates; c++) {
+                    int j = candidates[c];
+                    int n = numCommon[j];
+                    numCommon[j] = 0;
+                    System.arraycopy(thisPool, offsets[j] - n, thisValues, 0, n);
+                    System.arraycopy(thatPool, offsets[j] - n, thatValues, 0, n);
+
+                    double sim = getCorrelation(counts[i], squareSums[i], counts[j], squareSums[j], thisValues, thatValues, n);
+                    if (!Double.isNaN(sim) && sim != 0) {
+                        if (neighbors != null) {
+                            neighbors.offer(j, sim);
+                        } else {
+                            add(i, j, sim);
+                        }
+                    }
+                }
+                if (neighbors != null) {
+                    for (int k = 0; k < neighbors.size(); k++) {
+                        add(i, neighbors.getIndex(k), neighbors.getValue(k));
+                    }
+                    neighbors.clear();
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Return the position of the first candidate of row i in an inverted
+         * vector, which is the position after i unless whole rows are computed.
+         */
+        private int firstCandidate(SparseVectorView invertedVector, int i) {
+            return topK > 0 ? 0 : invertedVector.position(i) + 1;
+        }
+
+        private void add(int row, int column, double value) {
+            if (size == rows.length) {
+                int capacity = size + (size >> 1);
+                rows = Arrays.copyOf(rows, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            rows[size] = row;
+            columns[size] = column;
+            values[size] = value;
+            size++;
+        }
+    }
+
 }
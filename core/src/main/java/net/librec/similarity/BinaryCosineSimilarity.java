@@ -40,6 +40,28 @@ public class BinaryCosineSimilarity extends AbstractRecommenderSimilarity {
         return thisVector.inner(thatVector) / (Math.sqrt(thisVector.inner(thisVector)) * Math.sqrt(thatVector.inner(thatVector)));
     }
 
+    /**
+     * Get the binary cosine similarity of two row or column views from their
+     * common rated values and the norms of the whole vectors.
+     *
+     * @param thisCount     number of non-zero values of this vector
+     * @param thisSquareSum sum of the squared values of this vector
+     * @param thatCount     number of non-zero values of that vector
+     * @param thatSquareSum sum of the squared values of that vector
+     * @param thisValues    the common rated values of this vector
+     * @param thatValues    the common rated values of that vector
+     * @param n             number of common rated values
+     * @return similarity
+     */
+    protected double getCorrelation(int thisCount, double thisSquareSum, int thatCount, double thatSquareSum,
+                                    double[] thisValues, double[] thatValues, int n) {
+        double innerProduct = 0.0;
+        for (int k = 0; k < n; k++) {
+            innerProduct += thisValues[k] * thatValues[k];
+        }
+        return innerProduct / (Math.sqrt(thisSquareSum) * Math.sqrt(thatSquareSum));
+    }
+
     protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
         return 0.0;
     }
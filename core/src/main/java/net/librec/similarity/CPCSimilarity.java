@@ -65,15 +65,33 @@ public class CPCSimilarity extends AbstractRecommenderSimilarity {
      * @return similarity
      */
     protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
+        if (thisList == null || thatList == null || thisList.size() != thatList.size()) {
+            return Double.NaN;
+        }
+        return getSimilarity(toArray(thisList), toArray(thatList), thisList.size());
+    }
+
+    /**
+     * Calculate the similarity between the first length values of thisValues and thatValues.
+     *
+     * @param thisValues
+     *            this values
+     * @param thatValues
+     *            that values
+     * @param length
+     *            number of values
+     * @return similarity
+     */
+    protected double getSimilarity(double[] thisValues, double[] thatValues, int length) {
         // compute similarity
-        if (thisList == null || thatList == null || thisList.size() < 1 || thatList.size() < 1 || thisList.size() != thatList.size()) {
+        if (length < 1) {
             return Double.NaN;
         }
 
         double innerProduct = 0.0, thisPower2 = 0.0, thatPower2 = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            double thisDiff = thisList.get(i).doubleValue() - median;
-            double thatDiff = thatList.get(i).doubleValue() - median;
+        for (int i = 0; i < length; i++) {
+            double thisDiff = thisValues[i] - median;
+            double thatDiff = thatValues[i] - median;
 
             innerProduct += thisDiff * thatDiff;
             thisPower2 += thisDiff * thisDiff;
@@ -34,14 +34,32 @@ public class CosineSimilarity extends AbstractRecommenderSimilarity {
      * @return similarity
      */
     protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        if (thisList == null || thatList == null || thisList.size() < 1 || thatList.size() < 1 || thisList.size() != thatList.size()) {
+        if (thisList == null || thatList == null || thisList.size() != thatList.size()) {
+            return Double.NaN;
+        }
+        return getSimilarity(toArray(thisList), toArray(thatList), thisList.size());
+    }
+
+    /**
+     * Calculate the similarity between the first length values of thisValues and thatValues.
+     *
+     * @param thisValues
+     *            this values
+     * @param thatValues
+     *            that values
+     * @param length
+     *            number of values
+     * @return similarity
+     */
+    protected double getSimilarity(double[] thisValues, double[] thatValues, int length) {
+        if (length < 1) {
             return Double.NaN;
         }
 
         double innerProduct = 0.0, thisPower2 = 0.0, thatPower2 = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            double thisValue = thisList.get(i).doubleValue();
-            double thatValue = thatList.get(i).doubleValue();
+        for (int i = 0; i < length; i++) {
+            double thisValue = thisValues[i];
+            double thatValue = thatValues[i];
 
             innerProduct += thisValue * thatValue;
             thisPower2 += thisValue * thisValue;
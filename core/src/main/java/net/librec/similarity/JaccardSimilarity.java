@@ -55,6 +55,26 @@ public class JaccardSimilarity extends AbstractRecommenderSimilarity {
         return (numCommonElements + 0.0) / numAllElements;
     }
 
+    /**
+     * Return the similarity of two row or column views from the number of
+     * their common rated items.
+     *
+     * @param thisCount     number of non-zero values of this vector
+     * @param thisSquareSum unused
+     * @param thatCount     number of non-zero values of that vector
+     * @param thatSquareSum unused
+     * @param thisValues    the common rated values of this vector
+     * @param thatValues    the common rated values of that vector
+     * @param n             number of common rated values
+     * @return similarity
+     */
+    protected double getCorrelation(int thisCount, double thisSquareSum, int thatCount, double thatSquareSum,
+                                    double[] thisValues, double[] thatValues, int n) {
+        int numAllElements = thisCount + thatCount - n;
+
+        return (n + 0.0) / numAllElements;
+    }
+
     protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
         return 0.0;
     }
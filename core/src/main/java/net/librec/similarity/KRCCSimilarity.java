@@ -63,6 +63,53 @@ public class KRCCSimilarity extends AbstractRecommenderSimilarity {
         return getSimilarity(thisList, thatList);
     }
 
+    /**
+     * Return the Kendall correlation of the common positively rated values of
+     * two row or column views. As in
+     * {@link #getCorrelation(SparseVector, SparseVector)}, the similarity is
+     * undefined unless both vectors have the same number of rated values.
+     *
+     * @param thisCount     number of non-zero values of this vector
+     * @param thisSquareSum unused
+     * @param thatCount     number of non-zero values of that vector
+     * @param thatSquareSum unused
+     * @param thisValues    the common rated values of this vector
+     * @param thatValues    the common rated values of that vector
+     * @param n             number of common rated values
+     * @return similarity
+     */
+    protected double getCorrelation(int thisCount, double thisSquareSum, int thatCount, double thatSquareSum,
+                                    double[] thisValues, double[] thatValues, int n) {
+        if (thisCount != thatCount || thatCount < 2) {
+            return Double.NaN;
+        }
+        // keep the common values rated positively by both vectors in place
+        int numCommonIndices = 0;
+        for (int k = 0; k < n; k++) {
+            if (thisValues[k] > 0.0 && thatValues[k] > 0.0) {
+                thisValues[numCommonIndices] = thisValues[k];
+                thatValues[numCommonIndices] = thatValues[k];
+                numCommonIndices++;
+            }
+        }
+        if (numCommonIndices < 2) {
+            return Double.NaN;
+        }
+
+        double sum = 0.0;
+        for (int i = 0; i < numCommonIndices; i++) {
+            for (int j = i + 1; j < numCommonIndices; j++) {
+                double thisDiff = thisValues[i] - thisValues[j];
+                double thatDiff = thatValues[i] - thatValues[j];
+                if (thisDiff * thatDiff < 0.0) {
+                    sum += 1.0;
+                }
+            }
+        }
+
+        return 1.0 - 4.0 * sum / (numCommonIndices * (numCommonIndices - 1));
+    }
+
     /**
      * Calculate the similarity between thisList and thatList.
      *
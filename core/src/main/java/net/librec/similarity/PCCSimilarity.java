@@ -17,8 +17,6 @@
  */
 package net.librec.similarity;
 
-import net.librec.math.algorithm.Maths;
-
 import java.util.List;
 
 /**
@@ -38,19 +36,41 @@ public class PCCSimilarity extends AbstractRecommenderSimilarity {
      * @return similarity
      */
     protected double getSimilarity(List<? extends Number> thisList, List<? extends Number> thatList) {
-        // compute similarity
+        if (thisList == null || thatList == null || thisList.size() != thatList.size()) {
+            return Double.NaN;
+        }
+        return getSimilarity(toArray(thisList), toArray(thatList), thisList.size());
+    }
 
-        if (thisList == null || thatList == null || thisList.size() < 2 || thatList.size() < 2 || thisList.size() != thatList.size()) {
+    /**
+     * Calculate the similarity between the first length values of thisValues and thatValues.
+     *
+     * @param thisValues
+     *            this values
+     * @param thatValues
+     *            that values
+     * @param length
+     *            number of values
+     * @return similarity
+     */
+    protected double getSimilarity(double[] thisValues, double[] thatValues, int length) {
+        // compute similarity
+        if (length < 2) {
             return Double.NaN;
         }
 
-        double thisMu = Maths.mean(thisList);
-        double thatMu = Maths.mean(thatList);
+        double thisSum = 0.0, thatSum = 0.0;
+        for (int i = 0; i < length; i++) {
+            thisSum += thisValues[i];
+            thatSum += thatValues[i];
+        }
+        double thisMu = thisSum / length;
+        double thatMu = thatSum / length;
 
         double num = 0.0, thisPow2 = 0.0, thatPow2 = 0.0;
-        for (int i = 0; i < thisList.size(); i++) {
-            double thisMinusMu = thisList.get(i).doubleValue() - thisMu;
-            double thatMinusMu = thatList.get(i).doubleValue() - thatMu;
+        for (int i = 0; i < length; i++) {
+            double thisMinusMu = thisValues[i] - thisMu;
+            double thatMinusMu = thatValues[i] - thatMu;
 
             num += thisMinusMu * thatMinusMu;
             thisPow2 += thisMinusMu * thisMinusMu;
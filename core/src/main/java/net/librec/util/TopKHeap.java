@@ -0,0 +1,209 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.util;
+
+/**
+ * A bounded min-heap of (index, value) pairs on primitive arrays, which keeps
+ * the k pairs with the largest values offered to it. A pair replaces the
+ * smallest pair kept only if its value is strictly larger, so of pairs with
+ * equal values the ones offered first are kept. The heap follows the same
+ * steps as {@link Lists#sortItemEntryListTopK(java.util.List, boolean, int)}
+ * and gives the same pairs in the same order, without boxing them. The heap is
+ * meant to be cleared and reused, e.g. once per user or per row.
+ */
+public class TopKHeap {
+
+    private final int k;
+    private final int[] indices;
+    private final double[] values;
+    private int size;
+
+    /** buffers of the merge sort, allocated on first use */
+    private int[] sortIndices;
+    private double[] sortValues;
+
+    /**
+     * Construct an empty heap.
+     *
+     * @param k maximum number of pairs to keep
+     */
+    public TopKHeap(int k) {
+        this.k = k;
+        this.indices = new int[k];
+        this.values = new double[k];
+    }
+
+    /**
+     * @return maximum number of pairs to keep
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return number of pairs kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all pairs.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Offer a pair to the heap.
+     *
+     * @param index index of the pair
+     * @param value value of the pair
+     * @return true if the pair is kept
+     */
+    public boolean offer(int index, double value) {
+        if (size < k) {
+            siftUp(size++, index, value);
+            return true;
+        }
+        if (size == 0 || Double.compare(value, values[0]) <= 0) {
+            return false;
+        }
+        // remove the smallest pair, then add the new one
+        int last = --size;
+        if (last > 0) {
+            siftDown(0, indices[last], values[last], last);
+        }
+        siftUp(size++, index, value);
+        return true;
+    }
+
+    /**
+     * Return the smallest value kept, which a pair must exceed to be kept
+     * once the heap is full.
+     *
+     * @return the smallest value kept
+     */
+    public double peekValue() {
+        return values[0];
+    }
+
+    /**
+     * Return the index of the pair at a position in [0, size()). The pairs
+     * are in heap order, or in descending order after {@link #sortDescending()}.
+     *
+     * @param position position of the pair
+     * @return index of the pair
+     */
+    public int getIndex(int position) {
+        return indices[position];
+    }
+
+    /**
+     * Return the value of the pair at a position in [0, size()).
+     *
+     * @param position position of the pair
+     * @return value of the pair
+     */
+    public double getValue(int position) {
+        return values[position];
+    }
+
+    /**
+     * Sort the pairs kept in descending order of values by a stable merge
+     * sort of the heap order. The heap must be cleared before it is offered
+     * pairs again.
+     */
+    public void sortDescending() {
+        if (size < 2) {
+            return;
+        }
+        if (sortIndices == null) {
+            sortIndices = new int[k];
+            sortValues = new double[k];
+        }
+        int[] fromIndices = indices, toIndices = sortIndices;
+        double[] fromValues = values, toValues = sortValues;
+        for (int width = 1; width < size; width <<= 1) {
+            for (int left = 0; left < size; left += width << 1) {
+                int middle = Math.min(left + width, size), right = Math.min(left + (width << 1), size);
+                int i = left, j = middle, n = left;
+                while (i < middle && j < right) {
+                    if (Double.compare(fromValues[j], fromValues[i]) > 0) {
+                        toIndices[n] = fromIndices[j];
+                        toValues[n++] = fromValues[j++];
+                    } else {
+                        toIndices[n] = fromIndices[i];
+                        toValues[n++] = fromValues[i++];
+                    }
+                }
+                while (i < middle) {
+                    toIndices[n] = fromIndices[i];
+                    toValues[n++] = fromValues[i++];
+                }
+                while (j < right) {
+                    toIndices[n] = fromIndices[j];
+                    toValues[n++] = fromValues[j++];
+                }
+            }
+            int[] swapIndices = fromIndices;
+            fromIndices = toIndices;
+            toIndices = swapIndices;
+            double[] swapValues = fromValues;
+            fromValues = toValues;
+            toValues = swapValues;
+        }
+        if (fromIndices != indices) {
+            System.arraycopy(fromIndices, 0, indices, 0, size);
+            System.arraycopy(fromValues, 0, values, 0, size);
+        }
+    }
+
+    private void siftUp(int position, int index, double value) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (Double.compare(value, values[parent]) >= 0) {
+                break;
+            }
+            indices[position] = indices[parent];
+            values[position] = values[parent];
+            position = parent;
+        }
+        indices[position] = index;
+        values[position] = value;
+    }
+
+    private void siftDown(int position, int index, double value, int end) {
+        int half = end >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < end && Double.compare(values[child], values[right]) > 0) {
+                child = right;
+            }
+            if (Double.compare(value, values[child]) <= 0) {
+                break;
+            }
+            indices[position] = indices[child];
+            values[position] = values[child];
+            position = child;
+        }
+        indices[position] = index;
+        values[position] = value;
+    }
+}
@@ -17,7 +17,13 @@
  */
 package net.librec;
 
+import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
+import net.librec.data.DataModel;
+import net.librec.data.model.TextDataModel;
+import net.librec.math.algorithm.Randoms;
+import net.librec.recommender.Recommender;
+import net.librec.recommender.RecommenderContext;
 import org.junit.After;
 import org.junit.Before;
 
@@ -46,4 +52,37 @@ public class BaseTestCase {
 		return conf;
 	}
 
+	/**
+	 * Add the resource to the conf and build its text data model, split
+	 * with a fixed random seed so that every run gets the same data.
+	 *
+	 * @param resource the resource of the test properties
+	 * @return the data model
+	 * @throws LibrecException if error occurs during building
+	 */
+	protected DataModel buildDataModel(String resource) throws LibrecException {
+		conf.addResource(new Configuration.Resource(resource));
+		Randoms.seed(1L);
+		DataModel dataModel = new TextDataModel(conf);
+		dataModel.buildDataModel();
+		return dataModel;
+	}
+
+	/**
+	 * Train the recommender on the data model with the conf and a fixed
+	 * random seed, so that recommenders trained with the same conf are
+	 * identical.
+	 *
+	 * @param recommender the recommender to train
+	 * @param dataModel   the data model
+	 * @param <T>         the type of the recommender
+	 * @return the trained recommender
+	 * @throws LibrecException if error occurs during training
+	 */
+	protected <T extends Recommender> T train(T recommender, DataModel dataModel) throws LibrecException {
+		Randoms.seed(1L);
+		recommender.recommend(new RecommenderContext(conf, dataModel));
+		return recommender;
+	}
+
 }
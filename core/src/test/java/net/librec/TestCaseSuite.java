@@ -23,8 +23,17 @@ import net.librec.data.convertor.TextDataConvertorTestCase;
 import net.librec.data.model.ArffDataModelTestCase;
 import net.librec.data.model.TextDataModelTestCase;
 import net.librec.data.splitter.*;
+import net.librec.eval.ranking.FusedRankingEvaluatorTestCase;
+import net.librec.eval.rating.FusedRatingEvaluatorTestCase;
 import net.librec.filter.GenericRecommendedFilterTestCase;
+import net.librec.filter.IndexedRecommendedFilterTestCase;
 import net.librec.job.RecommenderJobTestCase;
+import net.librec.math.algorithm.AliasTableTestCase;
+import net.librec.math.algorithm.ConjugateGradientTestCase;
+import net.librec.math.algorithm.RandomStreamTestCase;
+import net.librec.math.structure.DenseMatrixTestCase;
+import net.librec.math.structure.MappedSparseMatrixTestCase;
+import net.librec.math.structure.SymmMatrixTestCase;
 import net.librec.recommender.baseline.*;
 import net.librec.recommender.cf.BHFreeTestCase;
 import net.librec.recommender.cf.BUCMTestCase;
@@ -38,10 +47,14 @@ import net.librec.recommender.context.ranking.SBPRTestCase;
 import net.librec.recommender.context.rating.*;
 import net.librec.recommender.ext.*;
 import net.librec.recommender.hybrid.HybridTestCase;
+import net.librec.recommender.item.ColumnarRecommendedListTestCase;
+import net.librec.recommender.item.RecommendedListWriterTestCase;
 import net.librec.recommender.item.RecommendedItemListTestCase;
 import net.librec.similarity.BinaryCosineSimilarityTestCase;
+import net.librec.similarity.PCCSimilarityTestCase;
 import net.librec.tool.driver.DataDriverTestCase;
 import net.librec.tool.driver.RecDriverTestCase;
+import net.librec.util.TopKHeapTestCase;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -66,15 +79,30 @@ import org.junit.runners.Suite.SuiteClasses;
 	KCVDataSplitterTestCase.class,
 	LOOCVDataSplitterTestCase.class,
 	RatioDataSplitterTestCase.class,
+	//eval.ranking
+	FusedRankingEvaluatorTestCase.class,
+	//eval.rating
+	FusedRatingEvaluatorTestCase.class,
 	//filter
 	GenericRecommendedFilterTestCase.class,
+	IndexedRecommendedFilterTestCase.class,
 	//io
 //	ArrayWritableTestCase.class,
 	//job
 //	JobStatusTestCase.class,
 	RecommenderJobTestCase.class,
+	//math.algorithm
+	AliasTableTestCase.class,
+	ConjugateGradientTestCase.class,
+	RandomStreamTestCase.class,
+	//math.structure
+	DenseMatrixTestCase.class,
+	MappedSparseMatrixTestCase.class,
+	SymmMatrixTestCase.class,
 	//recommender.item
 	RecommendedItemListTestCase.class,
+	ColumnarRecommendedListTestCase.class,
+	RecommendedListWriterTestCase.class,
 	//recommender.rec.baseline
 	ConstantGuessTestCase.class,
 	GlobalAverageTestCase.class,
@@ -147,9 +175,12 @@ import org.junit.runners.Suite.SuiteClasses;
 	HybridTestCase.class,
 	//similarity
 	BinaryCosineSimilarityTestCase.class,
+	PCCSimilarityTestCase.class,
 	//tool.driver
 	DataDriverTestCase.class,
-	RecDriverTestCase.class
+	RecDriverTestCase.class,
+	//util
+	TopKHeapTestCase.class
 })
 public class TestCaseSuite {
 
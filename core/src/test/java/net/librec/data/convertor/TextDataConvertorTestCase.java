@@ -24,6 +24,9 @@ import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
+import java.io.File;
+import java.io.FileWriter;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -121,4 +124,90 @@ public class TextDataConvertorTestCase extends BaseTestCase {
 		assertNull(datetimeMatrix);
 	}
 
+	/**
+	 * Test the method processData in streaming mode, which should build the
+	 * same matrices as the table based mode
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test05Streaming() throws Exception {
+		conf.set("inputDataPath", conf.get("dfs.data.dir") + "/test/datamodeltest/matrix4by4-date.txt");
+		conf.set("data.column.format", "UIRT");
+
+		TextDataConvertor tableConvertor = new TextDataConvertor(conf.get("data.column.format"), conf.get("inputDataPath"), -1.0);
+		tableConvertor.processData();
+
+		textDataConvertor = new TextDataConvertor(conf.get("data.column.format"), conf.get("inputDataPath"), -1.0);
+		textDataConvertor.setStreaming(true);
+		textDataConvertor.processData();
+
+		SparseMatrix preference = textDataConvertor.getPreferenceMatrix();
+		SparseMatrix datetimeMatrix = textDataConvertor.getDatetimeMatrix();
+
+		assertEquals(preference.size(), 13);
+		assertEquals(datetimeMatrix.size(), 13);
+		assertEquals(tableConvertor.getPreferenceMatrix().toString(), preference.toString());
+		assertEquals(tableConvertor.getDatetimeMatrix().toString(), datetimeMatrix.toString());
+		for (int col = 0; col < preference.numColumns(); col++) {
+			assertEquals(tableConvertor.getPreferenceMatrix().getRows(col), preference.getRows(col));
+		}
+	}
+
+	/**
+	 * Test the method processData with parallel loading, which should assign
+	 * the same inner ids and build the same matrices as sequential loading
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test06Parallel() throws Exception {
+		conf.set("inputDataPath", conf.get("dfs.data.dir") + "/test/test-convert-dir "
+				+ conf.get("dfs.data.dir") + "/filmtrust/rating");
+
+		TextDataConvertor sequentialConvertor = new TextDataConvertor(conf.get("inputDataPath"));
+		sequentialConvertor.processData();
+
+		textDataConvertor = new TextDataConvertor(conf.get("inputDataPath"));
+		textDataConvertor.setNumThreads(4);
+		textDataConvertor.setSplitSize(4096);
+		textDataConvertor.processData();
+
+		assertEquals(sequentialConvertor.getUserIds(), textDataConvertor.getUserIds());
+		assertEquals(sequentialConvertor.getItemIds(), textDataConvertor.getItemIds());
+		assertEquals(sequentialConvertor.getPreferenceMatrix().toString(),
+				textDataConvertor.getPreferenceMatrix().toString());
+		assertNull(textDataConvertor.getDatetimeMatrix());
+	}
+
+	/**
+	 * Test the method processData in streaming mode with records of which
+	 * only some have a timestamp, the others should be left out of the
+	 * datetime matrix
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test07StreamingPartialTimes() throws Exception {
+		File file = File.createTempFile("partial-times", ".txt");
+		file.deleteOnExit();
+		FileWriter writer = new FileWriter(file);
+		writer.write("1 1 4 100\n1 2 3\n2 1 5 200\n2 3 2\n3 2 1 300\n");
+		writer.close();
+		conf.set("data.column.format", "UIRT");
+
+		textDataConvertor = new TextDataConvertor(conf.get("data.column.format"), file.getPath(), -1.0);
+		textDataConvertor.setStreaming(true);
+		textDataConvertor.processData();
+
+		SparseMatrix datetimeMatrix = textDataConvertor.getDatetimeMatrix();
+		assertEquals(5, textDataConvertor.getPreferenceMatrix().size());
+		assertEquals(3, datetimeMatrix.size());
+		assertEquals(100000.0, datetimeMatrix.get(0, 0), 0.0);
+		assertEquals(0.0, datetimeMatrix.get(0, 1), 0.0);
+		assertEquals(200000.0, datetimeMatrix.get(1, 0), 0.0);
+		assertEquals(0.0, datetimeMatrix.get(1, 2), 0.0);
+		assertEquals(300000.0, datetimeMatrix.get(2, 1), 0.0);
+	}
+
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.data.convertor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Text Tokenizer TestCase
+ */
+public class TextTokenizerTestCase {
+
+	private TextTokenizer tokenizer(String text, int bufferSize) {
+		return new TextTokenizer(Channels.newChannel(new ByteArrayInputStream(text.getBytes())), bufferSize);
+	}
+
+	/**
+	 * Test splitting lines and fields across buffer boundaries
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLinesAndFields() throws Exception {
+		TextTokenizer tokenizer = tokenizer("\r\nu1 i1\t3.5\r\n\n  u2,, i2 ,4 ,978300760\r\r\nu3 i3\nu4", 16);
+
+		assertTrue(tokenizer.nextLine());
+		assertEquals(3, tokenizer.numFields());
+		assertEquals("u1", tokenizer.getString(0));
+		assertEquals("i1", tokenizer.getString(1));
+		assertEquals(3.5, tokenizer.getDouble(2), 0.0);
+
+		assertTrue(tokenizer.nextLine());
+		assertEquals(4, tokenizer.numFields());
+		assertEquals("u2", tokenizer.getString(0));
+		assertEquals("i2", tokenizer.getString(1));
+		assertEquals(4.0, tokenizer.getDouble(2), 0.0);
+		assertEquals(978300760L, tokenizer.getLong(3));
+
+		assertTrue(tokenizer.nextLine());
+		assertEquals(2, tokenizer.numFields());
+		assertEquals("u3", tokenizer.getString(0));
+		assertEquals("i3", tokenizer.getString(1));
+
+		assertFalse(tokenizer.nextLine());
+	}
+
+	/**
+	 * Test parsing numbers the same as Double.parseDouble and Long.parseLong
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNumbers() throws Exception {
+		String[] values = {"0", "-0", "1", "+2", "0.1", "3.14159", "-2.5", "1e3", "9.7323480e+008", "1.5E-7",
+				".5", "5.", "123456789012345678", "0.30000000000000004", "1e300", "NaN"};
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			sb.append(value).append('\n');
+		}
+		TextTokenizer tokenizer = tokenizer(sb.toString(), 1024);
+		for (String value : values) {
+			assertTrue(tokenizer.nextLine());
+			assertEquals(Double.doubleToLongBits(Double.parseDouble(value)),
+					Double.doubleToLongBits(tokenizer.getDouble(0)));
+		}
+
+		tokenizer = tokenizer("978300760 -42 9.7323480e+008\n", 1024);
+		assertTrue(tokenizer.nextLine());
+		assertEquals(978300760L, tokenizer.getLong(0));
+		assertEquals(-42L, tokenizer.getLong(1));
+		assertEquals(973234800L, tokenizer.getLong(2));
+	}
+}
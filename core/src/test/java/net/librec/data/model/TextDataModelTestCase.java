@@ -21,6 +21,7 @@ import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configured;
 import net.librec.data.DataModel;
+import net.librec.util.FileUtil;
 import org.junit.Before;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -28,6 +29,7 @@ import org.junit.runners.MethodSorters;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * TextDataMode TestCase {@link net.librec.data.model.TextDataModel}
@@ -459,6 +461,45 @@ public class TextDataModelTestCase extends BaseTestCase {
 		assertEquals(getTestSize(dataModel), 9);
 	}
 
+	/**
+	 * Test saving the converted data as a binary snapshot and loading it back,
+	 * and that a snapshot of different convert settings is not loaded.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test21Snapshot() throws Exception {
+		conf.set(Configured.CONF_DATA_COLUMN_FORMAT, "UIRT");
+		conf.set(Configured.CONF_DATA_INPUT_PATH, "test/datamodeltest/matrix4by4-date.txt");
+		conf.setBoolean("data.model.snapshot", true);
+		conf.set("data.model.snapshot.path", "target/snapshot/matrix4by4-date.snapshot");
+		FileUtil.deleteFile("target/snapshot/matrix4by4-date.snapshot");
+
+		TextDataModel parsedModel = new TextDataModel(conf);
+		parsedModel.buildDataModel();
+		assertTrue(FileUtil.exist("target/snapshot/matrix4by4-date.snapshot"));
+
+		conf.setBoolean("data.convert.read.ready", false);
+		TextDataModel loadedModel = new TextDataModel(conf);
+		loadedModel.loadDataModel();
+		assertEquals(parsedModel.getUserMappingData(), loadedModel.getUserMappingData());
+		assertEquals(parsedModel.getItemMappingData(), loadedModel.getItemMappingData());
+		assertEquals(parsedModel.getDatetimeDataSet().toString(), loadedModel.getDatetimeDataSet().toString());
+		loadedModel.buildDataModel();
+		assertEquals(getDataSize(loadedModel), 13);
+
+		conf.setBoolean("data.convert.read.ready", false);
+		conf.set("data.convert.binarize.threshold", "5.0");
+		TextDataModel staleModel = new TextDataModel(conf);
+		try {
+			staleModel.loadDataModel();
+			fail("a snapshot of different convert settings should not be loaded");
+		} catch (LibrecException e) {
+			// expected
+		}
+		FileUtil.deleteFile("target/snapshot/matrix4by4-date.snapshot");
+	}
+
 	/**
 	 * Returns the size of preference matrix of a specified DataModel object
 	 *
@@ -20,10 +20,12 @@ package net.librec.data.splitter;
 import net.librec.BaseTestCase;
 import net.librec.conf.Configured;
 import net.librec.data.convertor.TextDataConvertor;
+import net.librec.math.structure.SparseMatrix;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * KCVDataSplitter TestCase {@link net.librec.data.splitter.KCVDataSplitter}
@@ -86,4 +88,46 @@ public class KCVDataSplitterTestCase extends BaseTestCase {
 			assertEquals(splitter.getTestData().size(), 2);
 		}
 	}
+
+	/**
+	 * Test that each rating is in the test set of exactly one fold and in the
+	 * train sets of the others, in both the rows and the columns of the sets.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFoldsPartitionData() throws Exception {
+		convertor.processData();
+		SparseMatrix preferenceMatrix = convertor.getPreferenceMatrix();
+		KCVDataSplitter splitter = new KCVDataSplitter(convertor, conf);
+		splitter.splitFolds(3);
+
+		int[] rowPtr = preferenceMatrix.getRowPointers();
+		int[] colInd = preferenceMatrix.getColumnIndices();
+		double[] data = preferenceMatrix.getData();
+		int[] testCounts = new int[rowPtr[preferenceMatrix.numRows()]];
+		for (int k = 1; k <= 3; k++) {
+			splitter.splitData(k);
+			SparseMatrix trainMatrix = splitter.getTrainData();
+			SparseMatrix testMatrix = splitter.getTestData();
+			assertEquals(preferenceMatrix.size(), trainMatrix.size() + testMatrix.size());
+			for (int row = 0; row < preferenceMatrix.numRows(); row++) {
+				for (int entry = rowPtr[row]; entry < rowPtr[row + 1]; entry++) {
+					int column = colInd[entry];
+					boolean inTest = testMatrix.contains(row, column);
+					assertTrue(inTest != trainMatrix.contains(row, column));
+					SparseMatrix matrix = inTest ? testMatrix : trainMatrix;
+					assertEquals(data[entry], matrix.get(row, column), 0.0);
+					assertEquals(data[entry], matrix.column(column).get(row), 0.0);
+					if (inTest) {
+						testCounts[entry]++;
+					}
+				}
+			}
+			assertEquals(preferenceMatrix.getValueSet(), trainMatrix.getValueSet());
+		}
+		for (int testCount : testCounts) {
+			assertEquals(1, testCount);
+		}
+	}
 }
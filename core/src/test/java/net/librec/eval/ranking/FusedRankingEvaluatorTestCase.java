@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval.ranking;
+
+import net.librec.BaseTestCase;
+import net.librec.common.LibrecException;
+import net.librec.conf.Configuration;
+import net.librec.data.DataModel;
+import net.librec.data.model.TextDataModel;
+import net.librec.eval.Measure;
+import net.librec.eval.Measure.MeasureValue;
+import net.librec.eval.RecommenderEvaluator;
+import net.librec.recommender.RecommenderContext;
+import net.librec.recommender.cf.ranking.BPRRecommender;
+import net.librec.recommender.item.RecommendedList;
+import net.librec.util.ReflectionUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FusedRankingEvaluator TestCase
+ * {@link net.librec.eval.ranking.FusedRankingEvaluator}
+ */
+public class FusedRankingEvaluatorTestCase extends BaseTestCase {
+
+	private RecommenderContext context;
+	private RecommendedList recommendedList;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		conf.addResource(new Configuration.Resource("rec/cf/ranking/bpr-test.properties"));
+		conf.setInt("rec.iterator.maximum", 5);
+		DataModel dataModel = new TextDataModel(conf);
+		dataModel.buildDataModel();
+		context = new RecommenderContext(conf, dataModel);
+		BPRRecommender recommender = new BPRRecommender() {
+			@Override
+			protected RecommendedList recommend() throws LibrecException {
+				return FusedRankingEvaluatorTestCase.this.recommendedList = super.recommend();
+			}
+		};
+		recommender.recommend(context);
+	}
+
+	/**
+	 * Test that the measures evaluated together are the same as those of
+	 * the evaluators of the measures, at several cutoffs.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameAsEvaluators() throws Exception {
+		List<MeasureValue> measureValues = new ArrayList<>();
+		for (int topN : new int[]{1, 5, 10}) {
+			for (Measure measure : Measure.values()) {
+				if (FusedRankingEvaluator.isSupported(measure)) {
+					measureValues.add(new MeasureValue(measure, topN));
+				}
+			}
+		}
+
+		Map<MeasureValue, Double> evaluatedMap = new FusedRankingEvaluator(measureValues).evaluate(context, recommendedList);
+		assertEquals(measureValues.size(), evaluatedMap.size());
+		for (MeasureValue measureValue : measureValues) {
+			RecommenderEvaluator evaluator = ReflectionUtil.newInstance(measureValue.getMeasure().getEvaluatorClass());
+			evaluator.setTopN(measureValue.getTopN());
+			assertEquals(measureValue.getMeasure() + " top " + measureValue.getTopN(),
+					evaluator.evaluate(context, recommendedList), evaluatedMap.get(measureValue), 0.0);
+		}
+
+		conf.setInt("rec.eval.thread.count", 4);
+		Map<MeasureValue, Double> parallelMap = new FusedRankingEvaluator(measureValues).evaluate(context, recommendedList);
+		for (MeasureValue measureValue : measureValues) {
+			assertEquals(evaluatedMap.get(measureValue), parallelMap.get(measureValue), 1e-12);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.eval.rating;
+
+import net.librec.BaseTestCase;
+import net.librec.common.LibrecException;
+import net.librec.conf.Configuration;
+import net.librec.data.DataModel;
+import net.librec.data.model.TextDataModel;
+import net.librec.eval.Measure;
+import net.librec.eval.Measure.MeasureValue;
+import net.librec.eval.RecommenderEvaluator;
+import net.librec.recommender.RecommenderContext;
+import net.librec.recommender.cf.rating.BiasedMFRecommender;
+import net.librec.util.ReflectionUtil;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * FusedRatingEvaluator TestCase
+ * {@link net.librec.eval.rating.FusedRatingEvaluator}
+ */
+public class FusedRatingEvaluatorTestCase extends BaseTestCase {
+
+	/**
+	 * Test that the rating measures of the predicted test ratings are the
+	 * same as those of the evaluators of the measures, and that the ratings
+	 * predicted by several threads are the same.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameAsEvaluators() throws Exception {
+		conf.addResource(new Configuration.Resource("rec/cf/rating/biasedmf-test.properties"));
+		DataModel dataModel = new TextDataModel(conf);
+		dataModel.buildDataModel();
+		RecommenderContext context = new RecommenderContext(conf, dataModel);
+		BiasedMFRecommender recommender = new BiasedMFRecommender() {
+			@Override
+			protected void trainModel() throws LibrecException {
+				super.trainModel();
+				// the ratings predicted by several threads are the same as by one thread
+				conf.setInt("rec.recommender.rating.thread.count", 4);
+				recommend();
+				double[] predictions = testPredictions.clone();
+				conf.setInt("rec.recommender.rating.thread.count", 1);
+				recommend();
+				for (int entryIdx = 0; entryIdx < predictions.length; entryIdx++) {
+					assertEquals(testPredictions[entryIdx], predictions[entryIdx], 0.0);
+				}
+			}
+		};
+		recommender.recommend(context);
+
+		Map<MeasureValue, Double> evaluatedMap = recommender.evaluateMap();
+		for (MeasureValue measureValue : Measure.getMeasureEnumList(false, 0)) {
+			RecommenderEvaluator evaluator = ReflectionUtil.newInstance(measureValue.getMeasure().getEvaluatorClass());
+			assertEquals(measureValue.getMeasure().toString(),
+					recommender.evaluate(evaluator), evaluatedMap.get(measureValue), 0.0);
+		}
+	}
+}
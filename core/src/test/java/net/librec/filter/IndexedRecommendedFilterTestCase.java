@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.filter;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import net.librec.BaseTestCase;
+import net.librec.recommender.item.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * IndexedRecommendedFilter Test Case corresponds to IndexedRecommendedFilter
+ * {@link net.librec.filter.IndexedRecommendedFilter}
+ */
+public class IndexedRecommendedFilterTestCase extends BaseTestCase {
+
+    private BiMap<String, Integer> userMapping;
+    private BiMap<String, Integer> itemMapping;
+    private List<RecommendedItem> recommendedList;
+    private RecommendedItemList recommendedItemList;
+    private ColumnarRecommendedList columnarList;
+
+    @Before
+    public void setup() throws Exception {
+        super.setUp();
+        userMapping = HashBiMap.create();
+        itemMapping = HashBiMap.create();
+        recommendedList = new ArrayList<>();
+        recommendedItemList = new RecommendedItemList(3, 4);
+        columnarList = new ColumnarRecommendedList(4, 4);
+        int count = 1;
+        // users are added in reverse order of their inner indices
+        for (int i = 4; i >= 1; i--) {
+            userMapping.put(Integer.toString(i), i - 1);
+            for (int j = 1; j <= 4; j++) {
+                itemMapping.put(Integer.toString(j), j - 1);
+                recommendedList.add(new GenericRecommendedItem(Integer.toString(i), Integer.toString(j), count));
+                recommendedItemList.addUserItemIdx(i - 1, j - 1, count);
+                columnarList.addUserItemIdx(i - 1, j - 1, count);
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Test that the allowed users and items keep the same entries as
+     * GenericRecommendedFilter.
+     */
+    @Test
+    public void testSameAsGenericFilter() {
+        GenericRecommendedFilter genericFilter = new GenericRecommendedFilter();
+        genericFilter.setUserIdList(Arrays.asList("1", "2"));
+        genericFilter.setItemIdList(Arrays.asList("3"));
+        IndexedRecommendedFilter filter = new IndexedRecommendedFilter();
+        filter.setUserIdList(Arrays.asList("1", "2"));
+        filter.setItemIdList(Arrays.asList("3"));
+
+        List<RecommendedItem> expectedList = genericFilter.filter(recommendedList);
+        List<RecommendedItem> filteredList = filter.filter(recommendedList);
+        assertEquals(10, filteredList.size());
+        assertEquals(expectedList.size(), filteredList.size());
+        assertEquals(new HashSet<>(expectedList), new HashSet<>(filteredList));
+        assertSameEntries(filteredList, filter.filter(recommendedItemList, userMapping, itemMapping));
+        assertSameEntries(filteredList, filter.filter(columnarList, userMapping, itemMapping));
+    }
+
+    /**
+     * Test excluding users and items, read from the configuration, by the
+     * ids and by the inner indices.
+     */
+    @Test
+    public void testExcluded() {
+        conf.set("rec.filter.userids", "1,2,3");
+        conf.set("rec.filter.excluded.userids", "2, 9");
+        conf.set("rec.filter.excluded.itemids", "4");
+        IndexedRecommendedFilter filter = new IndexedRecommendedFilter();
+        filter.setConf(conf);
+
+        List<RecommendedItem> filteredList = filter.filter(recommendedList);
+        assertEquals(6, filteredList.size());
+        for (RecommendedItem recommendedItem : filteredList) {
+            assertFalse(recommendedItem.getUserId().equals("2") || recommendedItem.getUserId().equals("4"));
+            assertFalse(recommendedItem.getItemId().equals("4"));
+        }
+        assertSameEntries(filteredList, filter.filter(recommendedItemList, userMapping, itemMapping));
+        assertSameEntries(filteredList, filter.filter(columnarList, userMapping, itemMapping));
+    }
+
+    /**
+     * Assert that a list by inner indices has the same entries as the
+     * recommended items, in the order of the inner indices of the users.
+     */
+    private void assertSameEntries(List<RecommendedItem> expectedList, RecommendedList filteredList) {
+        List<String> expectedEntries = new ArrayList<>();
+        for (int userIdx = 0; userIdx < 4; userIdx++) {
+            for (RecommendedItem recommendedItem : expectedList) {
+                if (userMapping.get(recommendedItem.getUserId()) == userIdx) {
+                    expectedEntries.add(recommendedItem.getUserId() + "," + recommendedItem.getItemId() + "," + recommendedItem.getValue());
+                }
+            }
+        }
+        List<String> filteredEntries = new ArrayList<>();
+        Iterator<UserItemRatingEntry> entryIter = filteredList.entryIterator();
+        while (entryIter.hasNext()) {
+            UserItemRatingEntry entry = entryIter.next();
+            filteredEntries.add(userMapping.inverse().get(entry.getUserIdx()) + ","
+                    + itemMapping.inverse().get(entry.getItemIdx()) + "," + entry.getValue());
+        }
+        assertEquals(expectedEntries, filteredEntries);
+    }
+}
@@ -19,6 +19,7 @@ package net.librec.job;
 
 import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
+import net.librec.conf.Configuration;
 import net.librec.recommender.item.GenericRecommendedItem;
 import net.librec.recommender.item.RecommendedItem;
 import org.junit.Before;
@@ -27,9 +28,13 @@ import org.junit.Test;
 import org.junit.runners.MethodSorters;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * RecommenderJob test case
  * {@link net.librec.job.RecommenderJob}
@@ -84,4 +89,67 @@ public class RecommenderJobTestCase extends BaseTestCase {
 		conf.set("rec.recommender.class", "net.librec.recommender.cf.AOBPRRecommender");
 		// saveResult(recommendedItemList);
 	}
+
+	/**
+	 * Test that the folds of cross validation run at the same time save the
+	 * same results as the folds run in sequence.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentCrossValidation() throws Exception {
+		assertSameCrossValidation("rec/baseline/itemaverage-test.properties", "itemaverage", 3);
+	}
+
+	/**
+	 * Test that the folds of cross validation of a recommender with an item
+	 * similarity run at the same time save the same results as the folds run
+	 * in sequence, each fold building its similarity from its own
+	 * configuration.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentCrossValidationWithSimilarity() throws Exception {
+		assertSameCrossValidation("rec/cf/itemknn-test.properties", "itemknn", 2);
+	}
+
+	/**
+	 * Test that the folds of cross validation of a recommender initializing
+	 * its factors at random run at the same time save the same results as
+	 * the folds run in sequence, each fold drawing from its own random
+	 * stream.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testConcurrentCrossValidationWithRandomFactors() throws Exception {
+		assertSameCrossValidation("rec/cf/rating/biasedmf-test.properties", "biasedmf", 3);
+	}
+
+	/**
+	 * Run the folds of cross validation in sequence and at the same time, and
+	 * assert that the saved results are the same.
+	 */
+	private void assertSameCrossValidation(String resource, String recommender, int numFolds) throws Exception {
+		conf.addResource(new Configuration.Resource(resource));
+		conf.set("data.model.splitter", "kcv");
+		conf.set("data.splitter.cv.number", String.valueOf(numFolds));
+		conf.set("rec.random.seed", "1");
+		// copied before the sequential run, which sets keys such as the similarity key in its configuration
+		Configuration concurrentConf = new Configuration(conf);
+
+		conf.set("dfs.result.dir", "../result/test/cv-sequential");
+		new RecommenderJob(conf).runJob();
+
+		concurrentConf.set("dfs.result.dir", "../result/test/cv-concurrent");
+		concurrentConf.setInt("data.splitter.cv.thread.count", numFolds);
+		new RecommenderJob(concurrentConf).runJob();
+
+		String resultPath = "/" + conf.get("data.input.path") + "-" + recommender + "-output/" + recommender + "-";
+		for (int k = 1; k <= numFolds; k++) {
+			assertEquals(Files.readAllLines(Paths.get("../result/test/cv-sequential" + resultPath + k)),
+					Files.readAllLines(Paths.get("../result/test/cv-concurrent" + resultPath + k)));
+		}
+	}
 }
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Alias Table TestCase
+ */
+public class AliasTableTestCase {
+
+	/**
+	 * Test that the outcomes are drawn in proportion to their weights
+	 */
+	@Test
+	public void testSample() {
+		double[] weights = {0.5, 0.0, 3.0, 1.5, 5.0};
+		AliasTable table = new AliasTable(weights.length);
+		table.build(weights);
+		assertEquals(10.0, table.getTotal(), 1e-12);
+		assertEquals(3.0, table.getWeight(2), 0.0);
+
+		RandomStream random = new RandomStream(1);
+		int n = 100000;
+		int[] counts = new int[weights.length];
+		for (int i = 0; i < n; i++) {
+			counts[table.sample(random.nextDouble())]++;
+		}
+		for (int i = 0; i < weights.length; i++) {
+			assertEquals(weights[i] / 10.0, counts[i] / (double) n, 0.01);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import net.librec.math.structure.DenseMatrix;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Conjugate Gradient TestCase
+ */
+public class ConjugateGradientTestCase {
+
+	/**
+	 * Test that the conjugate gradient method converges to the solution by
+	 * Cholesky decomposition, and that a warm start from the solution needs
+	 * no step
+	 */
+	@Test
+	public void testSolve() {
+		Randoms.seed(1);
+		final int n = 8;
+		DenseMatrix factors = new DenseMatrix(20, n);
+		factors.init(0.0, 1.0);
+		final double[][] a = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				a[i][j] = DenseMatrix.colMult(factors, i, factors, j) + (i == j ? 0.1 : 0.0);
+			}
+		}
+		double[] b = new double[n];
+		for (int i = 0; i < n; i++) {
+			b[i] = Randoms.gaussian(0.0, 1.0);
+		}
+
+		ConjugateGradient method = new ConjugateGradient(n) {
+			@Override
+			protected void multiply(double[] vector, double[] result) {
+				for (int i = 0; i < n; i++) {
+					result[i] = 0.0;
+					for (int j = 0; j < n; j++) {
+						result[i] += a[i][j] * vector[j];
+					}
+				}
+			}
+		};
+		double[] x = new double[n];
+		assertTrue(method.solve(b, x, 100) <= 2 * n);
+
+		double[][] lower = new double[n][];
+		for (int i = 0; i < n; i++) {
+			lower[i] = a[i].clone();
+		}
+		double[] expected = b.clone();
+		assertTrue(DenseMatrix.choleskySolve(lower, expected, n));
+		for (int i = 0; i < n; i++) {
+			assertEquals(expected[i], x[i], 1e-6);
+		}
+
+		assertEquals(0, method.solve(b, expected, 100));
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.algorithm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Random Stream TestCase
+ */
+public class RandomStreamTestCase {
+
+	/**
+	 * Test that the streams of tasks only depend on the seed and the index of
+	 * the task, and that they are different from each other
+	 */
+	@Test
+	public void testStreamsOfTasks() {
+		Randoms.seed(1);
+		RandomStream first = Randoms.stream(0);
+		RandomStream second = Randoms.stream(1);
+		Randoms.uniform();
+		Randoms.seed(1);
+		RandomStream again = Randoms.stream(0);
+		for (int i = 0; i < 100; i++) {
+			long value = first.nextLong();
+			assertEquals(value, again.nextLong());
+			assertNotEquals(value, second.nextLong());
+		}
+
+		RandomStream split = first.split();
+		RandomStream splitAgain = again.split();
+		for (int i = 0; i < 100; i++) {
+			long value = split.nextLong();
+			assertEquals(value, splitAgain.nextLong());
+			assertNotEquals(value, first.nextLong());
+		}
+	}
+
+	/**
+	 * Test that a thread bound to the stream of a task draws the same
+	 * numbers whatever was drawn before, and draws from the generator of the
+	 * seed again once unbound
+	 */
+	@Test
+	public void testBoundStream() throws Exception {
+		Randoms.seed(1);
+		double expected = Randoms.uniform();
+		Randoms.bind(2);
+		double[] bound = Randoms.doubles(10);
+		RandomStream boundTask = Randoms.stream(0);
+		Randoms.unbind();
+		assertNotEquals(Randoms.stream(0).nextLong(), boundTask.nextLong());
+
+		Randoms.seed(1);
+		Randoms.uniform();
+		Randoms.uniform();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Randoms.bind(2);
+				Randoms.uniform();
+			}
+		});
+		thread.start();
+		thread.join();
+		Randoms.bind(2);
+		for (double value : bound) {
+			assertEquals(value, Randoms.uniform(), 0.0);
+		}
+		Randoms.unbind();
+
+		Randoms.seed(1);
+		assertEquals(expected, Randoms.uniform(), 0.0);
+	}
+
+	/**
+	 * Test the ranges and the moments of the helpers
+	 */
+	@Test
+	public void testHelpers() {
+		RandomStream random = new RandomStream(1);
+		int n = 100000;
+		double sum = 0.0, sumGaussian = 0.0, sumGamma = 0.0;
+		int[] counts = new int[3];
+		for (int i = 0; i < n; i++) {
+			int value = random.uniform(2, 5);
+			assertTrue(value >= 2 && value < 5);
+			double uniform = random.uniform();
+			assertTrue(uniform >= 0.0 && uniform < 1.0);
+			sum += uniform;
+			sumGaussian += random.gaussian(1.0, 2.0);
+			sumGamma += random.gamma(2.0, 3.0);
+			counts[random.discrete(new double[]{0.2, 0.3, 0.5})]++;
+		}
+		assertEquals(0.5, sum / n, 0.01);
+		assertEquals(1.0, sumGaussian / n, 0.05);
+		assertEquals(6.0, sumGamma / n, 0.1);
+		assertEquals(0.3, counts[1] / (double) n, 0.01);
+	}
+}
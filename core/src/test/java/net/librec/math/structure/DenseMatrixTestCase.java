@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import net.librec.math.algorithm.Randoms;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Dense Matrix TestCase
+ */
+public class DenseMatrixTestCase {
+
+	/**
+	 * Test that the inner products with all rows of a matrix are the ones of
+	 * the inner products row by row
+	 */
+	@Test
+	public void testRowMultAllRows() {
+		Randoms.seed(1);
+		DenseMatrix userFactors = new DenseMatrix(3, 10);
+		userFactors.init(0.0, 0.1);
+		for (int numItems : new int[]{0, 1, 4, 7, 33}) {
+			DenseMatrix itemFactors = new DenseMatrix(numItems, 10);
+			itemFactors.init(0.0, 0.1);
+			double[] scores = new double[numItems];
+			for (int userIdx = 0; userIdx < 3; userIdx++) {
+				DenseMatrix.rowMult(userFactors, userIdx, itemFactors, scores);
+				for (int itemIdx = 0; itemIdx < numItems; itemIdx++) {
+					assertEquals(DenseMatrix.rowMult(userFactors, userIdx, itemFactors, itemIdx), scores[itemIdx], 0.0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that solving a symmetric positive definite system by Cholesky
+	 * decomposition gives the solution by the inverse matrix
+	 */
+	@Test
+	public void testCholeskySolve() throws Exception {
+		Randoms.seed(1);
+		int n = 8;
+		DenseMatrix factors = new DenseMatrix(20, n);
+		factors.init(0.0, 1.0);
+		DenseMatrix matrix = factors.transpose().mult(factors).add(DenseMatrix.eye(n).scale(0.1));
+		DenseVector vector = new DenseVector(n);
+		vector.init(0.0, 1.0);
+
+		double[][] a = matrix.clone().getData();
+		double[] b = vector.clone().getData();
+		assertTrue(DenseMatrix.choleskySolve(a, b, n));
+		DenseVector expected = matrix.inv().mult(vector);
+		for (int i = 0; i < n; i++) {
+			assertEquals(expected.get(i), b[i], 1e-8);
+		}
+
+		assertFalse(DenseMatrix.choleskySolve(new double[][]{{1.0, 0.0}, {2.0, 1.0}}, new double[]{1.0, 1.0}, 2));
+	}
+}
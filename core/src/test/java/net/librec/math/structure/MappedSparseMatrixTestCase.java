@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import net.librec.BaseTestCase;
+import net.librec.data.convertor.TextDataConvertor;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Mapped Sparse Matrix TestCase
+ */
+public class MappedSparseMatrixTestCase extends BaseTestCase {
+
+	private SparseMatrix loadMatrix() throws Exception {
+		TextDataConvertor convertor = new TextDataConvertor(conf.get("dfs.data.dir") + "/filmtrust/rating");
+		convertor.processData();
+		return convertor.getPreferenceMatrix();
+	}
+
+	private void assertSameVector(SparseVector expected, SparseVector actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		assertArrayEquals(expected.getIndex(), actual.getIndex());
+		assertArrayEquals(expected.getData(), actual.getData(), 0.0);
+	}
+
+	private void assertSameView(SparseVector expected, SparseVectorView actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		int count = 0;
+		for (int k = 0; k < actual.size(); k++) {
+			if (actual.getValue(k) != 0.0) {
+				assertEquals(expected.getIndex()[count], actual.getIndex(k));
+				assertEquals(expected.getData()[count], actual.getValue(k), 0.0);
+				assertTrue(actual.contains(actual.getIndex(k)));
+				assertEquals(expected.get(actual.getIndex(k)), actual.get(actual.getIndex(k)), 0.0);
+				count++;
+			}
+		}
+		assertFalse(actual.contains(-1));
+	}
+
+	private void assertSameMatrix(SparseMatrix expected, SparseMatrix actual) {
+		assertEquals(expected.numRows(), actual.numRows());
+		assertEquals(expected.numColumns(), actual.numColumns());
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.sum(), actual.sum(), 1e-9);
+		assertEquals(expected.getValueSet(), actual.getValueSet());
+		assertArrayEquals(expected.getRowPointers(), actual.getRowPointers());
+		assertArrayEquals(expected.getColumnIndices(), actual.getColumnIndices());
+		assertArrayEquals(expected.getData(), actual.getData(), 0.0);
+
+		for (int row = 0; row < expected.numRows(); row++) {
+			assertSameVector(expected.row(row), actual.row(row));
+			assertSameView(expected.row(row), actual.rowView(row));
+			assertEquals(expected.getColumns(row), actual.getColumns(row));
+			Iterator<VectorEntry> it = actual.colIterator(row);
+			for (VectorEntry ve : expected.row(row)) {
+				assertTrue(it.hasNext());
+				VectorEntry actualEntry = it.next();
+				assertEquals(ve.index(), actualEntry.index());
+				assertEquals(ve.get(), actualEntry.get(), 0.0);
+				assertEquals(ve.get(), actual.get(row, ve.index()), 0.0);
+			}
+			assertFalse(it.hasNext());
+		}
+		for (int col = 0; col < expected.numColumns(); col++) {
+			assertSameVector(expected.column(col), actual.column(col));
+			assertSameView(expected.column(col), actual.columnView(col));
+			assertEquals(expected.getRows(col), actual.getRows(col));
+			assertEquals(expected.columnSize(col), actual.columnSize(col));
+		}
+
+		Iterator<MatrixEntry> it = actual.iterator();
+		for (MatrixEntry me : expected) {
+			assertTrue(it.hasNext());
+			MatrixEntry actualEntry = it.next();
+			assertEquals(me.row(), actualEntry.row());
+			assertEquals(me.column(), actualEntry.column());
+			assertEquals(me.get(), actualEntry.get(), 0.0);
+		}
+		assertFalse(it.hasNext());
+	}
+
+	/**
+	 * Test writing a matrix to a file and mapping it back
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteAndOpen() throws Exception {
+		SparseMatrix matrix = loadMatrix();
+		String path = "target/mapped/filmtrust.matrix";
+
+		MappedSparseMatrix mapped = MappedSparseMatrix.write(matrix, path);
+		assertSameMatrix(matrix, mapped);
+		assertSameMatrix(matrix, MappedSparseMatrix.open(path));
+		assertSameMatrix(matrix, mapped.toSparseMatrix());
+		assertSameMatrix(matrix.transpose(), mapped.transpose());
+
+		// changes stay private to the mapped matrix
+		int row = matrix.rows().get(0);
+		int col = matrix.getColumns(row).get(0);
+		mapped.set(row, col, 0.25);
+		assertEquals(0.25, mapped.get(row, col), 0.0);
+		assertEquals(0.25, mapped.column(col).get(row), 0.0);
+		assertEquals(matrix.get(row, col), MappedSparseMatrix.open(path).get(row, col), 0.0);
+	}
+
+	/**
+	 * Test copying a matrix into direct buffers
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAllocateDirect() throws Exception {
+		SparseMatrix matrix = loadMatrix();
+
+		MappedSparseMatrix direct = MappedSparseMatrix.allocateDirect(matrix);
+		assertSameMatrix(matrix, direct);
+		assertSameMatrix(matrix, new SparseMatrix(direct));
+		assertSameMatrix(matrix, direct.clone());
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.math.structure;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Symm Matrix TestCase
+ */
+public class SymmMatrixTestCase {
+
+	/**
+	 * Test setting, adding and reading symmetric entries
+	 */
+	@Test
+	public void testSetAndGet() {
+		SymmMatrix matrix = new SymmMatrix(5);
+		matrix.set(3, 1, 0.5);
+		matrix.set(1, 4, -0.25);
+		matrix.set(0, 1, 0.75);
+		matrix.set(2, 2, 1.0);
+		matrix.add(1, 3, 0.25);
+		matrix.set(4, 0, 0.0);
+
+		assertEquals(0.75, matrix.get(1, 3), 0.0);
+		assertEquals(0.75, matrix.get(3, 1), 0.0);
+		assertEquals(-0.25, matrix.get(4, 1), 0.0);
+		assertEquals(1.0, matrix.get(2, 2), 0.0);
+		assertEquals(0.0, matrix.get(2, 3), 0.0);
+		assertTrue(matrix.contains(0, 4));
+		assertFalse(matrix.contains(2, 3));
+		assertEquals(5, matrix.size());
+		assertEquals(5, matrix.copyData().size());
+
+		SparseVector row = matrix.row(1);
+		assertArrayEquals(new int[]{0, 3, 4}, row.getIndex());
+		assertArrayEquals(new double[]{0.75, 0.75, -0.25}, row.getData(), 0.0);
+		assertEquals(1, matrix.row(4).getIndex()[0]);
+		assertEquals(1, matrix.row(4).getCount());
+
+		SparseVectorView view = matrix.rowView(1);
+		assertEquals(3, view.size());
+		assertEquals(3, view.getIndex(1));
+		assertEquals(-0.25, view.get(4), 0.0);
+
+		SymmMatrix copy = matrix.clone();
+		copy.set(1, 3, 0.0);
+		assertEquals(0.75, matrix.get(3, 1), 0.0);
+		assertEquals(0.0, copy.get(3, 1), 0.0);
+	}
+}
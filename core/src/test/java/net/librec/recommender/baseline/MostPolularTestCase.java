@@ -55,4 +55,21 @@ public class MostPolularTestCase extends BaseTestCase {
 		job.runJob();
 	}
 
+	/**
+	 * Test the whole process of Most Popular Recommender ranking the items
+	 * for the users in parallel
+	 *
+	 * @throws ClassNotFoundException
+	 * @throws LibrecException
+	 * @throws IOException
+	 */
+	@Test
+	public void testRecommenderInParallel() throws ClassNotFoundException, LibrecException, IOException {
+		Resource resource = new Resource("rec/baseline/mostpopular-test.properties");
+		conf.addResource(resource);
+		conf.setInt("rec.recommender.ranking.thread.count", 4);
+		RecommenderJob job = new RecommenderJob(conf);
+		job.runJob();
+	}
+
 }
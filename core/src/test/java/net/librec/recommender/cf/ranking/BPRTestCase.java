@@ -20,12 +20,18 @@ package net.librec.recommender.cf.ranking;
 import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
+import net.librec.data.DataModel;
+import net.librec.eval.ranking.AUCEvaluator;
+import net.librec.eval.ranking.PrecisionEvaluator;
 import net.librec.job.RecommenderJob;
+import net.librec.recommender.Recommender;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * BPR Test Case corresponds to BPRRecommender
  * {@link net.librec.recommender.cf.ranking.BPRRecommender}
@@ -53,4 +59,41 @@ public class BPRTestCase extends BaseTestCase {
         RecommenderJob job = new RecommenderJob(conf);
         job.runJob();
     }
+
+    /**
+     * test BPR recommendation learning the samples in parallel, which draws
+     * the same samples for a fixed random seed and number of threads, so
+     * that two runs only differ by the order of the unsynchronized updates
+     *
+     * @throws LibrecException
+     */
+    @Test
+    public void testRecommenderInParallel() throws LibrecException {
+        DataModel dataModel = buildDataModel("rec/cf/ranking/bpr-test.properties");
+
+        double[] sequential = evaluate(dataModel, 1);
+        assertEquals(sequential[0], evaluate(dataModel, 1)[0], 0.0);
+        assertEquals(sequential[1], evaluate(dataModel, 1)[1], 0.0);
+
+        double[] parallel = evaluate(dataModel, 4);
+        double[] repeated = evaluate(dataModel, 4);
+        assertEquals(parallel[0], repeated[0], 0.01);
+        assertEquals(parallel[1], repeated[1], 0.01);
+        assertEquals(sequential[0], parallel[0], 0.02);
+        assertEquals(sequential[1], parallel[1], 0.02);
+    }
+
+    /**
+     * @return the AUC and the precision of the items recommended by BPR
+     *         trained with the number of threads
+     */
+    private double[] evaluate(DataModel dataModel, int numThreads) throws LibrecException {
+        conf.setInt("rec.thread.count", numThreads);
+        Recommender recommender = train(new BPRRecommender(), dataModel);
+        AUCEvaluator aucEvaluator = new AUCEvaluator();
+        aucEvaluator.setTopN(10);
+        PrecisionEvaluator precisionEvaluator = new PrecisionEvaluator();
+        precisionEvaluator.setTopN(10);
+        return new double[]{recommender.evaluate(aucEvaluator), recommender.evaluate(precisionEvaluator)};
+    }
 }
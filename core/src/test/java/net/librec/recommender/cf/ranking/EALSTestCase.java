@@ -20,12 +20,16 @@ package net.librec.recommender.cf.ranking;
 import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
+import net.librec.data.DataModel;
 import net.librec.job.RecommenderJob;
+import net.librec.math.structure.DenseMatrix;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * EALS Test Case corresponds to EALSRecommender
  * {@link net.librec.recommender.cf.ranking.EALSRecommender}
@@ -53,4 +57,35 @@ public class EALSTestCase extends BaseTestCase {
         RecommenderJob job = new RecommenderJob(conf);
         job.runJob();
     }
+
+    /**
+     * test EALS recommendation updating the factors by conjugate gradient.
+     * EALS updates one row at a time, so the reference is conjugate gradient
+     * with twice as many steps as factors: as many steps as factors give
+     * the same scores within 1e-6, and 3 steps within 15%
+     *
+     * @throws LibrecException
+     */
+    @Test
+    public void testRecommenderWithConjugateGradient() throws LibrecException {
+        DataModel dataModel = buildDataModel("rec/cf/ranking/eals-test.properties");
+        int numFactors = conf.getInt("rec.factor.number");
+
+        DenseMatrix expectedScores = trainScores(dataModel, 2 * numFactors);
+        DenseMatrix actualScores = trainScores(dataModel, numFactors);
+        assertEquals(0.0, expectedScores.minus(actualScores).norm() / expectedScores.norm(), 1e-6);
+
+        actualScores = trainScores(dataModel, 3);
+        assertEquals(0.0, expectedScores.minus(actualScores).norm() / expectedScores.norm(), 0.15);
+    }
+
+    /**
+     * @return the scores of all users for all items trained with the number
+     *         of conjugate gradient steps
+     */
+    private DenseMatrix trainScores(DataModel dataModel, int cgSteps) throws LibrecException {
+        conf.setInt("rec.wrmf.cg.steps", cgSteps);
+        EALSRecommender recommender = train(new EALSRecommender(), dataModel);
+        return recommender.getUserFactors().mult(recommender.getItemFactors().transpose());
+    }
 }
@@ -20,12 +20,17 @@ package net.librec.recommender.cf.ranking;
 import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
+import net.librec.data.DataModel;
 import net.librec.job.RecommenderJob;
+import net.librec.math.structure.DenseMatrix;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 /**
  * LDA Test Case corresponds to LDARecommender
  * {@link net.librec.recommender.cf.ranking.LDARecommender}
@@ -53,4 +58,76 @@ public class LDATestCase extends BaseTestCase {
         RecommenderJob job = new RecommenderJob(conf);
         job.runJob();
     }
+
+    /**
+     * test LDA recommendation sampling the topics with one thread, which
+     * should estimate the same probabilities for a fixed random seed as the
+     * sampler before the parallel sampling was added
+     *
+     * @throws LibrecException
+     */
+    @Test
+    public void testRecommenderSameAsSequentialSampler() throws LibrecException {
+        DenseMatrix[] probs = train(buildDataModel("rec/cf/ranking/lda-test.properties"), 1);
+        assertEquals(1508, probs[0].numRows());
+        assertEquals(2071, probs[1].numColumns());
+        assertEquals(26.376285164850575, probs[0].norm(), 1e-12);
+        assertEquals(0.3661280531288979, probs[1].norm(), 1e-12);
+    }
+
+    /**
+     * test LDA recommendation sampling the topics in parallel, which should
+     * estimate the same probabilities for a fixed random seed and number of
+     * threads
+     *
+     * @throws LibrecException
+     */
+    @Test
+    public void testRecommenderInParallel() throws LibrecException {
+        DataModel dataModel = buildDataModel("rec/cf/ranking/lda-test.properties");
+        assertSameProbs(train(dataModel, 4), train(dataModel, 4));
+    }
+
+    /**
+     * test LDA recommendation sampling the topics from alias tables, which
+     * should estimate the same probabilities for a fixed random seed and
+     * number of threads. The topics are only identified up to their order,
+     * so the item scores of the users are compared with those of sampling
+     * from the full conditional distributions: they differ about as much as
+     * two chains of the full conditional sampler with different random
+     * streams, i.e. by about 18% on the test data.
+     *
+     * @throws LibrecException
+     */
+    @Test
+    public void testRecommenderWithAliasSampling() throws LibrecException {
+        DataModel dataModel = buildDataModel("rec/cf/ranking/lda-test.properties");
+        DenseMatrix[] expected = train(dataModel, 1);
+        conf.setBoolean("rec.lda.alias.sampling", true);
+        DenseMatrix[] actual = train(dataModel, 1);
+        assertSameProbs(actual, train(dataModel, 1));
+        assertSameProbs(train(dataModel, 4), train(dataModel, 4));
+
+        DenseMatrix expectedScores = expected[0].mult(expected[1]);
+        DenseMatrix actualScores = actual[0].mult(actual[1]);
+        assertEquals(0.0, expectedScores.minus(actualScores).norm() / expectedScores.norm(), 0.25);
+    }
+
+    /**
+     * @return the user-topic and the topic-item probabilities estimated with
+     *         the number of threads
+     */
+    private DenseMatrix[] train(DataModel dataModel, int numThreads) throws LibrecException {
+        conf.setInt("rec.thread.count", numThreads);
+        LDARecommender recommender = train(new LDARecommender(), dataModel);
+        return new DenseMatrix[]{recommender.userTopicProbs, recommender.topicItemProbs};
+    }
+
+    private static void assertSameProbs(DenseMatrix[] expected, DenseMatrix[] actual) {
+        for (int m = 0; m < expected.length; m++) {
+            for (int row = 0; row < expected[m].numRows(); row++) {
+                assertArrayEquals(expected[m].data[row], actual[m].data[row], 0.0);
+            }
+        }
+    }
 }
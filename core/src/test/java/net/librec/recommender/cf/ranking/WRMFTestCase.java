@@ -20,12 +20,17 @@ package net.librec.recommender.cf.ranking;
 import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration;
+import net.librec.data.DataModel;
 import net.librec.job.RecommenderJob;
+import net.librec.math.structure.DenseMatrix;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 /**
  * WRMF Test Case corresponds to WRMFRecommender
  * {@link net.librec.recommender.cf.ranking.WRMFRecommender}
@@ -53,4 +58,60 @@ public class WRMFTestCase extends BaseTestCase {
         RecommenderJob job = new RecommenderJob(conf);
         job.runJob();
     }
+
+    /**
+     * test WRMF recommendation solving the factors in parallel, which
+     * should give the same factors as solving them with one thread
+     *
+     * @throws LibrecException
+     */
+    @Test
+    public void testRecommenderInParallel() throws LibrecException {
+        DataModel dataModel = buildDataModel("rec/cf/ranking/wrmf-test.properties");
+        DenseMatrix[] expected = train(dataModel, 1, 0);
+        DenseMatrix[] actual = train(dataModel, 4, 0);
+        for (int m = 0; m < expected.length; m++) {
+            for (int row = 0; row < expected[m].numRows(); row++) {
+                assertArrayEquals(expected[m].data[row], actual[m].data[row], 0.0);
+            }
+        }
+    }
+
+    /**
+     * test WRMF recommendation solving the factors by conjugate gradient:
+     * with as many steps as factors the factors agree with the exact least
+     * squares solution within 1e-4, and with 3 steps the scores of all
+     * items are within 10% of the exact ones
+     *
+     * @throws LibrecException
+     */
+    @Test
+    public void testRecommenderWithConjugateGradient() throws LibrecException {
+        DataModel dataModel = buildDataModel("rec/cf/ranking/wrmf-test.properties");
+        DenseMatrix[] expected = train(dataModel, 1, 0);
+        int numFactors = expected[0].numColumns();
+
+        DenseMatrix[] actual = train(dataModel, 1, numFactors);
+        for (int m = 0; m < expected.length; m++) {
+            for (int row = 0; row < expected[m].numRows(); row++) {
+                assertArrayEquals(expected[m].data[row], actual[m].data[row], 1e-4);
+            }
+        }
+
+        actual = train(dataModel, 1, 3);
+        DenseMatrix expectedScores = expected[0].mult(expected[1].transpose());
+        DenseMatrix actualScores = actual[0].mult(actual[1].transpose());
+        assertEquals(0.0, expectedScores.minus(actualScores).norm() / expectedScores.norm(), 0.1);
+    }
+
+    /**
+     * @return the user factors and the item factors trained with the
+     *         number of threads and of conjugate gradient steps
+     */
+    private DenseMatrix[] train(DataModel dataModel, int numThreads, int cgSteps) throws LibrecException {
+        conf.setInt("rec.thread.count", numThreads);
+        conf.setInt("rec.wrmf.cg.steps", cgSteps);
+        WRMFRecommender recommender = train(new WRMFRecommender(), dataModel);
+        return new DenseMatrix[]{recommender.getUserFactors(), recommender.getItemFactors()};
+    }
 }
@@ -20,12 +20,16 @@ package net.librec.recommender.cf.rating;
 import net.librec.BaseTestCase;
 import net.librec.common.LibrecException;
 import net.librec.conf.Configuration.Resource;
+import net.librec.data.DataModel;
+import net.librec.eval.rating.RMSEEvaluator;
 import net.librec.job.RecommenderJob;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * URP Test Case correspond to URPRecommender
  * {@link net.librec.recommender.cf.rating.URPRecommender}
@@ -54,4 +58,35 @@ public class URPTestCase extends BaseTestCase {
 		RecommenderJob job = new RecommenderJob(conf);
 		job.runJob();
 	}
+
+	/**
+	 * test URP recommendation sampling the topics with one thread, which
+	 * should give the same RMSE for a fixed random seed as the sampler before
+	 * the parallel sampling was added, and sampling in parallel, which
+	 * should give the same RMSE for a fixed random seed and number of threads
+	 * and about the RMSE of one thread
+	 *
+	 * @throws LibrecException
+	 */
+	@Test
+	public void testRecommenderInParallel() throws LibrecException {
+		DataModel dataModel = buildDataModel("rec/cf/rating/urp-test.properties");
+		conf.setInt("rec.iterator.maximum", 30);
+		conf.setInt("rec.pgm.burnin", 10);
+		conf.setInt("rec.pgm.samplelag", 5);
+
+		double sequential = evaluate(dataModel, 1);
+		assertEquals(0.8354420224120688, sequential, 1e-12);
+		double parallel = evaluate(dataModel, 4);
+		assertEquals(parallel, evaluate(dataModel, 4), 0.0);
+		assertEquals(sequential, parallel, 0.01);
+	}
+
+	/**
+	 * @return the RMSE of URP trained with the number of threads
+	 */
+	private double evaluate(DataModel dataModel, int numThreads) throws LibrecException {
+		conf.setInt("rec.thread.count", numThreads);
+		return train(new URPRecommender(), dataModel).evaluate(new RMSEEvaluator());
+	}
 }
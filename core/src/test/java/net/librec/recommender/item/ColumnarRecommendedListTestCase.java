@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.item;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * ColumnarRecommendedList TestCase
+ * {@link net.librec.recommender.item.ColumnarRecommendedList}
+ */
+public class ColumnarRecommendedListTestCase {
+
+	/**
+	 * Test that the list has the same entries as a RecommendedItemList
+	 * filled in the same way, before and after ranking the top-N items.
+	 */
+	@Test
+	public void testSameAsRecommendedItemList() {
+		Random random = new Random(1);
+		int numUsers = 50, numItemsPerUser = 20;
+		ColumnarRecommendedList columnarList = new ColumnarRecommendedList(numUsers, numItemsPerUser);
+		RecommendedItemList itemList = new RecommendedItemList(numUsers - 1, numUsers);
+		for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+			if (userIdx % 7 == 3) {
+				continue;
+			}
+			int numItems = 1 + random.nextInt(numItemsPerUser);
+			for (int n = 0; n < numItems; n++) {
+				int itemIdx = random.nextInt(1000);
+				double value = random.nextInt(8) / 4.0;
+				columnarList.addUserItemIdx(userIdx, itemIdx, value);
+				itemList.addUserItemIdx(userIdx, itemIdx, value);
+			}
+		}
+		assertSameEntries(itemList, columnarList, numUsers);
+
+		columnarList.topNRank(5);
+		itemList.topNRank(5);
+		assertSameEntries(itemList, columnarList, numUsers);
+	}
+
+	/**
+	 * Test the list over the entries of a compressed row matrix, whose arrays
+	 * are not changed by the list.
+	 */
+	@Test
+	public void testCompressedRows() {
+		int[] userOffsets = {0, 2, 2, 5};
+		int[] itemIndices = {1, 4, 0, 2, 3};
+		double[] values = {0.5, 2.0, 1.0, 3.0, 2.5};
+		ColumnarRecommendedList list = new ColumnarRecommendedList(userOffsets, itemIndices, values);
+
+		assertEquals(2, list.size());
+		assertFalse(list.contains(1));
+		assertEquals(3, list.getUserSize(2));
+		assertEquals(2.0, list.getEntryValue(0, 4), 0.0);
+		assertEquals(-1.0, list.getEntryValue(2, 1), 0.0);
+
+		Iterator<UserItemRatingEntry> entryIter = list.entryIterator();
+		for (int userIdx = 0; userIdx < 3; userIdx++) {
+			for (int entryIdx = userOffsets[userIdx]; entryIdx < userOffsets[userIdx + 1]; entryIdx++) {
+				UserItemRatingEntry entry = entryIter.next();
+				assertEquals(userIdx, entry.getUserIdx());
+				assertEquals(itemIndices[entryIdx], entry.getItemIdx());
+				assertEquals(values[entryIdx], entry.getValue(), 0.0);
+			}
+		}
+		assertFalse(entryIter.hasNext());
+
+		list.topNRankItemsByUser(2, 2);
+		assertEquals(2, list.getUserSize(2));
+		assertEquals(2, list.getItemIdx(2, 0));
+		assertEquals(3, list.getItemIdx(2, 1));
+		assertArrayEquals(new int[]{1, 4, 0, 2, 3}, itemIndices);
+
+		List<ItemEntry<Integer, Double>> removed = list.removeUserIdx(0);
+		assertEquals(2, removed.size());
+		assertEquals(1, list.size());
+		assertEquals(0, list.getItemIdxListByUserIdx(0).size());
+	}
+
+	private static void assertSameEntries(RecommendedList expected, ColumnarRecommendedList actual, int numUsers) {
+		assertEquals(expected.size(), actual.size());
+		for (int userIdx = 0; userIdx < numUsers; userIdx++) {
+			assertEquals(expected.contains(userIdx), actual.contains(userIdx));
+			List<ItemEntry<Integer, Double>> expectedItems = expected.getItemIdxListByUserIdx(userIdx);
+			List<ItemEntry<Integer, Double>> actualItems = actual.getItemIdxListByUserIdx(userIdx);
+			assertEquals(expectedItems.size(), actualItems.size());
+			for (int n = 0; n < expectedItems.size(); n++) {
+				assertEquals(expectedItems.get(n).getKey(), actualItems.get(n).getKey());
+				assertEquals(expectedItems.get(n).getValue(), actualItems.get(n).getValue());
+				assertEquals(expected.getEntryValue(userIdx, expectedItems.get(n).getKey()),
+						actual.getEntryValue(userIdx, expectedItems.get(n).getKey()), 0.0);
+			}
+		}
+
+		Iterator<UserItemRatingEntry> expectedIter = expected.entryIterator();
+		Iterator<UserItemRatingEntry> actualIter = actual.entryIterator();
+		while (expectedIter.hasNext()) {
+			assertTrue(actualIter.hasNext());
+			UserItemRatingEntry expectedEntry = expectedIter.next();
+			UserItemRatingEntry actualEntry = actualIter.next();
+			assertEquals(expectedEntry.getUserIdx(), actualEntry.getUserIdx());
+			assertEquals(expectedEntry.getItemIdx(), actualEntry.getItemIdx());
+			assertEquals(expectedEntry.getValue(), actualEntry.getValue(), 0.0);
+		}
+		assertFalse(actualIter.hasNext());
+	}
+}
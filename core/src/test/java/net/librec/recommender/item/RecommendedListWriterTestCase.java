@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.recommender.item;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * RecommendedListWriter TestCase
+ * {@link net.librec.recommender.item.RecommendedListWriter}
+ */
+public class RecommendedListWriterTestCase {
+
+	private File file;
+	private BiMap<String, Integer> userMapping;
+	private BiMap<String, Integer> itemMapping;
+	private RecommendedList recommendedList;
+	private List<String> expectedLines;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("recommended", ".txt");
+		userMapping = HashBiMap.create();
+		itemMapping = HashBiMap.create();
+		for (int idx = 0; idx < 4; idx++) {
+			userMapping.put("u" + idx, idx);
+			itemMapping.put("i" + idx, idx);
+		}
+		// user 3 and item 3 have no ids, so their entries are not written
+		userMapping.remove("u3");
+		itemMapping.remove("i3");
+
+		recommendedList = new ColumnarRecommendedList(4, 3);
+		expectedLines = new ArrayList<>();
+		for (int userIdx = 0; userIdx < 4; userIdx++) {
+			for (int itemIdx = userIdx; itemIdx < 4; itemIdx += 2) {
+				double value = userIdx + itemIdx / 10.0;
+				recommendedList.addUserItemIdx(userIdx, itemIdx, value);
+				if (userIdx < 3 && itemIdx < 3) {
+					expectedLines.add("u" + userIdx + ",i" + itemIdx + "," + value);
+				}
+			}
+		}
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Test the text format from the inner indices, for a columnar list and a
+	 * list of item entries, and from the recommended items.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testText() throws IOException {
+		RecommendedListWriter writer = new RecommendedListWriter(file.getPath(), RecommendedListWriter.Format.TEXT);
+		writer.write(recommendedList, userMapping, itemMapping);
+		writer.close();
+		assertEquals(expectedLines, readLines(new FileInputStream(file)));
+
+		RecommendedItemList itemList = new RecommendedItemList(3, 4);
+		List<RecommendedItem> items = new ArrayList<>();
+		for (int userIdx = 0; userIdx < 4; userIdx++) {
+			for (ItemEntry<Integer, Double> itemEntry : recommendedList.getItemIdxListByUserIdx(userIdx)) {
+				itemList.addUserItemIdx(userIdx, itemEntry.getKey(), itemEntry.getValue());
+				if (userIdx < 3 && itemEntry.getKey() < 3) {
+					items.add(new GenericRecommendedItem("u" + userIdx, "i" + itemEntry.getKey(), itemEntry.getValue()));
+				}
+			}
+		}
+		writer = new RecommendedListWriter(file.getPath(), RecommendedListWriter.Format.TEXT);
+		writer.write(itemList, userMapping, itemMapping);
+		writer.close();
+		assertEquals(expectedLines, readLines(new FileInputStream(file)));
+
+		writer = new RecommendedListWriter(file.getPath(), RecommendedListWriter.Format.TEXT);
+		writer.write(items);
+		writer.close();
+		assertEquals(expectedLines, readLines(new FileInputStream(file)));
+	}
+
+	/**
+	 * Test the gzip and the binary formats.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testGzipAndBinary() throws IOException {
+		RecommendedListWriter writer = new RecommendedListWriter(file.getPath(), RecommendedListWriter.Format.of("gzip"));
+		writer.write(recommendedList, userMapping, itemMapping);
+		writer.close();
+		assertEquals(expectedLines, readLines(new GZIPInputStream(new FileInputStream(file))));
+
+		writer = new RecommendedListWriter(file.getPath(), RecommendedListWriter.Format.of("binary"));
+		writer.write(recommendedList, userMapping, itemMapping);
+		writer.close();
+		List<String> lines = new ArrayList<>();
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			while (input.available() > 0) {
+				lines.add(input.readUTF() + "," + input.readUTF() + "," + input.readDouble());
+			}
+		} finally {
+			input.close();
+		}
+		assertEquals(expectedLines, lines);
+	}
+
+	private static List<String> readLines(InputStream inputStream) throws IOException {
+		List<String> lines = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.similarity;
+
+import net.librec.BaseTestCase;
+import net.librec.data.DataModel;
+import net.librec.data.model.TextDataModel;
+import net.librec.math.structure.SparseMatrix;
+import net.librec.math.structure.SparseVector;
+import net.librec.math.structure.SparseVectorView;
+import net.librec.math.structure.SymmMatrix;
+import net.librec.util.TopKHeap;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PCC Similarity Test Case corresponds to PCCSimilarity
+ * {@link net.librec.similarity.PCCSimilarity}
+ */
+public class PCCSimilarityTestCase extends BaseTestCase {
+
+    private DataModel dataModel;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        conf.set("rec.recommender.similarity.key", "item");
+        dataModel = new TextDataModel(conf);
+        dataModel.buildDataModel();
+    }
+
+    private SymmMatrix buildSimilarityMatrix(int numThreads) {
+        return buildSimilarityMatrix(new PCCSimilarity(), numThreads);
+    }
+
+    private SymmMatrix buildSimilarityMatrix(RecommenderSimilarity similarity, int numThreads) {
+        conf.setInt("rec.similarity.thread.count", numThreads);
+        similarity.buildSimilarityMatrix(dataModel);
+        return similarity.getSimilarityMatrix();
+    }
+
+    /**
+     * Assert that the similarity matrix holds the similarities of
+     * {@link AbstractRecommenderSimilarity#getCorrelation(SparseVector, SparseVector)}
+     * of every pair of items having them.
+     */
+    private void assertSameAsCorrelation(AbstractRecommenderSimilarity similarity, SymmMatrix matrix, double delta) {
+        similarity.conf = conf;
+        SparseMatrix trainMatrix = dataModel.getDataSplitter().getTrainData();
+        int numItems = trainMatrix.numColumns();
+        for (int i = 0; i < numItems; i += 7) {
+            SparseVector thisVector = trainMatrix.column(i);
+            if (thisVector.getCount() == 0) {
+                continue;
+            }
+            for (int j = i + 1; j < numItems; j++) {
+                // pairs without common rated users are left out
+                double sim = similarity.getCorrelation(thisVector, trainMatrix.column(j));
+                if (Double.isNaN(sim) || sim == 0) {
+                    assertFalse(matrix.contains(i, j));
+                } else {
+                    assertEquals(sim, matrix.get(i, j), delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the similarities built in parallel over the co-rated pairs are
+     * the ones of {@link AbstractRecommenderSimilarity#getCorrelation(SparseVector, SparseVector)}.
+     */
+    @Test
+    public void testBuildSimilarityMatrixInParallel() {
+        SymmMatrix serial = buildSimilarityMatrix(1);
+        SymmMatrix parallel = buildSimilarityMatrix(4);
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.getDim(); i++) {
+            for (int j = i + 1; j < serial.getDim(); j++) {
+                assertEquals(serial.get(i, j), parallel.get(i, j), 0.0);
+            }
+        }
+        assertSameAsCorrelation(new PCCSimilarity(), serial, 0.0);
+    }
+
+    /**
+     * Test that the similarities depending on the whole vectors, which are
+     * given the number of rated values and the norm of each vector, are the
+     * ones of the vectors.
+     */
+    @Test
+    public void testBuildWholeVectorSimilarityMatrix() {
+        assertSameAsCorrelation(new BinaryCosineSimilarity(), buildSimilarityMatrix(new BinaryCosineSimilarity(), 4), 1e-12);
+        assertSameAsCorrelation(new JaccardSimilarity(), buildSimilarityMatrix(new JaccardSimilarity(), 4), 0.0);
+        assertSameAsCorrelation(new KRCCSimilarity(), buildSimilarityMatrix(new KRCCSimilarity(), 4), 0.0);
+    }
+
+    /**
+     * Test that only the most similar neighbours of each item are kept.
+     */
+    @Test
+    public void testBuildTopKSimilarityMatrix() {
+        int topK = 10;
+        SymmMatrix full = buildSimilarityMatrix(1);
+        conf.setInt("rec.similarity.topk", topK);
+        SymmMatrix top = buildSimilarityMatrix(4);
+
+        for (int i = 0; i < full.getDim(); i++) {
+            SparseVectorView fullRow = full.rowView(i);
+            SparseVectorView topRow = top.rowView(i);
+            assertTrue(topRow.size() <= fullRow.size());
+            for (int k = 0; k < topRow.size(); k++) {
+                assertEquals(fullRow.get(topRow.getIndex(k)), topRow.getValue(k), 0.0);
+            }
+
+            TopKHeap heap = new TopKHeap(topK);
+            for (int k = 0; k < fullRow.size(); k++) {
+                heap.offer(fullRow.getIndex(k), fullRow.getValue(k));
+            }
+            heap.sortDescending();
+            for (int k = 0; k < heap.size(); k++) {
+                assertTrue(top.contains(i, heap.getIndex(k)));
+                if (k > 0) {
+                    assertTrue(heap.getValue(k) <= heap.getValue(k - 1));
+                }
+            }
+        }
+    }
+}
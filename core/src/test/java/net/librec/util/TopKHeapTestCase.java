@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2016 LibRec
+ * <p>
+ * This file is part of LibRec.
+ * LibRec is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * LibRec is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with LibRec. If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.librec.util;
+
+import net.librec.recommender.item.ItemEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * TopKHeap TestCase
+ */
+public class TopKHeapTestCase {
+
+	/**
+	 * Test that the heap keeps the same items in the same order as
+	 * {@link Lists#sortItemEntryListTopK(List, boolean, int)}, ties included.
+	 */
+	@Test
+	public void testSameAsSortItemEntryListTopK() {
+		Random random = new Random(1);
+		for (int k : new int[]{1, 3, 10, 50}) {
+			TopKHeap heap = new TopKHeap(k);
+			for (int round = 0; round < 20; round++) {
+				int size = random.nextInt(100);
+				List<ItemEntry<Integer, Double>> entries = new ArrayList<>();
+				heap.clear();
+				for (int itemIdx = 0; itemIdx < size; itemIdx++) {
+					double value = random.nextInt(8) / 4.0;
+					entries.add(new ItemEntry<>(itemIdx, value));
+					heap.offer(itemIdx, value);
+				}
+				heap.sortDescending();
+
+				List<ItemEntry<Integer, Double>> expected = Lists.sortItemEntryListTopK(entries, true, k);
+				assertEquals(expected.size(), heap.size());
+				for (int n = 0; n < heap.size(); n++) {
+					assertEquals(expected.get(n).getKey().intValue(), heap.getIndex(n));
+					assertEquals(expected.get(n).getValue(), heap.getValue(n), 0.0);
+				}
+			}
+		}
+	}
+}